@@ -0,0 +1,21 @@
+package acceleratorphysics.benchmark;
+
+/**
+ * Runs the benchmarks of solvers, fields, bunch stepping and lattices.
+ * Usage: Benchmarks [regular expression matching names of benchmarks to run]
+ * e.g. gradlew benchmark -Pinclude=solver
+ */
+public class Benchmarks {
+
+    public static void main(String[] args){
+
+        Harness harness = new Harness();
+        SolverBenchmarks.register(harness);
+        FieldBenchmarks.register(harness);
+        BunchBenchmarks.register(harness);
+        LatticeBenchmarks.register(harness);
+
+        harness.run(args.length > 0 ? args[0] : "");
+    }
+
+}
@@ -0,0 +1,118 @@
+package acceleratorphysics.benchmark;
+
+import acceleratorphysics.BunchAccelerator;
+import acceleratorphysics.fields.BarnesHut;
+import acceleratorphysics.fields.EMField;
+import acceleratorphysics.fields.ParticleInCell;
+import acceleratorphysics.fields.Type;
+import acceleratorphysics.fields.Uniform;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.particles.BeamStatistics;
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.TrajectoryWriter;
+import acceleratorphysics.util.Vector3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Cost of one RK4 step of a proton bunch in a uniform magnetic field with each space charge field
+ * (ops are steps). Direct summation is O(N^2) per stage, so it is only run on the smallest bunch.
+ * The record benchmark adds writing the bunch to a trajectory file at every step,
+ * starting the file over every RECORDED_STEPS steps so that it stays bounded.
+ * The statistics benchmarks compute moments, emittances and Twiss parameters of a bunch (ops are bunches).
+ */
+final class BunchBenchmarks {
+
+    private static final double H = 1E-9;
+    private static final int RECORDED_STEPS = 64;
+
+    private BunchBenchmarks(){
+        throw new AssertionError();
+    }
+
+    private static ChargedBunch bunch(int particles){
+        return ParticleFactory.Newtonian.protonBunch(
+                State.zero()
+                        .velocity(Vector3.I.scale(1E5))
+                        .positionDispersion(Vector3.ONES.scale(1E-3)),
+                particles
+        );
+    }
+
+    static void register(Harness harness){
+
+        EMField external = new Uniform(Type.MAGNETIC, Vector3.J.scale(1E-3));
+        IVPSolver solver = IVPSolver.rungeKutta4(H);
+
+        ChargedBunch small = bunch(1000);
+        step(harness, "bunch.directSum.1000", new BunchAccelerator(small, external), small, solver);
+
+        for (int particles : new int[]{1000, 10000}) {
+            ChargedBunch bunch = bunch(particles);
+            BunchAccelerator accelerator = new BunchAccelerator(bunch, external, new BarnesHut(bunch.getStore(), 0.5));
+            step(harness, "bunch.barnesHut." + particles, accelerator, bunch, solver);
+        }
+
+        for (int particles : new int[]{1000, 10000, 100000}) {
+            ChargedBunch bunch = bunch(particles);
+            BunchAccelerator accelerator = new BunchAccelerator(bunch, external, new ParticleInCell(bunch.getStore(), 32));
+            step(harness, "bunch.particleInCell." + particles, accelerator, bunch, solver);
+        }
+
+        ChargedBunch recorded = bunch(10000);
+        BunchAccelerator accelerator = new BunchAccelerator(recorded, external,
+                new ParticleInCell(recorded.getStore(), 32));
+        Path file = temporary();
+        TrajectoryWriter[] writer = {null};
+        long[] steps = {0};
+        harness.add("bunch.record.particleInCell.10000", 1, () -> {
+            accelerator.solve(solver, 0.5 * H);
+            try {
+                if (steps[0]++ % RECORDED_STEPS == 0) {
+                    if (writer[0] != null) {
+                        writer[0].close();
+                    }
+                    writer[0] = new TrajectoryWriter.Builder(file, recorded.getStore().x().length).open(); // truncates
+                }
+                writer[0].write(steps[0] * H, recorded.getStore());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+
+        ChargedBunch measured = bunch(100000);
+        harness.add("bunch.statistics.serial.100000", 1, () ->
+                Harness.consume(BeamStatistics.of(measured.getStore()).getEmittance(BeamStatistics.Plane.X)));
+        harness.add("bunch.statistics.parallel.100000", 1, () ->
+                Harness.consume(BeamStatistics.of(measured.getStore(), ForkJoinPool.commonPool())
+                        .getEmittance(BeamStatistics.Plane.X)));
+    }
+
+    /**
+     * Creates temporary file deleted on exit
+     */
+    private static Path temporary(){
+        try {
+            Path file = Files.createTempFile("benchmark", ".traj");
+            file.toFile().deleteOnExit();
+            return file;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void step(Harness harness, String name, BunchAccelerator accelerator,
+                             ChargedBunch bunch, IVPSolver solver){
+        harness.add(name, 1, () -> {
+            accelerator.solve(solver, 0.5 * H);
+            Harness.consume(bunch.getStore().x()[0]);
+        });
+    }
+
+}
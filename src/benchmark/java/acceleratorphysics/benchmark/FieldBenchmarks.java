@@ -0,0 +1,130 @@
+package acceleratorphysics.benchmark;
+
+import acceleratorphysics.fields.DirectSum;
+import acceleratorphysics.fields.EMField;
+import acceleratorphysics.fields.FieldMap;
+import acceleratorphysics.fields.MappedFieldMap;
+import acceleratorphysics.fields.Sinusoid;
+import acceleratorphysics.fields.Superimposed;
+import acceleratorphysics.fields.Type;
+import acceleratorphysics.fields.Uniform;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Cost of evaluating the Lorentz force of each kind of field (ops are evaluations)
+ * at consecutive positions along a trajectory through the unit cube.
+ */
+final class FieldBenchmarks {
+
+    private static final int POINTS = 1024;
+    private static final int LINAC = 200;
+
+    private FieldBenchmarks(){
+        throw new AssertionError();
+    }
+
+    static void register(Harness harness){
+
+        Random random = new Random(1);
+        Vector3[] r = new Vector3[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            // along a trajectory through the unit cube, as a particle samples the field
+            double s = (double) i / POINTS;
+            r[i] = new Vector3(s, 0.5 + 0.3 * Math.sin(6 * s), 0.5 + 0.3 * Math.cos(6 * s))
+                    .add(new Vector3(random.nextDouble(), random.nextDouble(), random.nextDouble()).scale(1E-3));
+        }
+        Vector3 v = Vector3.I.scale(1E5);
+
+        EMField uniform = new Uniform(Type.MAGNETIC, Vector3.K.scale(1E-3));
+        EMField sinusoid = new Sinusoid.Builder(Type.ELECTRIC)
+                .setDirection(Vector3.I)
+                .setAmplitude(1E3)
+                .setFrequency(1E6)
+                .setLX(0.5)
+                .build();
+        EMField superimposed = new Superimposed(uniform, sinusoid, new Uniform(Type.ELECTRIC, Vector3.J));
+        // beam line of cavities along z, each occupying a thin slab of the cube
+        EMField[] cavities = new EMField[LINAC + 1];
+        cavities[0] = uniform;
+        for (int i = 1; i <= LINAC; i++) {
+            cavities[i] = new Sinusoid.Builder(Type.ELECTRIC)
+                    .setCavityCentre(new Vector3(0.5, 0.5, (i - 0.5) / LINAC))
+                    .setLX(0.5).setLY(0.5).setLZ(0.25 / LINAC)
+                    .setDirection(Vector3.K)
+                    .setAmplitude(1E3)
+                    .setFrequency(1E6)
+                    .build();
+        }
+        EMField linac = new Superimposed(cavities);
+        EMField directSum = new DirectSum(
+                ParticleFactory.Newtonian.protonBunch(State.zero().positionDispersion(Vector3.ONES), 100).getStore()
+        );
+
+        FieldMap trilinear = new FieldMap.Builder(64, 64, 64)
+                .setSpacing(1D / 63, 1D / 63, 1D / 63)
+                .build()
+                .sample(superimposed, 0);
+        FieldMap tricubic = new FieldMap.Builder(64, 64, 64)
+                .setSpacing(1D / 63, 1D / 63, 1D / 63)
+                .setInterpolation(FieldMap.Interpolation.TRICUBIC)
+                .build()
+                .sample(superimposed, 0);
+        MappedFieldMap mapped;
+        try {
+            Path file = Files.createTempFile("benchmark", ".fmap");
+            file.toFile().deleteOnExit();
+            MappedFieldMap.write(file, superimposed, 0, 64, 64, 64, Vector3.ZERO, Vector3.ONES.scale(1D / 63), 16);
+            mapped = new MappedFieldMap.Builder(file).open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        field(harness, "field.uniform", uniform, r, v);
+        field(harness, "field.sinusoid", sinusoid, r, v);
+        field(harness, "field.superimposed", superimposed, r, v);
+        field(harness, "field.superimposed.linac" + LINAC, linac, r, v);
+        bulk(harness, "field.bulk.superimposed.linac" + LINAC, linac);
+        field(harness, "field.directSum.100", directSum, r, v);
+        field(harness, "field.fieldMap.trilinear", trilinear, r, v);
+        field(harness, "field.fieldMap.tricubic", tricubic, r, v);
+        field(harness, "field.mappedFieldMap.trilinear", mapped, r, v);
+    }
+
+    /**
+     * Evaluates field in one call at the points of a bunch near the centre of the cube
+     */
+    private static void bulk(Harness harness, String name, EMField field){
+        Random random = new Random(2);
+        double[] x = new double[POINTS], y = new double[POINTS], z = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = 0.5 + 1E-3 * random.nextGaussian();
+            y[i] = 0.5 + 1E-3 * random.nextGaussian();
+            z[i] = 0.5 + 1E-3 * random.nextGaussian();
+        }
+        double[] ex = new double[POINTS], ey = new double[POINTS], ez = new double[POINTS];
+        double[] bx = new double[POINTS], by = new double[POINTS], bz = new double[POINTS];
+        harness.add(name, POINTS, () -> {
+            field.addFields(1E-7, x, y, z, ex, ey, ez, bx, by, bz, 0, POINTS);
+            Harness.consume(ex[POINTS - 1]);
+        });
+    }
+
+    private static void field(Harness harness, String name, EMField field, Vector3[] r, Vector3 v){
+        harness.add(name, POINTS, () -> {
+            double sum = 0;
+            for (int i = 0; i < POINTS; i++) {
+                sum += field.lorentzForce(1, v, r[i], 1E-7 * i).getX();
+            }
+            Harness.consume(sum);
+        });
+    }
+
+}
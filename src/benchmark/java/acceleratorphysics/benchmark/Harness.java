@@ -0,0 +1,191 @@
+package acceleratorphysics.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal benchmark harness in the style of JMH, without dependencies so that it runs offline.
+ * Each benchmark is invoked repeatedly for a number of timed warm up iterations, whose results are
+ * discarded, and then for a number of timed measurement iterations. For the measurement the harness reports
+ *
+ *      throughput (ops/s) with a 99.9% confidence interval, the average time per op,
+ *      bytes allocated per op by the benchmark thread, and the count and time of garbage collections.
+ *
+ * Benchmarks must feed their results to consume() so that the JIT cannot eliminate them as dead code.
+ * Iterations and their length are set by the system properties
+ * benchmark.warmups, benchmark.iterations and benchmark.millis.
+ */
+public final class Harness {
+
+    /**
+     * Body of a benchmark
+     */
+    public interface Body {
+
+        /**
+         * Invokes benchmark once
+         */
+        void invoke();
+    }
+
+    private static final class Case {
+        final String name;
+        final long ops;
+        final Body body;
+
+        Case(String name, long ops, Body body){
+            this.name = name;
+            this.ops = ops;
+            this.body = body;
+        }
+    }
+
+    private final int warmups = Integer.getInteger("benchmark.warmups", 3);
+    private final int iterations = Integer.getInteger("benchmark.iterations", 5);
+    private final long millis = Long.getLong("benchmark.millis", 1000);
+
+    private final List<Case> cases = new ArrayList<>();
+
+    private static volatile double sink;
+
+    /**
+     * Consumes result of benchmark so that it is not eliminated
+     * @param value result
+     */
+    public static void consume(double value){
+        sink += value;
+    }
+
+    /**
+     * Consumes result of benchmark so that it is not eliminated
+     * @param value result
+     */
+    public static void consume(Object value){
+        sink += System.identityHashCode(value);
+    }
+
+    /**
+     * Adds benchmark
+     * @param name name of benchmark
+     * @param ops operations performed by one invocation of body
+     * @param body body of benchmark
+     * @return this harness
+     */
+    public Harness add(String name, long ops, Body body){
+        cases.add(new Case(name, ops, body));
+        return this;
+    }
+
+    /**
+     * Runs benchmarks whose names contain a match of filter and prints a table of results
+     * @param filter regular expression
+     */
+    public void run(String filter){
+
+        Pattern pattern = Pattern.compile(filter);
+        System.out.printf("# warmups: %d, iterations: %d, %d ms each%n", warmups, iterations, millis);
+        System.out.printf("%-44s %14s %12s %12s %12s %8s %8s%n",
+                "Benchmark", "ops/s", "error", "ns/op", "B/op", "gc.count", "gc.ms");
+
+        for (Case c : cases) {
+            if (pattern.matcher(c.name).find()) {
+                run(c);
+            }
+        }
+    }
+
+    private void run(Case c){
+
+        for (int i = 0; i < warmups; i++) {
+            iteration(c);
+        }
+
+        long gcCount = gcCount(), gcTime = gcTime();
+        long before = allocatedBytes();
+        long totalOps = 0;
+        double[] throughput = new double[iterations];
+
+        for (int i = 0; i < iterations; i++) {
+            long[] result = iteration(c);
+            throughput[i] = result[0] * 1E9 / result[1];
+            totalOps += result[0];
+        }
+
+        long allocated = allocatedBytes() - before;
+        gcCount = gcCount() - gcCount;
+        gcTime = gcTime() - gcTime;
+
+        double mean = 0;
+        for (double x : throughput) {
+            mean += x / iterations;
+        }
+        double variance = 0;
+        for (double x : throughput) {
+            variance += (x - mean) * (x - mean) / Math.max(1, iterations - 1);
+        }
+        // 99.9% interval of the mean, normal approximation
+        double error = 3.29 * Math.sqrt(variance / iterations);
+
+        System.out.printf("%-44s %14.1f %12.1f %12.1f %12s %8d %8d%n",
+                c.name, mean, error, 1E9 / mean,
+                before < 0 ? "n/a" : String.format("%.1f", (double) allocated / totalOps),
+                gcCount, gcTime);
+    }
+
+    /**
+     * Invokes body until iteration time has elapsed
+     * @return {operations, nanoseconds}
+     */
+    private long[] iteration(Case c){
+        long end = System.nanoTime() + millis * 1000000L;
+        long ops = 0;
+        long start = System.nanoTime();
+        long now;
+        do {
+            c.body.invoke();
+            ops += c.ops;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[]{ops, now - start};
+    }
+
+    /**
+     * Bytes allocated so far by every live thread, so that work handed to pools is counted,
+     * or -1 if not supported by the JVM. Threads that terminate during a case are not counted.
+     */
+    private static long allocatedBytes(){
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                long bytes = 0;
+                for (long allocated : hotspot.getThreadAllocatedBytes(hotspot.getAllThreadIds())) {
+                    bytes += Math.max(0, allocated); // -1 for threads no longer alive
+                }
+                return bytes;
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount(){
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime(){
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+}
@@ -0,0 +1,64 @@
+package acceleratorphysics.benchmark;
+
+import acceleratorphysics.lattice.Lattice;
+import acceleratorphysics.lattice.TransferMatrix;
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Cost of taking a proton bunch through a FODO cell by element tracking and by its transfer matrix
+ * (ops are particles). Both start from the same state on every run.
+ */
+final class LatticeBenchmarks {
+
+    private static final int PARTICLES = 10000;
+    private static final double V0 = 1E6;
+
+    private LatticeBenchmarks(){
+        throw new AssertionError();
+    }
+
+    static void register(Harness harness){
+
+        double g = 1E-3;
+        Lattice fodo = new Lattice.Builder().setTimeStep(1E-8)
+                .quadrupole(0.1, g).drift(1).quadrupole(0.1, -g).drift(1)
+                .build();
+        TransferMatrix map = fodo.transferMatrix(V0, 0, ParticleFactory.PROTON_CHARGE / ParticleFactory.PROTON_MASS,
+                Double.POSITIVE_INFINITY);
+
+        ChargedBunch bunch = ParticleFactory.Newtonian.protonBunch(
+                State.zero()
+                        .velocity(Vector3.K.scale(V0))
+                        .positionDispersion(Vector3.ONES.scale(1E-3))
+                        .velocityDispersion(Vector3.ONES.scale(1E2)),
+                PARTICLES
+        );
+        ParticleStore store = bunch.getStore();
+        double[][] columns = {store.x(), store.y(), store.z(), store.vx(), store.vy(), store.vz()};
+        double[][] initial = new double[columns.length][];
+        for (int k = 0; k < columns.length; k++) {
+            initial[k] = columns[k].clone();
+        }
+
+        harness.add("lattice.track.fodo", PARTICLES, () -> {
+            reset(columns, initial);
+            Harness.consume(fodo.track(bunch, 0)[0]);
+        });
+        harness.add("lattice.transferMatrix.fodo", PARTICLES, () -> {
+            reset(columns, initial);
+            map.apply(bunch, 0, V0);
+            Harness.consume(store.x()[0]);
+        });
+    }
+
+    private static void reset(double[][] columns, double[][] initial){
+        for (int k = 0; k < columns.length; k++) {
+            System.arraycopy(initial[k], 0, columns[k], 0, initial[k].length);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package acceleratorphysics.benchmark;
+
+import acceleratorphysics.BunchAccelerator;
+import acceleratorphysics.fields.EMField;
+import acceleratorphysics.fields.Type;
+import acceleratorphysics.fields.Uniform;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scaling benchmark of parallel bunch stepping from 1 to N threads.
+ * Usage: ParallelScaling [particles] [steps] [max threads], or
+ *
+ *      ./gradlew parallelScaling [-Pparticles=2000] [-Psteps=20] [-Pthreads=N]
+ */
+public class ParallelScaling {
+
+    public static void main(String[] args){
+
+        int particles = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        int steps = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        int maxThreads = (args.length > 2)
+                ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        IVPSolver solver = IVPSolver.rungeKutta4(1E-3);
+        double time = steps * solver.stepSize();
+
+        // Serial reference (also warms up the JIT)
+        ParticleStore reference = run(null, particles, solver, time);
+        long serial = timed(null, particles, solver, time);
+        System.out.printf("threads  time/ms  speedup  identical%n");
+        System.out.printf("%7s  %7.1f  %7.2f  %9s%n", "serial", serial / 1E6, 1.0, true);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            boolean identical = identical(reference, run(pool, particles, solver, time));
+            long parallel = timed(pool, particles, solver, time);
+            System.out.printf("%7d  %7.1f  %7.2f  %9s%n",
+                    threads, parallel / 1E6, (double) serial / parallel, identical);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Accelerates a bunch through a uniform magnetic field
+     * @param pool pool or null for serial stepping
+     * @param particles number of particles
+     * @param solver numerical method
+     * @param time time
+     * @return store of bunch after acceleration
+     */
+    private static ParticleStore run(ForkJoinPool pool, int particles, IVPSolver solver, double time){
+
+        ChargedBunch bunch = ParticleFactory.Newtonian.protonBunch(
+                State.zero()
+                        .velocity(Vector3.I.scale(0.1))
+                        .positionDispersion(Vector3.ONES.scale(0.01)),
+                particles
+        );
+        ParticleStore store = bunch.getStore();
+
+        // Deterministic initial positions so that runs are comparable
+        for (int i = 0; i < particles; i++) {
+            store.x()[i] = 1E-2 * Math.sin(i);
+            store.y()[i] = 1E-2 * Math.cos(i);
+            store.z()[i] = 1E-2 * Math.sin(2 * i);
+        }
+
+        EMField magneticField = new Uniform(Type.MAGNETIC, Vector3.J.scale(1e-7));
+
+        new BunchAccelerator(bunch, magneticField)
+                .setPool(pool)
+                .solve(solver, time);
+
+        return store;
+    }
+
+    private static long timed(ForkJoinPool pool, int particles, IVPSolver solver, double time){
+        long t0 = System.nanoTime();
+        run(pool, particles, solver, time);
+        return System.nanoTime() - t0;
+    }
+
+    private static boolean identical(ParticleStore a, ParticleStore b){
+        return Arrays.equals(a.x(), b.x()) && Arrays.equals(a.y(), b.y()) && Arrays.equals(a.z(), b.z())
+                && Arrays.equals(a.vx(), b.vx()) && Arrays.equals(a.vy(), b.vy()) && Arrays.equals(a.vz(), b.vz());
+    }
+
+}
@@ -0,0 +1,83 @@
+package acceleratorphysics.benchmark;
+
+import acceleratorphysics.ParticleAccelerator;
+import acceleratorphysics.fields.Type;
+import acceleratorphysics.fields.Uniform;
+import acceleratorphysics.numerical.IVP;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.numerical.ODESystem;
+import acceleratorphysics.particles.ChargedParticle;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Cost of one step of each numerical method (ops are steps).
+ * solver.* steps a harmonic oscillator on flat state, measuring the method alone;
+ * accelerator.* solves a ParticleAccelerator, a proton in a uniform magnetic field (Demo1).
+ */
+final class SolverBenchmarks {
+
+    private static final int STEPS = 1000;
+    private static final double H = 1E-3;
+
+    private SolverBenchmarks(){
+        throw new AssertionError();
+    }
+
+    /**
+     * Harmonic oscillator y'' = -y in each component
+     */
+    private static final ODESystem OSCILLATOR = new ODESystem() {
+        @Override
+        public int dimension() {
+            return 6;
+        }
+
+        @Override
+        public void derivative(double t, double[] y, double[] dydt) {
+            for (int i = 0; i < 3; i++) {
+                dydt[i] = y[i + 3];
+                dydt[i + 3] = -y[i];
+            }
+        }
+    };
+
+    private static IVPSolver[] solvers(){
+        return new IVPSolver[]{
+                IVPSolver.euler(H), IVPSolver.eulerCromer(H), IVPSolver.midpoint(H),
+                IVPSolver.velocityVerlet(H), IVPSolver.rungeKutta4(H), IVPSolver.boris(H),
+                IVPSolver.positionLeapfrog(H), IVPSolver.velocityLeapfrog(H),
+                IVPSolver.forestRuth(H), IVPSolver.yoshida6(H)
+        };
+    }
+
+    static void register(Harness harness){
+
+        for (IVPSolver solver : solvers()) {
+            if (solver.name().equals("BORIS")) {
+                continue; // steps Lorentz systems only
+            }
+            double[] y = {1, 1, 1, 0, 0, 0};
+            double[][] work = new double[solver.workBuffers()][y.length];
+            harness.add("solver." + solver.name().toLowerCase(), STEPS, () -> {
+                for (int i = 0; i < STEPS; i++) {
+                    solver.step(OSCILLATOR, i * H, y, work);
+                }
+                Harness.consume(y[0]);
+            });
+        }
+
+        for (IVPSolver solver : solvers()) {
+            ChargedParticle proton = ParticleFactory.Newtonian.proton(
+                    State.zero().velocity(Vector3.I.scale(0.1))
+            );
+            IVP accelerator = new ParticleAccelerator(proton, new Uniform(Type.MAGNETIC, Vector3.J.scale(1E-7)));
+            harness.add("accelerator." + solver.name().toLowerCase(), STEPS, () -> {
+                accelerator.solve(solver, (STEPS - 0.5) * H);
+                Harness.consume(proton.getPosition());
+            });
+        }
+    }
+
+}
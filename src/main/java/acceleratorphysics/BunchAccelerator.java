@@ -1,56 +1,193 @@
 package acceleratorphysics;
 
 import acceleratorphysics.fields.EMField;
+import acceleratorphysics.fields.SpaceCharge;
 import acceleratorphysics.fields.Superimposed;
 import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.numerical.IVPSystem;
+import acceleratorphysics.numerical.StepListener;
 import acceleratorphysics.particles.ChargedBunch;
 import acceleratorphysics.particles.ChargedParticle;
 import acceleratorphysics.particles.Particle;
+import acceleratorphysics.particles.ParticleStore;
 
-import java.util.Observable;
+import java.util.concurrent.ForkJoinPool;
 
 
-// Proposed solution 1
 /**
- * Temporary workaround for accelerating a bunch of particles.
- * Future development will involve a refactor IVP/IVPSolver to 'IVPSystem' such that
- * it defines a contract for a SYSTEM of equations rather than a single initial value problem.
- * (This should be approached by adding a dimension to the appropriate arrays)
- * This will pave the way for implementation of more general problem solvers such as that of
- * a system of interacting particles (as is done here).
+ * System of initial value problems for a bunch of charged particles in an electromagnetic field
+ * and the field of the bunch itself.
+ * The bunch is integrated as one IVPSystem: at each stage of the numerical method every
+ * particle sees the stage positions of every other particle before any of them is advanced.
+ * The field is evaluated for each block of particles in one call (see EMField.addFields),
+ * at the stages and once more at the state each step reaches, which sets the accelerations of the particles.
  */
-public class BunchAccelerator extends Observable {
+public class BunchAccelerator {
 
-    private EMField field;
-    private ParticleAccelerator[] accelerators;
+    private final EMField field;
+    private final IVPSystem system;
 
+    /**
+     * Constructs bunch accelerator with the field of the bunch summed directly over its particles
+     * @param bunch bunch
+     * @param extField external field
+     */
     public BunchAccelerator(ChargedBunch bunch, EMField extField){
+        this(bunch, extField, bunch.getField(), null);
+    }
+
+    /**
+     * Constructs bunch accelerator with a space charge solver (e.g. BarnesHut) as the field of the bunch.
+     * The space charge field is updated from the positions of the particles at every stage.
+     * @param bunch bunch
+     * @param extField external field
+     * @param selfField space charge field of the particles of bunch
+     */
+    public BunchAccelerator(ChargedBunch bunch, EMField extField, SpaceCharge selfField){
+        this(bunch, extField, selfField, selfField);
+    }
 
-        field = new Superimposed(bunch.getField(), extField);
+    private BunchAccelerator(ChargedBunch bunch, EMField extField, EMField selfField, SpaceCharge spaceCharge){
+
+        field = new Superimposed(selfField, extField);
 
         Particle[] particles = bunch.getParticles();
-        accelerators = new ParticleAccelerator[particles.length];
+        ParticleAccelerator[] accelerators = new ParticleAccelerator[particles.length];
+        double[] qm = new double[particles.length];     // charge to rest mass ratio
+        double[] invC2 = new double[particles.length];  // 1 / c^2, zero in Newtonian mechanics
 
         for (int i = 0; i < particles.length;  i++){
-            accelerators[i] = new ParticleAccelerator((ChargedParticle)particles[i], field);
+            ChargedParticle particle = (ChargedParticle)particles[i];
+            accelerators[i] = new ParticleAccelerator(particle, field);
+            qm[i] = particle.getCharge() / particle.getRestMass();
+            invC2[i] = 1D / (particle.getLightSpeed() * particle.getLightSpeed());
         }
 
-    }
+        ParticleStore store = bunch.getStore();
+        double[] ex = new double[particles.length], ey = new double[particles.length], ez = new double[particles.length];
+        double[] bx = new double[particles.length], by = new double[particles.length], bz = new double[particles.length];
+        double[] ax = store.ax(), ay = store.ay(), az = store.az();
+        double[] a = new double[3 * particles.length]; // acceleration of particle i at 3i, written by the kernel
+
+        system = new IVPSystem(accelerators) {
+            @Override
+            protected void stage(double t, double[] y) {
+                // expose stage positions to the field of the bunch
+                double[] rx = store.x(), ry = store.y(), rz = store.z();
+                for (int i = 0; i < rx.length; i++) {
+                    rx[i] = y[6 * i];
+                    ry[i] = y[6 * i + 1];
+                    rz[i] = y[6 * i + 2];
+                }
+                if (spaceCharge != null) {
+                    spaceCharge.update();
+                }
+            }
 
-    public void solve(IVPSolver solver, double time){
+            /**
+             * Evaluates field at the stage positions of the particles of a block in one call
+             */
+            private void evaluate(double t, int from, int to){
+                for (int i = from; i < to; i++) {
+                    ex[i] = ey[i] = ez[i] = bx[i] = by[i] = bz[i] = 0;
+                }
+                field.addFields(t, store.x(), store.y(), store.z(), ex, ey, ez, bx, by, bz, from, to);
+            }
 
-        double h = solver.stepSize();
+            @Override
+            public void derivative(double t, double[] y, double[] dydt) {
+                stage(t, y);
+                forEachBlock((block, from, to) -> {
+                    evaluate(t, from, to);
+                    for (int i = from; i < to; i++) {
+                        int n = 6 * i;
+                        dydt[n] = y[n + 3];
+                        dydt[n + 1] = y[n + 4];
+                        dydt[n + 2] = y[n + 5];
+                        ParticleAccelerator.acceleration(qm[i], invC2[i], y[n + 3], y[n + 4], y[n + 5],
+                                ex[i], ey[i], ez[i], bx[i], by[i], bz[i], dydt, n + 3);
+                    }
+                });
+            }
 
-        while (time > 0) {
+            @Override
+            public void fields(double t, double[] y, double[] e, double[] b) {
+                stage(t, y);
+                forEachBlock((block, from, to) -> {
+                    evaluate(t, from, to);
+                    for (int i = from; i < to; i++) {
+                        e[3 * i] = ex[i];
+                        e[3 * i + 1] = ey[i];
+                        e[3 * i + 2] = ez[i];
+                        b[3 * i] = bx[i];
+                        b[3 * i + 1] = by[i];
+                        b[3 * i + 2] = bz[i];
+                    }
+                });
+            }
 
-            for (ParticleAccelerator accelerator : accelerators) {
-                accelerator.solve(solver, h);
+            /**
+             * Moves the particles of a block to the state reached (already staged) and sets their
+             * accelerations there from one evaluation of the field
+             */
+            @Override
+            protected void advance(double t, double[] y, double h, int block, int from, int to) {
+                evaluate(t, from, to);
+                for (int i = from; i < to; i++) {
+                    move(y, h, block, i);
+                    ParticleAccelerator.acceleration(qm[i], invC2[i], y[6 * i + 3], y[6 * i + 4], y[6 * i + 5],
+                            ex[i], ey[i], ez[i], bx[i], by[i], bz[i], a, 3 * i);
+                    ax[i] = a[3 * i];
+                    ay[i] = a[3 * i + 1];
+                    az[i] = a[3 * i + 2];
+                }
             }
+        };
+    }
 
-            time -= h;
-            hasChanged();
-            notifyObservers();
-        }
+    /**
+     * Adds listener called after every step of solve with the state of the bunch,
+     * particle i at y[6i] .. y[6i + 5] (see IVPSystem.addStepListener)
+     * @param listener step listener
+     * @return this bunch accelerator
+     */
+    public BunchAccelerator addStepListener(StepListener listener){
+        system.addStepListener(listener);
+        return this;
+    }
+
+    /**
+     * Removes step listener
+     * @param listener step listener
+     * @return this bunch accelerator
+     */
+    public BunchAccelerator removeStepListener(StepListener listener){
+        system.removeStepListener(listener);
+        return this;
+    }
+
+    /**
+     * Sets pool in which blocks of particles are stepped in parallel
+     * @param pool fork/join pool, or null to step serially
+     * @return this bunch accelerator
+     */
+    public BunchAccelerator setPool(ForkJoinPool pool){
+        system.setPool(pool);
+        return this;
+    }
+
+    /**
+     * Sets number of consecutive particles stepped together by one task
+     * @param blockSize particles per block
+     * @return this bunch accelerator
+     */
+    public BunchAccelerator setBlockSize(int blockSize){
+        system.setBlockSize(blockSize);
+        return this;
+    }
+
+    public void solve(IVPSolver solver, double time){
+        system.solve(solver, time);
     }
 
 
@@ -1,6 +1,7 @@
 package acceleratorphysics;
 
 import acceleratorphysics.fields.EMField;
+import acceleratorphysics.numerical.LorentzSystem;
 import acceleratorphysics.particles.ChargedParticle;
 import acceleratorphysics.particles.Newton2ndLaw;
 import acceleratorphysics.util.Vector3;
@@ -8,10 +9,14 @@ import acceleratorphysics.util.Vector3;
 /**
  * Initial value problem for a charged particle in an electromagnetic field.
  */
-public class ParticleAccelerator extends Newton2ndLaw {
+public class ParticleAccelerator extends Newton2ndLaw implements LorentzSystem {
 
     private final EMField field;
 
+    private final double qm;     // charge to rest mass ratio
+    private final double invC2;  // 1 / c^2, zero in Newtonian mechanics
+    private final double[] eb = new double[6]; // scratch, an IVP is evaluated by one thread at a time
+
     /**
      * Constructs a particle accelerator initial value problem of a charged particle in an electromagnetic field
      * @param chargedParticle charged particle
@@ -20,6 +25,9 @@ public class ParticleAccelerator extends Newton2ndLaw {
     public ParticleAccelerator(ChargedParticle chargedParticle, EMField field){
         super(chargedParticle);
         this.field = field;
+        qm = chargedParticle.getCharge() / chargedParticle.getRestMass();
+        double c = chargedParticle.getLightSpeed();
+        invC2 = 1D / (c * c);
     }
 
     @Override
@@ -29,4 +37,79 @@ public class ParticleAccelerator extends Newton2ndLaw {
         return particle.getAcceleration(field.lorentzForce(Q, v, r, t));
     }
 
+    /**
+     * Evaluates E and B together at the position of y and the acceleration due to them, without allocating
+     */
+    @Override
+    protected void acceleration(double t, double[] y, double[] a){
+        field.fields(y[0], y[1], y[2], t, eb);
+        acceleration(qm, invC2, y[3], y[4], y[5], eb[0], eb[1], eb[2], eb[3], eb[4], eb[5], a, 0);
+    }
+
+    /**
+     * Sets a[offset .. offset+2] to acceleration of a body with velocity v in electric field E and magnetic field B,
+     *
+     *      a = qm sqrt(1 - v^2 / c^2) (E + v x B - v (v . E) / c^2)
+     *
+     * which is the Newtonian qm (E + v x B) when 1 / c^2 is zero.
+     * The fields may have been evaluated already, e.g. for a whole bunch by EMField.addFields.
+     * @param qm charge to rest mass ratio
+     * @param invC2 1 / c^2 (zero in Newtonian mechanics)
+     * @param vx x component of velocity
+     * @param vy y component of velocity
+     * @param vz z component of velocity
+     * @param ex x component of electric field
+     * @param ey y component of electric field
+     * @param ez z component of electric field
+     * @param bx x component of magnetic field
+     * @param by y component of magnetic field
+     * @param bz z component of magnetic field
+     * @param a acceleration (overwritten)
+     * @param offset index in a of x component
+     */
+    public static void acceleration(double qm, double invC2, double vx, double vy, double vz,
+                             double ex, double ey, double ez, double bx, double by, double bz,
+                             double[] a, int offset){
+        double s = qm;
+        double fx = ex + vy * bz - vz * by;
+        double fy = ey + vz * bx - vx * bz;
+        double fz = ez + vx * by - vy * bx;
+        if (invC2 != 0) {
+            double ve = (vx * ex + vy * ey + vz * ez) * invC2;
+            fx -= vx * ve;
+            fy -= vy * ve;
+            fz -= vz * ve;
+            s *= Math.sqrt(1D - (vx * vx + vy * vy + vz * vz) * invC2);
+        }
+        a[offset] = s * fx;
+        a[offset + 1] = s * fy;
+        a[offset + 2] = s * fz;
+    }
+
+    /**
+     * Evaluates E and B together at the position of y
+     */
+    @Override
+    public void fields(double t, double[] y, double[] e, double[] b){
+        field.fields(y[0], y[1], y[2], t, eb);
+        System.arraycopy(eb, 0, e, 0, 3);
+        System.arraycopy(eb, 3, b, 0, 3);
+    }
+
+    @Override
+    public boolean uniformFields(){
+        return field.isUniform();
+    }
+
+    @Override
+    public void chargeToMass(double[] qm){
+        ChargedParticle particle = (ChargedParticle)getParticle();
+        qm[0] = particle.getCharge() / particle.getRestMass();
+    }
+
+    @Override
+    public void lightSpeed(double[] c){
+        c[0] = getParticle().getLightSpeed();
+    }
+
 }
@@ -39,12 +39,12 @@ public class Demo0 {
 
         // Set IVP to print position of proton & time at each revolution
         OrbitTracker tracker = new OrbitTracker(proton);
-        cyclotron.addObserver(
-                (o, arg) -> {
+        cyclotron.addStepListener(
+                (t, step, y) -> {
                     if (tracker.hasOrbited()){
                         System.out.println(
                                 "Orbit:    " + tracker.getOrbitCount() + "\n"
-                                + "Time :    " + cyclotron.t() + " s\n"
+                                + "Time :    " + t + " s\n"
                                 + "Position: " + proton.getPosition() + "\n\n"
                         );
                     }
@@ -6,18 +6,16 @@ import acceleratorphysics.fields.Type;
 import acceleratorphysics.fields.Uniform;
 import acceleratorphysics.numerical.IVP;
 import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.numerical.StepListener;
 import acceleratorphysics.particles.ChargedParticle;
-import acceleratorphysics.particles.Particle;
 import acceleratorphysics.particles.ParticleFactory;
 import acceleratorphysics.particles.State;
+import acceleratorphysics.util.TrajectoryRecorder;
+import acceleratorphysics.util.TrajectoryWriter;
 import acceleratorphysics.util.Vector3;
-import acceleratorphysics.util.VectorWriter;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Observable;
-import java.util.Observer;
 
 
 public class Demo1 {
@@ -32,14 +30,13 @@ public class Demo1 {
 
         IVP protonInMagneticField = new ParticleAccelerator(particle, magneticField);
 
-        try ( VectorWriter writer = new VectorWriter(
-                    Files.newOutputStream(
-                            Paths.get("proton-trajectory.dat")
-                    )
-              )
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder.Builder(
+                new TrajectoryWriter.Builder(Paths.get("proton-trajectory.traj"), 1).open()).start()
         ) {
-            protonInMagneticField.addObserver(pathRecorder(particle, writer));
-            protonInMagneticField.solve(IVPSolver.midpoint(), 100);
+            // written off the solving thread
+            protonInMagneticField.addStepListener(pathRecorder(recorder));
+            // exact in the uniform field, so the step only sets how often the path is recorded
+            protonInMagneticField.solve(IVPSolver.exactUniform(1e-2), 100);
 
         } catch (IOException ex) {
             ex.printStackTrace(System.err);
@@ -47,15 +44,13 @@ public class Demo1 {
 
     }
 
-    private static Observer pathRecorder(Particle particle, VectorWriter writer){
-        return new Observer() {
-            @Override
-            public void update(Observable o, Object arg) {
-                try {
-                    writer.writeVector(particle.getPosition());
-                } catch (IOException ex) {
-                    ex.printStackTrace(System.err);
-                }
+    private static StepListener pathRecorder(TrajectoryRecorder recorder){
+        // state of the IVP is position then velocity, as recorded
+        return (t, step, y) -> {
+            try {
+                recorder.record(t, y);
+            } catch (IOException ex) {
+                ex.printStackTrace(System.err);
             }
         };
     }
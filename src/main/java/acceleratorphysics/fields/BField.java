@@ -11,4 +11,13 @@ public abstract class BField extends EMField {
     public Vector3 E(Vector3 r, double t){
         return Vector3.ZERO;
     }
+
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        Vector3 B = B(new Vector3(x, y, z), t);
+        eb[0] = eb[1] = eb[2] = 0;
+        eb[3] = B.getX();
+        eb[4] = B.getY();
+        eb[5] = B.getZ();
+    }
 }
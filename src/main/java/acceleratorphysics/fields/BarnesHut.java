@@ -0,0 +1,298 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.util.Vector3;
+
+import java.util.Arrays;
+
+/**
+ * Space charge field approximated by a Barnes-Hut octree, evaluated in O(log N) per point.
+ * A cell of width s at distance d from the point of evaluation is treated as a point charge
+ * at its centre of charge when s / d is less than the opening angle; otherwise its children are opened.
+ * A cell containing the point is always opened, as the point may lie close to its charges
+ * however far it is from their centre (and one of them may be the point itself).
+ * Cells hold up to LEAF_SIZE charges, which are summed directly.
+ *
+ * The centre of charge is weighted by |q|, so the approximation is a monopole
+ * expansion which is exact in the limit of zero opening angle.
+ */
+public class BarnesHut extends SpaceCharge {
+
+    /**
+     * Maximum number of charges in a leaf cell (unless at maximum depth)
+     */
+    static final int LEAF_SIZE = 8;
+
+    /**
+     * Maximum depth of tree (coincident charges share a leaf at this depth)
+     */
+    static final int MAX_DEPTH = 32;
+
+    private final double theta2;   // square of opening angle
+    private final double epsilon2; // square of softening length
+
+    private final int[] next;      // next charge in list of leaf
+
+    // Cells
+    private int cells;
+    private double[] cx, cy, cz, half; // geometric centre and half width
+    private double[] qx, qy, qz;       // centre of charge
+    private double[] q;                // total charge
+    private int[] children;            // 8 per cell, -1 if absent
+    private int[] head;                // first charge in list of leaf, -1 if empty
+    private int[] count;               // number of charges in leaf
+    private boolean[] internal;        // true once a cell is split
+
+    /**
+     * Constructs Barnes-Hut space charge field of the charges of store
+     * @param store particle store
+     * @param openingAngle opening angle (0 for direct summation, typically 0.3 - 1)
+     * @param softening softening length
+     */
+    public BarnesHut(ParticleStore store, double openingAngle, double softening){
+        super(store);
+        if (openingAngle < 0 || softening < 0) {
+            throw new IllegalArgumentException("Opening angle and softening length must be non-negative.");
+        }
+        theta2 = openingAngle * openingAngle;
+        epsilon2 = softening * softening;
+        next = new int[store.size()];
+        allocate(Math.max(64, store.size() / 2));
+        update();
+    }
+
+    /**
+     * Constructs Barnes-Hut space charge field of the charges of store without softening
+     * @param store particle store
+     * @param openingAngle opening angle
+     */
+    public BarnesHut(ParticleStore store, double openingAngle){
+        this(store, openingAngle, 0);
+    }
+
+    /**
+     * (Re)allocates arrays of cells
+     * @param capacity number of cells
+     */
+    private void allocate(int capacity){
+        cx = Arrays.copyOf(cx == null ? new double[0] : cx, capacity);
+        cy = Arrays.copyOf(cy == null ? new double[0] : cy, capacity);
+        cz = Arrays.copyOf(cz == null ? new double[0] : cz, capacity);
+        half = Arrays.copyOf(half == null ? new double[0] : half, capacity);
+        qx = Arrays.copyOf(qx == null ? new double[0] : qx, capacity);
+        qy = Arrays.copyOf(qy == null ? new double[0] : qy, capacity);
+        qz = Arrays.copyOf(qz == null ? new double[0] : qz, capacity);
+        q = Arrays.copyOf(q == null ? new double[0] : q, capacity);
+        children = Arrays.copyOf(children == null ? new int[0] : children, 8 * capacity);
+        head = Arrays.copyOf(head == null ? new int[0] : head, capacity);
+        count = Arrays.copyOf(count == null ? new int[0] : count, capacity);
+        internal = Arrays.copyOf(internal == null ? new boolean[0] : internal, capacity);
+    }
+
+    /**
+     * Appends empty leaf cell
+     * @return index of cell
+     */
+    private int newCell(double x, double y, double z, double h){
+        if (cells == half.length) {
+            allocate(2 * cells);
+        }
+        int cell = cells++;
+        cx[cell] = x;
+        cy[cell] = y;
+        cz[cell] = z;
+        half[cell] = h;
+        Arrays.fill(children, 8 * cell, 8 * cell + 8, -1);
+        head[cell] = -1;
+        count[cell] = 0;
+        internal[cell] = false;
+        return cell;
+    }
+
+    /**
+     * Returns child of cell containing (x, y, z), creating it if absent
+     */
+    private int child(int cell, double x, double y, double z){
+        int octant = (x >= cx[cell] ? 1 : 0) | (y >= cy[cell] ? 2 : 0) | (z >= cz[cell] ? 4 : 0);
+        int child = children[8 * cell + octant];
+        if (child < 0) {
+            double h = 0.5 * half[cell];
+            child = newCell(
+                    cx[cell] + ((octant & 1) != 0 ? h : -h),
+                    cy[cell] + ((octant & 2) != 0 ? h : -h),
+                    cz[cell] + ((octant & 4) != 0 ? h : -h),
+                    h
+            );
+            children[8 * cell + octant] = child; // cell arrays may have been reallocated
+        }
+        return child;
+    }
+
+    /**
+     * Pushes charge i onto list of leaf, splitting leaf if full
+     */
+    private void push(int leaf, int i, int depth){
+        next[i] = head[leaf];
+        head[leaf] = i;
+        if (++count[leaf] > LEAF_SIZE && depth < MAX_DEPTH) {
+            split(leaf, depth);
+        }
+    }
+
+    /**
+     * Moves charges of leaf into its children
+     */
+    private void split(int leaf, int depth){
+        double[] x = store.x(), y = store.y(), z = store.z();
+        internal[leaf] = true;
+        int i = head[leaf];
+        head[leaf] = -1;
+        count[leaf] = 0;
+        while (i >= 0) {
+            int following = next[i];
+            push(child(leaf, x[i], y[i], z[i]), i, depth + 1);
+            i = following;
+        }
+    }
+
+    @Override
+    public void update(){
+
+        double[] x = store.x(), y = store.y(), z = store.z(), charge = store.charge();
+        int n = store.size();
+
+        // Bounding cube
+        double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            minZ = Math.min(minZ, z[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+            maxZ = Math.max(maxZ, z[i]);
+        }
+        double h = 0.5 * Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        h = (h > 0) ? h * (1 + 1E-9) : 1;
+
+        // Insert charges
+        cells = 0;
+        int root = newCell(0.5 * (minX + maxX), 0.5 * (minY + maxY), 0.5 * (minZ + maxZ), h);
+        for (int i = 0; i < n; i++) {
+            int cell = root;
+            int depth = 0;
+            while (internal[cell]) {
+                cell = child(cell, x[i], y[i], z[i]);
+                depth++;
+            }
+            push(cell, i, depth);
+        }
+
+        // Moments bottom up (children are appended after their parents)
+        for (int cell = cells - 1; cell >= 0; cell--) {
+            double total = 0, weight = 0, wx = 0, wy = 0, wz = 0;
+            if (internal[cell]) {
+                for (int c = 8 * cell; c < 8 * cell + 8; c++) {
+                    int child = children[c];
+                    if (child < 0) continue;
+                    double w = Math.abs(q[child]);
+                    total += q[child];
+                    weight += w;
+                    wx += w * qx[child];
+                    wy += w * qy[child];
+                    wz += w * qz[child];
+                }
+            } else {
+                for (int i = head[cell]; i >= 0; i = next[i]) {
+                    double w = Math.abs(charge[i]);
+                    total += charge[i];
+                    weight += w;
+                    wx += w * x[i];
+                    wy += w * y[i];
+                    wz += w * z[i];
+                }
+            }
+            q[cell] = total;
+            qx[cell] = (weight > 0) ? wx / weight : cx[cell];
+            qy[cell] = (weight > 0) ? wy / weight : cy[cell];
+            qz[cell] = (weight > 0) ? wz / weight : cz[cell];
+        }
+    }
+
+    /**
+     * Adds field at displacement (dx, dy, dz) from point charge Q to e (in units of Coulomb's constant)
+     */
+    private void add(double[] e, double dx, double dy, double dz, double Q){
+        double r2 = dx * dx + dy * dy + dz * dz + epsilon2;
+        if (r2 == 0) return; // the charge itself
+        double s = Q / (r2 * Math.sqrt(r2));
+        e[0] += s * dx;
+        e[1] += s * dy;
+        e[2] += s * dz;
+    }
+
+    /**
+     * Adds field of cell at (px, py, pz) to e
+     */
+    private void accumulate(int cell, double px, double py, double pz, double[] e){
+
+        if (!internal[cell]) {
+            double[] x = store.x(), y = store.y(), z = store.z(), charge = store.charge();
+            for (int i = head[cell]; i >= 0; i = next[i]) {
+                add(e, px - x[i], py - y[i], pz - z[i], charge[i]);
+            }
+            return;
+        }
+
+        double dx = px - qx[cell];
+        double dy = py - qy[cell];
+        double dz = pz - qz[cell];
+        double width = 2 * half[cell];
+        boolean outside = Math.abs(px - cx[cell]) > half[cell] || Math.abs(py - cy[cell]) > half[cell]
+                || Math.abs(pz - cz[cell]) > half[cell];
+
+        if (outside && width * width < theta2 * (dx * dx + dy * dy + dz * dz)) {
+            add(e, dx, dy, dz, q[cell]);
+            return;
+        }
+
+        for (int c = 8 * cell; c < 8 * cell + 8; c++) {
+            if (children[c] >= 0) {
+                accumulate(children[c], px, py, pz, e);
+            }
+        }
+    }
+
+    @Override
+    public Vector3 E(Vector3 r, double t){
+        double[] e = new double[3];
+        accumulate(0, r.getX(), r.getY(), r.getZ(), e);
+        return new Vector3(COULOMB * e[0], COULOMB * e[1], COULOMB * e[2]);
+    }
+
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        for (int m = 0; m < 6; m++) {
+            eb[m] = 0;
+        }
+        accumulate(0, x, y, z, eb);
+        eb[0] *= COULOMB;
+        eb[1] *= COULOMB;
+        eb[2] *= COULOMB;
+    }
+
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        double[] e = new double[3];
+        for (int i = from; i < to; i++) {
+            e[0] = e[1] = e[2] = 0;
+            accumulate(0, x[i], y[i], z[i], e);
+            ex[i] += COULOMB * e[0];
+            ey[i] += COULOMB * e[1];
+            ez[i] += COULOMB * e[2];
+        }
+    }
+
+}
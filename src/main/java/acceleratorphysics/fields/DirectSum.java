@@ -0,0 +1,125 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Space charge field summed directly over every charge in O(N) per point.
+ * Exact (up to softening) and the cheapest space charge field for small bunches;
+ * see BarnesHut and ParticleInCell for large ones.
+ *
+ * The positions are read from the store when the field is evaluated, so update() has nothing to do.
+ */
+public class DirectSum extends SpaceCharge {
+
+    private final double epsilon2; // square of softening length
+
+    /**
+     * Constructs directly summed space charge field of the charges of store
+     * @param store particle store
+     * @param softening softening length
+     */
+    public DirectSum(ParticleStore store, double softening){
+        super(store);
+        if (softening < 0) {
+            throw new IllegalArgumentException("Softening length must be non-negative.");
+        }
+        epsilon2 = softening * softening;
+    }
+
+    /**
+     * Constructs directly summed space charge field of the charges of store without softening
+     * @param store particle store
+     */
+    public DirectSum(ParticleStore store){
+        this(store, 0);
+    }
+
+    @Override
+    public void update(){
+    }
+
+    @Override
+    public Vector3 E(Vector3 r, double t){
+        double[] e = new double[3];
+        field(store.x(), store.y(), store.z(), store.charge(), 0, store.size(),
+                r.getX(), r.getY(), r.getZ(), epsilon2, e);
+        return new Vector3(COULOMB * e[0], COULOMB * e[1], COULOMB * e[2]);
+    }
+
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        double[] e = new double[3];
+        for (int i = from; i < to; i++) {
+            e[0] = e[1] = e[2] = 0;
+            field(store.x(), store.y(), store.z(), store.charge(), 0, store.size(), x[i], y[i], z[i], epsilon2, e);
+            ex[i] += COULOMB * e[0];
+            ey[i] += COULOMB * e[1];
+            ez[i] += COULOMB * e[2];
+        }
+    }
+
+    /**
+     * Adds field at (px, py, pz) of the point charges q[i] at (x[i], y[i], z[i]), from <= i < to,
+     * in units of Coulomb's constant to e:
+     *
+     *      e += sum q[i] (p - r[i]) / (|p - r[i]|^2 + epsilon^2)^(3/2)
+     *
+     * A charge at p itself (zero distance without softening) contributes nothing.
+     * The loop is branch free over flat arrays so that the JIT may vectorise it.
+     * @param x x coordinates of charges
+     * @param y y coordinates of charges
+     * @param z z coordinates of charges
+     * @param q charges
+     * @param from first charge
+     * @param to end of charges (exclusive)
+     * @param px x coordinate of point
+     * @param py y coordinate of point
+     * @param pz z coordinate of point
+     * @param epsilon2 square of softening length
+     * @param e field (added to)
+     */
+    public static void field(double[] x, double[] y, double[] z, double[] q, int from, int to,
+                             double px, double py, double pz, double epsilon2, double[] e){
+        double ex = 0, ey = 0, ez = 0;
+        for (int i = from; i < to; i++) {
+            double dx = px - x[i];
+            double dy = py - y[i];
+            double dz = pz - z[i];
+            double r2 = dx * dx + dy * dy + dz * dz + epsilon2;
+            double s = (r2 > 0) ? q[i] / (r2 * Math.sqrt(r2)) : 0;
+            ex += s * dx;
+            ey += s * dy;
+            ez += s * dz;
+        }
+        e[0] += ex;
+        e[1] += ey;
+        e[2] += ez;
+    }
+
+    /**
+     * Electrostatic potential energy of the charges of store (each pair counted once, coincident pairs skipped)
+     * @param store particle store
+     * @return potential energy
+     */
+    public static double potentialEnergy(ParticleStore store){
+        double[] x = store.x(), y = store.y(), z = store.z(), q = store.charge();
+        int n = store.size();
+        double energy = 0;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = i + 1; j < n; j++) {
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                double dz = z[i] - z[j];
+                double r2 = dx * dx + dy * dy + dz * dz;
+                sum += (r2 > 0) ? q[j] / Math.sqrt(r2) : 0;
+            }
+            energy += q[i] * sum;
+        }
+        return COULOMB * energy;
+    }
+
+}
@@ -10,4 +10,13 @@ public abstract class EField extends EMField{
     public Vector3 B(Vector3 r, double t){
         return Vector3.ZERO;
     }
+
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        Vector3 E = E(new Vector3(x, y, z), t);
+        eb[0] = E.getX();
+        eb[1] = E.getY();
+        eb[2] = E.getZ();
+        eb[3] = eb[4] = eb[5] = 0;
+    }
 }
@@ -9,9 +9,103 @@ import acceleratorphysics.particles.ChargedParticle;
  */
 public abstract class EMField {
 
+    // Scratch of lorentzForce(), which calls no other lorentzForce while it is in use
+    private static final ThreadLocal<double[]> LORENTZ_EB = ThreadLocal.withInitial(() -> new double[6]);
+
     protected abstract Vector3 E(Vector3 r, double t);
     protected abstract Vector3 B(Vector3 r, double t);
 
+    /**
+     * Returns electric field at r at time t
+     * @param r position
+     * @param t time
+     * @return electric field
+     */
+    public Vector3 electricField(Vector3 r, double t){
+        return E(r, t);
+    }
+
+    /**
+     * Returns magnetic field at r at time t
+     * @param r position
+     * @param t time
+     * @return magnetic field
+     */
+    public Vector3 magneticField(Vector3 r, double t){
+        return B(r, t);
+    }
+
+    /**
+     * Evaluates electric and magnetic field at (x, y, z) at time t together into eb.
+     * Fields which share work between E and B (e.g. a cavity test or an interpolation)
+     * override this so that the work is done once.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @param t time
+     * @param eb eb[0..2] = E, eb[3..5] = B (overwritten)
+     */
+    public void fields(double x, double y, double z, double t, double[] eb){
+        Vector3 r = new Vector3(x, y, z);
+        Vector3 E = E(r, t);
+        Vector3 B = B(r, t);
+        eb[0] = E.getX();
+        eb[1] = E.getY();
+        eb[2] = E.getZ();
+        eb[3] = B.getX();
+        eb[4] = B.getY();
+        eb[5] = B.getZ();
+    }
+
+    /**
+     * Adds electric and magnetic field at time t at the points (x[i], y[i], z[i]), from <= i < to,
+     * to (ex[i], ey[i], ez[i]) and (bx[i], by[i], bz[i]).
+     * Evaluating many points in one call amortises dispatch and work that depends only on time;
+     * fields override this with loops over the arrays.
+     * @param t time
+     * @param x x coordinates of points
+     * @param y y coordinates of points
+     * @param z z coordinates of points
+     * @param ex x component of electric field (added to)
+     * @param ey y component of electric field (added to)
+     * @param ez z component of electric field (added to)
+     * @param bx x component of magnetic field (added to)
+     * @param by y component of magnetic field (added to)
+     * @param bz z component of magnetic field (added to)
+     * @param from first point
+     * @param to end of points (exclusive)
+     */
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        double[] eb = new double[6];
+        for (int i = from; i < to; i++) {
+            fields(x[i], y[i], z[i], t, eb);
+            ex[i] += eb[0];
+            ey[i] += eb[1];
+            ez[i] += eb[2];
+            bx[i] += eb[3];
+            by[i] += eb[4];
+            bz[i] += eb[5];
+        }
+    }
+
+    /**
+     * Returns true if field is the same everywhere and at all times, false unless overridden
+     * @return true if field is uniform and constant
+     */
+    public boolean isUniform(){
+        return false;
+    }
+
+    /**
+     * Returns box outside which field is zero at all times, everywhere unless overridden
+     * @return support of field
+     */
+    public Support getSupport(){
+        return Support.EVERYWHERE;
+    }
+
     /**
      * Returns lorentz force on a charged particle at time t
      * @param p particle
@@ -34,7 +128,14 @@ public abstract class EMField {
      * @return lorentz force
      */
     public Vector3 lorentzForce(double q, Vector3 v, Vector3 r, double t){
-        return v.cross(B(r,t)).add(E(r,t)).scale(q);
+        double[] eb = LORENTZ_EB.get();
+        fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        double vx = v.getX(), vy = v.getY(), vz = v.getZ();
+        return new Vector3(
+                q * (eb[0] + vy * eb[5] - vz * eb[4]),
+                q * (eb[1] + vz * eb[3] - vx * eb[5]),
+                q * (eb[2] + vx * eb[4] - vy * eb[3])
+        );
     }
 
 }
@@ -0,0 +1,313 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Electromagnetic field interpolated from values on the nodes of a regular nx * ny * nz grid (a field map).
+ * Node (i, j, k) is at origin + (i hx, j hy, k hz). The six components Ex, Ey, Ez, Bx, By, Bz of a node
+ * are stored consecutively and nodes are stored with index (i * ny + j) * nz + k, so that an
+ * interpolation reads a few short runs of memory. The field is zero outside the grid.
+ *
+ * The map may be scaled in time by sin(frequency * t + phase), as the field of a cavity (see Sinusoid).
+ */
+public class FieldMap extends EMField {
+
+    /**
+     * Enumeration of interpolation schemes
+     */
+    public enum Interpolation {
+
+        /**
+         * Trilinear interpolation of the 8 nodes of the cell (continuous, exact for linear fields)
+         */
+        TRILINEAR,
+
+        /**
+         * Tricubic (Catmull-Rom) interpolation of the 64 nodes around the cell
+         * (continuously differentiable, exact for quadratic fields away from the boundary)
+         */
+        TRICUBIC
+    }
+
+    private static final int COMPONENTS = 6;
+
+    private final int nx, ny, nz;
+    private final double x0, y0, z0;
+    private final double hx, hy, hz;
+    private final Interpolation interpolation;
+
+    private final boolean harmonic;
+    private final double frequency; // angular
+    private final double phase;
+
+    private final double[] values;
+
+    private FieldMap(int nx, int ny, int nz, Vector3 origin, double hx, double hy, double hz,
+                     Interpolation interpolation, boolean harmonic, double frequency, double phase){
+        this.nx = nx;
+        this.ny = ny;
+        this.nz = nz;
+        this.x0 = origin.getX();
+        this.y0 = origin.getY();
+        this.z0 = origin.getZ();
+        this.hx = hx;
+        this.hy = hy;
+        this.hz = hz;
+        this.interpolation = interpolation;
+        this.harmonic = harmonic;
+        this.frequency = frequency;
+        this.phase = phase;
+        this.values = new double[COMPONENTS * nx * ny * nz];
+    }
+
+    /**
+     * FieldMap Builder
+     */
+    public static class Builder {
+
+        private final int nx, ny, nz;
+        private Vector3 origin = Vector3.ZERO;
+        private double hx = 1, hy = 1, hz = 1;
+        private Interpolation interpolation = Interpolation.TRILINEAR;
+        private boolean harmonic;
+        private double frequency, phase;
+
+        /**
+         * Constructs builder of field map of nx * ny * nz nodes
+         * @param nx number of nodes along x (at least 2)
+         * @param ny number of nodes along y (at least 2)
+         * @param nz number of nodes along z (at least 2)
+         */
+        public Builder(int nx, int ny, int nz){
+            if (nx < 2 || ny < 2 || nz < 2) {
+                throw new IllegalArgumentException("Field map needs at least 2 nodes along each axis.");
+            }
+            this.nx = nx;
+            this.ny = ny;
+            this.nz = nz;
+        }
+
+        public Builder setOrigin(Vector3 r){
+            origin = r;
+            return this;
+        }
+
+        public Builder setSpacing(double hx, double hy, double hz){
+            if (!(hx > 0 && hy > 0 && hz > 0)) {
+                throw new IllegalArgumentException("Grid spacing must be positive.");
+            }
+            this.hx = hx;
+            this.hy = hy;
+            this.hz = hz;
+            return this;
+        }
+
+        public Builder setInterpolation(Interpolation interpolation){
+            this.interpolation = interpolation;
+            return this;
+        }
+
+        /**
+         * Scales field by sin(omega * t + phi)
+         * @param omega angular frequency
+         * @param phi phase
+         * @return this builder
+         */
+        public Builder setHarmonic(double omega, double phi){
+            harmonic = true;
+            frequency = omega;
+            phase = phi;
+            return this;
+        }
+
+        /**
+         * Builds field map whose nodes are all zero
+         * @return field map
+         */
+        public FieldMap build(){
+            return new FieldMap(nx, ny, nz, origin, hx, hy, hz, interpolation, harmonic, frequency, phase);
+        }
+    }
+
+    /**
+     * Index of first component of node (i, j, k) in values
+     */
+    private int node(int i, int j, int k){
+        return COMPONENTS * ((i * ny + j) * nz + k);
+    }
+
+    /**
+     * Sets electric and magnetic field at node (i, j, k)
+     * @param i index along x
+     * @param j index along y
+     * @param k index along z
+     * @param E electric field
+     * @param B magnetic field
+     */
+    public void set(int i, int j, int k, Vector3 E, Vector3 B){
+        int n = node(i, j, k);
+        values[n] = E.getX();
+        values[n + 1] = E.getY();
+        values[n + 2] = E.getZ();
+        values[n + 3] = B.getX();
+        values[n + 4] = B.getY();
+        values[n + 5] = B.getZ();
+    }
+
+    /**
+     * Sets every node to the value of field at that node at time t
+     * @param field field to sample
+     * @param t time
+     * @return this field map
+     */
+    public FieldMap sample(EMField field, double t){
+        for (int i = 0; i < nx; i++) {
+            for (int j = 0; j < ny; j++) {
+                for (int k = 0; k < nz; k++) {
+                    Vector3 r = new Vector3(x0 + i * hx, y0 + j * hy, z0 + k * hz);
+                    set(i, j, k, field.E(r, t), field.B(r, t));
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Evaluates electric and magnetic field at (x, y, z) at time t into eb without allocating
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @param t time
+     * @param eb eb[0..2] = E, eb[3..5] = B (overwritten)
+     */
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+
+        double gx = (x - x0) / hx;
+        double gy = (y - y0) / hy;
+        double gz = (z - z0) / hz;
+
+        if (!(gx >= 0 && gy >= 0 && gz >= 0 && gx <= nx - 1 && gy <= ny - 1 && gz <= nz - 1)) {
+            for (int c = 0; c < COMPONENTS; c++) {
+                eb[c] = 0;
+            }
+            return;
+        }
+
+        // Cell (i, j, k) with fractional coordinates (fx, fy, fz) in [0, 1]
+        int i = Math.min((int) gx, nx - 2);
+        int j = Math.min((int) gy, ny - 2);
+        int k = Math.min((int) gz, nz - 2);
+        double fx = gx - i, fy = gy - j, fz = gz - k;
+
+        if (interpolation == Interpolation.TRILINEAR) {
+            trilinear(i, j, k, fx, fy, fz, eb);
+        } else {
+            tricubic(i, j, k, fx, fy, fz, eb);
+        }
+
+        if (harmonic) {
+            double s = Math.sin(frequency * t + phase);
+            for (int c = 0; c < COMPONENTS; c++) {
+                eb[c] *= s;
+            }
+        }
+    }
+
+    private void trilinear(int i, int j, int k, double fx, double fy, double fz, double[] eb){
+
+        int n000 = node(i, j, k);
+        int n001 = n000 + COMPONENTS;
+        int n010 = node(i, j + 1, k);
+        int n011 = n010 + COMPONENTS;
+        int n100 = node(i + 1, j, k);
+        int n101 = n100 + COMPONENTS;
+        int n110 = node(i + 1, j + 1, k);
+        int n111 = n110 + COMPONENTS;
+
+        double w000 = (1 - fx) * (1 - fy) * (1 - fz), w001 = (1 - fx) * (1 - fy) * fz;
+        double w010 = (1 - fx) * fy * (1 - fz),       w011 = (1 - fx) * fy * fz;
+        double w100 = fx * (1 - fy) * (1 - fz),       w101 = fx * (1 - fy) * fz;
+        double w110 = fx * fy * (1 - fz),             w111 = fx * fy * fz;
+
+        for (int c = 0; c < COMPONENTS; c++) {
+            eb[c] = w000 * values[n000 + c] + w001 * values[n001 + c]
+                    + w010 * values[n010 + c] + w011 * values[n011 + c]
+                    + w100 * values[n100 + c] + w101 * values[n101 + c]
+                    + w110 * values[n110 + c] + w111 * values[n111 + c];
+        }
+    }
+
+    private void tricubic(int i, int j, int k, double fx, double fy, double fz, double[] eb){
+
+        for (int c = 0; c < COMPONENTS; c++) {
+            eb[c] = 0;
+        }
+
+        // Weights and offsets along z are shared by all 16 rows of the stencil
+        double wz0 = catmullRom(0, fz), wz1 = catmullRom(1, fz), wz2 = catmullRom(2, fz), wz3 = catmullRom(3, fz);
+        int kz0 = COMPONENTS * clamp(k - 1, nz), kz1 = COMPONENTS * k;
+        int kz2 = COMPONENTS * (k + 1), kz3 = COMPONENTS * clamp(k + 2, nz);
+
+        for (int a = 0; a < 4; a++) {
+            int ia = clamp(i - 1 + a, nx);
+            double wa = catmullRom(a, fx);
+            for (int b = 0; b < 4; b++) {
+                int jb = clamp(j - 1 + b, ny);
+                double wab = wa * catmullRom(b, fy);
+                int row = COMPONENTS * (ia * ny + jb) * nz;
+                for (int c = 0; c < COMPONENTS; c++) {
+                    eb[c] += wab * (wz0 * values[row + kz0 + c] + wz1 * values[row + kz1 + c]
+                            + wz2 * values[row + kz2 + c] + wz3 * values[row + kz3 + c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clamps index to [0, n - 1] (boundary nodes are repeated outward)
+     */
+    static int clamp(int index, int n){
+        return (index < 0) ? 0 : (index >= n) ? n - 1 : index;
+    }
+
+    /**
+     * Catmull-Rom weight of node m (0 to 3, node 1 at f = 0 and node 2 at f = 1) at fractional coordinate f
+     */
+    static double catmullRom(int m, double f){
+        switch (m) {
+            case 0:
+                return 0.5 * f * ((2 - f) * f - 1);
+            case 1:
+                return 0.5 * ((3 * f - 5) * f * f + 2);
+            case 2:
+                return 0.5 * f * ((4 - 3 * f) * f + 1);
+            default:
+                return 0.5 * (f - 1) * f * f;
+        }
+    }
+
+    /**
+     * Returns grid
+     */
+    @Override
+    public Support getSupport(){
+        return new Support(new Vector3(x0, y0, z0),
+                new Vector3(x0 + (nx - 1) * hx, y0 + (ny - 1) * hy, z0 + (nz - 1) * hz));
+    }
+
+    @Override
+    public Vector3 E(Vector3 r, double t){
+        double[] eb = new double[COMPONENTS];
+        fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        return new Vector3(eb[0], eb[1], eb[2]);
+    }
+
+    @Override
+    public Vector3 B(Vector3 r, double t){
+        double[] eb = new double[COMPONENTS];
+        fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        return new Vector3(eb[3], eb[4], eb[5]);
+    }
+
+}
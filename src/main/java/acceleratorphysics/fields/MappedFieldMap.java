@@ -0,0 +1,456 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Field map (see FieldMap) read from a file mapped into memory rather than copied onto the heap.
+ * The grid is divided into cubic tiles of tileSize^3 nodes, each stored contiguously in the file, so that a
+ * lookup touches one region of the file. Tiles are paged in by the operating system on first access,
+ * decoded into arrays and kept in a bounded cache. Several processes mapping the same file share its
+ * pages in the page cache.
+ *
+ * The cache is set associative: a tile may only be held in the few ways of the set its index hashes to,
+ * and is evicted from its set by the clock algorithm (an approximation of least recently used).
+ * Lookups read the ways without locking; a tile which is not cached is decoded without locking and
+ * then inserted under the lock of its set only. Each thread also keeps the tile it used last.
+ *
+ * The file is written by write(...) and holds, big-endian as written by DataOutputStream,
+ *
+ *      int magic, int version, int nx, int ny, int nz, int tileSize,
+ *      double x0, double y0, double z0, double hx, double hy, double hz,
+ *
+ * followed by the tiles in order (ti * tilesY + tj) * tilesZ + tk, each holding its nodes in order
+ * (a * tileSize + b) * tileSize + c (nodes beyond the grid are zero), each node holding Ex, Ey, Ez, Bx, By, Bz.
+ *
+ * Evaluation is safe from concurrent threads; threads share the cache of tiles.
+ */
+public class MappedFieldMap extends EMField {
+
+    private static final int MAGIC = 0x464D4150; // "FMAP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + 6 * Double.BYTES;
+    private static final int COMPONENTS = 6;
+    private static final long MAX_CHUNK_BYTES = 1L << 30; // MappedByteBuffer holds at most 2 GB
+    private static final int MAX_TILE_SIZE = 256;         // a tile of 48 * 256^3 bytes fits in a chunk
+    private static final int WAYS = 8;                    // least number of tiles per set of the cache
+
+    /**
+     * Default number of decoded tiles held in memory
+     */
+    public static final int DEFAULT_CACHED_TILES = 256;
+
+    private final int nx, ny, nz;
+    private final double x0, y0, z0;
+    private final double hx, hy, hz;
+
+    private final int shift;        // log2(tileSize)
+    private final int mask;         // tileSize - 1
+    private final int tilesY, tilesZ;
+    private final int tileDoubles;  // doubles per tile
+
+    private final MappedByteBuffer[] chunks;
+    private final int tilesPerChunk;
+
+    private final FieldMap.Interpolation interpolation;
+    private final boolean harmonic;
+    private final double frequency; // angular
+    private final double phase;
+
+    // Cache of sets * ways tiles, set s in slots [s * ways, (s + 1) * ways) and guarded for insertion by locks[s]
+    private final int sets, ways;
+    private final AtomicReferenceArray<Tile> slots;
+    private final Object[] locks;
+    private final int[] hands;  // per set: next way the clock looks at (guarded by lock of set)
+
+    private final ThreadLocal<Tile> last = new ThreadLocal<>(); // tile last used by each thread
+
+    /**
+     * Decoded tile
+     */
+    private static final class Tile {
+
+        final int key;
+        final double[] values;
+        volatile boolean referenced; // since the clock last passed it
+
+        Tile(int key, double[] values){
+            this.key = key;
+            this.values = values;
+        }
+    }
+
+    private MappedFieldMap(Builder builder) throws IOException {
+
+        this.interpolation = builder.interpolation;
+        this.harmonic = builder.harmonic;
+        this.frequency = builder.frequency;
+        this.phase = builder.phase;
+
+        try (FileChannel channel = FileChannel.open(builder.file, StandardOpenOption.READ)) {
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(builder.file + " is not a field map file.");
+            }
+            nx = header.getInt();
+            ny = header.getInt();
+            nz = header.getInt();
+            int tileSize = header.getInt();
+            x0 = header.getDouble();
+            y0 = header.getDouble();
+            z0 = header.getDouble();
+            hx = header.getDouble();
+            hy = header.getDouble();
+            hz = header.getDouble();
+
+            if (nx < 2 || ny < 2 || nz < 2 || !validTileSize(tileSize)) {
+                throw new IOException(builder.file + " has an invalid grid or tile size.");
+            }
+            if (!(Double.isFinite(x0) && Double.isFinite(y0) && Double.isFinite(z0)
+                    && hx > 0 && hy > 0 && hz > 0 && Double.isFinite(hx) && Double.isFinite(hy) && Double.isFinite(hz))) {
+                throw new IOException(builder.file + " has an invalid origin or spacing.");
+            }
+
+            shift = Integer.numberOfTrailingZeros(tileSize);
+            mask = tileSize - 1;
+            int tilesX = tiles(nx, tileSize);
+            tilesY = tiles(ny, tileSize);
+            tilesZ = tiles(nz, tileSize);
+            tileDoubles = COMPONENTS * tileSize * tileSize * tileSize;
+
+            long tileBytes = (long) Double.BYTES * tileDoubles;
+            long tiles = (long) tilesX * tilesY * tilesZ;
+            if (tiles > Integer.MAX_VALUE) {
+                throw new IOException(builder.file + " has too many tiles.");
+            }
+            if (channel.size() != HEADER_BYTES + tiles * tileBytes) {
+                throw new IOException(builder.file + " is truncated.");
+            }
+
+            // Map whole tiles in chunks (mapping reads nothing until pages are touched)
+            tilesPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / tileBytes);
+            chunks = new MappedByteBuffer[(int) ((tiles + tilesPerChunk - 1) / tilesPerChunk)];
+            for (int c = 0; c < chunks.length; c++) {
+                long first = (long) c * tilesPerChunk;
+                long count = Math.min(tilesPerChunk, tiles - first);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * tileBytes, count * tileBytes);
+            }
+        }
+
+        // Power of two sets of at least WAYS ways each, at most cachedTiles in all
+        int capacity = builder.cachedTiles;
+        sets = Math.max(1, Integer.highestOneBit(capacity / WAYS));
+        ways = capacity / sets;
+        slots = new AtomicReferenceArray<>(sets * ways);
+        locks = new Object[sets];
+        for (int s = 0; s < sets; s++) {
+            locks[s] = new Object();
+        }
+        hands = new int[sets];
+    }
+
+    /**
+     * Returns true if tileSize is a power of two whose tiles fit in a chunk
+     */
+    private static boolean validTileSize(int tileSize){
+        return tileSize >= 1 && tileSize <= MAX_TILE_SIZE && (tileSize & (tileSize - 1)) == 0;
+    }
+
+    /**
+     * MappedFieldMap Builder
+     */
+    public static class Builder {
+
+        private final Path file;
+        private FieldMap.Interpolation interpolation = FieldMap.Interpolation.TRILINEAR;
+        private int cachedTiles = DEFAULT_CACHED_TILES;
+        private boolean harmonic;
+        private double frequency, phase;
+
+        /**
+         * Constructs builder of field map read from file
+         * @param file field map file
+         */
+        public Builder(Path file){
+            this.file = file;
+        }
+
+        public Builder setInterpolation(FieldMap.Interpolation interpolation){
+            this.interpolation = interpolation;
+            return this;
+        }
+
+        /**
+         * Sets number of decoded tiles held in memory
+         * (rounded down to a multiple of the number of sets of the cache, at most an eighth less).
+         * @param tiles number of tiles (at least 1)
+         * @return this builder
+         */
+        public Builder setCachedTiles(int tiles){
+            if (tiles < 1) {
+                throw new IllegalArgumentException("At least one tile must be cached.");
+            }
+            cachedTiles = tiles;
+            return this;
+        }
+
+        /**
+         * Scales field by sin(omega * t + phi)
+         * @param omega angular frequency
+         * @param phi phase
+         * @return this builder
+         */
+        public Builder setHarmonic(double omega, double phi){
+            harmonic = true;
+            frequency = omega;
+            phase = phi;
+            return this;
+        }
+
+        /**
+         * Maps field map file into memory
+         * @return field map
+         * @throws IOException if file cannot be read or is not a field map file
+         */
+        public MappedFieldMap open() throws IOException {
+            return new MappedFieldMap(this);
+        }
+    }
+
+    private static int tiles(int nodes, int tileSize){
+        return (nodes + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Writes field map file of the values of field at time t on the nodes of a grid, one tile at a time
+     * @param file file (overwritten)
+     * @param field field to sample
+     * @param t time
+     * @param nx number of nodes along x (at least 2)
+     * @param ny number of nodes along y (at least 2)
+     * @param nz number of nodes along z (at least 2)
+     * @param origin position of node (0, 0, 0)
+     * @param spacing grid spacing along each axis
+     * @param tileSize nodes along each edge of a tile (power of two, at most 256)
+     * @throws IOException if file cannot be written
+     */
+    public static void write(Path file, EMField field, double t, int nx, int ny, int nz,
+                             Vector3 origin, Vector3 spacing, int tileSize) throws IOException {
+
+        if (nx < 2 || ny < 2 || nz < 2) {
+            throw new IllegalArgumentException("Field map needs at least 2 nodes along each axis.");
+        }
+        if (!validTileSize(tileSize)) {
+            throw new IllegalArgumentException("Tile size must be a power of two, at most " + MAX_TILE_SIZE + ".");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(nx).putInt(ny).putInt(nz).putInt(tileSize)
+                    .putDouble(origin.getX()).putDouble(origin.getY()).putDouble(origin.getZ())
+                    .putDouble(spacing.getX()).putDouble(spacing.getY()).putDouble(spacing.getZ());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            ByteBuffer tile = ByteBuffer.allocate(Double.BYTES * COMPONENTS * tileSize * tileSize * tileSize);
+            for (int ti = 0; ti < tiles(nx, tileSize); ti++) {
+                for (int tj = 0; tj < tiles(ny, tileSize); tj++) {
+                    for (int tk = 0; tk < tiles(nz, tileSize); tk++) {
+                        tile.clear();
+                        for (int a = 0; a < tileSize; a++) {
+                            int i = ti * tileSize + a;
+                            for (int b = 0; b < tileSize; b++) {
+                                int j = tj * tileSize + b;
+                                for (int c = 0; c < tileSize; c++) {
+                                    int k = tk * tileSize + c;
+                                    if (i < nx && j < ny && k < nz) {
+                                        Vector3 r = new Vector3(
+                                                origin.getX() + i * spacing.getX(),
+                                                origin.getY() + j * spacing.getY(),
+                                                origin.getZ() + k * spacing.getZ()
+                                        );
+                                        Vector3 E = field.E(r, t);
+                                        Vector3 B = field.B(r, t);
+                                        tile.putDouble(E.getX()).putDouble(E.getY()).putDouble(E.getZ())
+                                                .putDouble(B.getX()).putDouble(B.getY()).putDouble(B.getZ());
+                                    } else {
+                                        for (int m = 0; m < COMPONENTS; m++) {
+                                            tile.putDouble(0);
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                        tile.flip();
+                        while (tile.hasRemaining()) {
+                            channel.write(tile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns set of the cache holding tile key
+     */
+    private int set(int key){
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (sets - 1);
+    }
+
+    /**
+     * Returns decoded tile, reading it from the mapped file if it is not cached
+     * @param key index of tile
+     * @return tile
+     */
+    private Tile tile(int key){
+        int set = set(key);
+        int base = set * ways;
+        for (int w = 0; w < ways; w++) {
+            Tile tile = slots.get(base + w);
+            if (tile != null && tile.key == key) {
+                if (!tile.referenced) {
+                    tile.referenced = true;
+                }
+                return tile;
+            }
+        }
+
+        // Not cached: decode without locking, then insert unless another thread did first
+        double[] values = new double[tileDoubles];
+        ByteBuffer chunk = chunks[key / tilesPerChunk].duplicate();
+        chunk.position(Double.BYTES * tileDoubles * (key % tilesPerChunk));
+        chunk.asDoubleBuffer().get(values);
+        Tile decoded = new Tile(key, values);
+
+        synchronized (locks[set]) {
+            for (int w = 0; w < ways; w++) {
+                Tile tile = slots.get(base + w);
+                if (tile != null && tile.key == key) {
+                    return tile;
+                }
+            }
+            // Clock: evict the first tile not referenced since the hand last passed it
+            while (true) {
+                int w = hands[set];
+                hands[set] = (w + 1 == ways) ? 0 : w + 1;
+                Tile tile = slots.get(base + w);
+                if (tile == null || !tile.referenced) {
+                    slots.set(base + w, decoded);
+                    return decoded;
+                }
+                tile.referenced = false;
+            }
+        }
+    }
+
+    /**
+     * Evaluates electric and magnetic field at (x, y, z) at time t into eb
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @param t time
+     * @param eb eb[0..2] = E, eb[3..5] = B (overwritten)
+     */
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+
+        for (int m = 0; m < COMPONENTS; m++) {
+            eb[m] = 0;
+        }
+
+        double gx = (x - x0) / hx;
+        double gy = (y - y0) / hy;
+        double gz = (z - z0) / hz;
+
+        if (!(gx >= 0 && gy >= 0 && gz >= 0 && gx <= nx - 1 && gy <= ny - 1 && gz <= nz - 1)) {
+            return;
+        }
+
+        // Cell (i, j, k) with fractional coordinates (fx, fy, fz) in [0, 1]
+        int i = Math.min((int) gx, nx - 2);
+        int j = Math.min((int) gy, ny - 2);
+        int k = Math.min((int) gz, nz - 2);
+        double fx = gx - i, fy = gy - j, fz = gz - k;
+
+        boolean cubic = interpolation == FieldMap.Interpolation.TRICUBIC;
+        int points = cubic ? 4 : 2;
+        int first = cubic ? -1 : 0;
+
+        // Consecutive nodes of the stencil mostly share a tile, and so do consecutive calls of a thread
+        Tile used = last.get();
+        Tile tile = used;
+
+        for (int a = 0; a < points; a++) {
+            int ia = FieldMap.clamp(i + first + a, nx);
+            double wa = cubic ? FieldMap.catmullRom(a, fx) : (a == 0 ? 1 - fx : fx);
+            for (int b = 0; b < points; b++) {
+                int jb = FieldMap.clamp(j + first + b, ny);
+                double wab = wa * (cubic ? FieldMap.catmullRom(b, fy) : (b == 0 ? 1 - fy : fy));
+                for (int c = 0; c < points; c++) {
+                    int kc = FieldMap.clamp(k + first + c, nz);
+                    double w = wab * (cubic ? FieldMap.catmullRom(c, fz) : (c == 0 ? 1 - fz : fz));
+
+                    int key = ((ia >> shift) * tilesY + (jb >> shift)) * tilesZ + (kc >> shift);
+                    if (tile == null || tile.key != key) {
+                        tile = tile(key);
+                    }
+                    double[] values = tile.values;
+                    int n = COMPONENTS * ((((ia & mask) << shift) + (jb & mask) << shift) + (kc & mask));
+                    for (int m = 0; m < COMPONENTS; m++) {
+                        eb[m] += w * values[n + m];
+                    }
+                }
+            }
+        }
+        if (tile != used) {
+            last.set(tile);
+        }
+
+        if (harmonic) {
+            double s = Math.sin(frequency * t + phase);
+            for (int m = 0; m < COMPONENTS; m++) {
+                eb[m] *= s;
+            }
+        }
+    }
+
+    /**
+     * Returns grid
+     */
+    @Override
+    public Support getSupport(){
+        return new Support(new Vector3(x0, y0, z0),
+                new Vector3(x0 + (nx - 1) * hx, y0 + (ny - 1) * hy, z0 + (nz - 1) * hz));
+    }
+
+    @Override
+    public Vector3 E(Vector3 r, double t){
+        double[] eb = new double[COMPONENTS];
+        fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        return new Vector3(eb[0], eb[1], eb[2]);
+    }
+
+    @Override
+    public Vector3 B(Vector3 r, double t){
+        double[] eb = new double[COMPONENTS];
+        fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        return new Vector3(eb[3], eb[4], eb[5]);
+    }
+
+}
@@ -0,0 +1,330 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.numerical.FFT;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.util.Vector3;
+
+import java.util.Arrays;
+
+/**
+ * Space charge field computed by the particle-in-cell method in O(N + G log G).
+ * On update() the charges are deposited onto a regular nx * ny * nz grid spanning the bunch
+ * with cloud-in-cell weights, Poisson's equation is solved with open boundaries by convolving
+ * with the free space Green's function on a doubled grid (Hockney's method) using FFTs,
+ * and E = -grad(phi) is taken by central differences.
+ * E is interpolated trilinearly from the grid; outside the grid the bunch is treated as a point charge.
+ */
+public class ParticleInCell extends SpaceCharge {
+
+    /**
+     * Mean of 1/r over a unit cube centred at the origin (regularises the Green's function at r = 0)
+     */
+    private static final double CUBE_MEAN_INVERSE_DISTANCE = 2.3800772;
+
+    private final int nx, ny, nz;
+
+    // Grid origin and spacing
+    private double x0, y0, z0;
+    private double hx, hy, hz;
+
+    // Node values
+    private final double[] rho;
+    private final double[] Ex, Ey, Ez;
+
+    // Doubled grid for convolution
+    private final double[] re, im;
+    private final double[] greenRe, greenIm;
+    private double greenHx, greenHy, greenHz; // spacing of cached Green's function
+
+    // Point charge outside grid
+    private double totalCharge;
+    private double centreX, centreY, centreZ;
+
+    /**
+     * Constructs particle-in-cell space charge field of the charges of store
+     * @param store particle store
+     * @param nx number of nodes along x (power of two, at least 4)
+     * @param ny number of nodes along y (power of two, at least 4)
+     * @param nz number of nodes along z (power of two, at least 4)
+     */
+    public ParticleInCell(ParticleStore store, int nx, int ny, int nz){
+        super(store);
+        if (nx < 4 || ny < 4 || nz < 4
+                || !FFT.isPowerOfTwo(nx) || !FFT.isPowerOfTwo(ny) || !FFT.isPowerOfTwo(nz)) {
+            throw new IllegalArgumentException("Grid sizes must be powers of two of at least 4.");
+        }
+        this.nx = nx;
+        this.ny = ny;
+        this.nz = nz;
+        int nodes = nx * ny * nz;
+        rho = new double[nodes];
+        Ex = new double[nodes];
+        Ey = new double[nodes];
+        Ez = new double[nodes];
+        re = new double[8 * nodes];
+        im = new double[8 * nodes];
+        greenRe = new double[8 * nodes];
+        greenIm = new double[8 * nodes];
+        update();
+    }
+
+    /**
+     * Constructs particle-in-cell space charge field of the charges of store on an n * n * n grid
+     * @param store particle store
+     * @param n number of nodes along each axis (power of two, at least 4)
+     */
+    public ParticleInCell(ParticleStore store, int n){
+        this(store, n, n, n);
+    }
+
+    private int node(int i, int j, int k){
+        return (i * ny + j) * nz + k;
+    }
+
+    @Override
+    public void update(){
+        fitGrid();
+        deposit();
+        solvePoisson();
+    }
+
+    /**
+     * Fits grid to bounding box of charges with one spare cell on each side
+     */
+    private void fitGrid(){
+
+        double[] x = store.x(), y = store.y(), z = store.z(), q = store.charge();
+        int n = store.size();
+
+        double minX = Double.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        double Q = 0, weight = 0, wx = 0, wy = 0, wz = 0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            minZ = Math.min(minZ, z[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+            maxZ = Math.max(maxZ, z[i]);
+            double w = Math.abs(q[i]);
+            Q += q[i];
+            weight += w;
+            wx += w * x[i];
+            wy += w * y[i];
+            wz += w * z[i];
+        }
+        totalCharge = Q;
+        centreX = (weight > 0) ? wx / weight : 0.5 * (minX + maxX);
+        centreY = (weight > 0) ? wy / weight : 0.5 * (minY + maxY);
+        centreZ = (weight > 0) ? wz / weight : 0.5 * (minZ + maxZ);
+
+        // Flat or point-like bunches still need a non-degenerate cell
+        double extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        double floor = (extent > 0) ? 1E-3 * extent : 1E-9;
+        double lx = Math.max(maxX - minX, floor);
+        double ly = Math.max(maxY - minY, floor);
+        double lz = Math.max(maxZ - minZ, floor);
+
+        hx = lx / (nx - 3);
+        hy = ly / (ny - 3);
+        hz = lz / (nz - 3);
+        x0 = 0.5 * (minX + maxX) - 0.5 * lx - hx;
+        y0 = 0.5 * (minY + maxY) - 0.5 * ly - hy;
+        z0 = 0.5 * (minZ + maxZ) - 0.5 * lz - hz;
+    }
+
+    /**
+     * Deposits charges onto nodes with cloud-in-cell weights
+     */
+    private void deposit(){
+
+        double[] x = store.x(), y = store.y(), z = store.z(), q = store.charge();
+        Arrays.fill(rho, 0);
+
+        for (int p = 0; p < store.size(); p++) {
+            double gx = (x[p] - x0) / hx;
+            double gy = (y[p] - y0) / hy;
+            double gz = (z[p] - z0) / hz;
+            int i = Math.min((int) gx, nx - 2);
+            int j = Math.min((int) gy, ny - 2);
+            int k = Math.min((int) gz, nz - 2);
+            double fx = gx - i, fy = gy - j, fz = gz - k;
+            double Q = q[p];
+
+            rho[node(i, j, k)]             += Q * (1 - fx) * (1 - fy) * (1 - fz);
+            rho[node(i + 1, j, k)]         += Q * fx * (1 - fy) * (1 - fz);
+            rho[node(i, j + 1, k)]         += Q * (1 - fx) * fy * (1 - fz);
+            rho[node(i + 1, j + 1, k)]     += Q * fx * fy * (1 - fz);
+            rho[node(i, j, k + 1)]         += Q * (1 - fx) * (1 - fy) * fz;
+            rho[node(i + 1, j, k + 1)]     += Q * fx * (1 - fy) * fz;
+            rho[node(i, j + 1, k + 1)]     += Q * (1 - fx) * fy * fz;
+            rho[node(i + 1, j + 1, k + 1)] += Q * fx * fy * fz;
+        }
+    }
+
+    /**
+     * Transforms free space Green's function on doubled grid if grid spacing has changed
+     */
+    private void greensFunction(){
+
+        if (hx == greenHx && hy == greenHy && hz == greenHz) {
+            return;
+        }
+        greenHx = hx;
+        greenHy = hy;
+        greenHz = hz;
+
+        int mx = 2 * nx, my = 2 * ny, mz = 2 * nz;
+        double h = Math.cbrt(hx * hy * hz);
+
+        for (int i = 0; i < mx; i++) {
+            double dx = Math.min(i, mx - i) * hx;
+            for (int j = 0; j < my; j++) {
+                double dy = Math.min(j, my - j) * hy;
+                for (int k = 0; k < mz; k++) {
+                    double dz = Math.min(k, mz - k) * hz;
+                    int index = (i * my + j) * mz + k;
+                    double r = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                    greenRe[index] = (r > 0) ? COULOMB / r : COULOMB * CUBE_MEAN_INVERSE_DISTANCE / h;
+                    greenIm[index] = 0;
+                }
+            }
+        }
+        FFT.transform3D(greenRe, greenIm, mx, my, mz, false);
+    }
+
+    /**
+     * Solves for potential by convolution with Green's function and differentiates for E
+     */
+    private void solvePoisson(){
+
+        greensFunction();
+
+        int mx = 2 * nx, my = 2 * ny, mz = 2 * nz;
+
+        // Zero padded charge
+        Arrays.fill(re, 0);
+        Arrays.fill(im, 0);
+        for (int i = 0; i < nx; i++) {
+            for (int j = 0; j < ny; j++) {
+                System.arraycopy(rho, node(i, j, 0), re, (i * my + j) * mz, nz);
+            }
+        }
+
+        FFT.transform3D(re, im, mx, my, mz, false);
+        for (int index = 0; index < re.length; index++) {
+            double a = re[index] * greenRe[index] - im[index] * greenIm[index];
+            double b = re[index] * greenIm[index] + im[index] * greenRe[index];
+            re[index] = a;
+            im[index] = b;
+        }
+        FFT.transform3D(re, im, mx, my, mz, true);
+
+        // Potential is re[] restricted to the physical grid; E = -grad(phi)
+        for (int i = 0; i < nx; i++) {
+            int il = Math.max(i - 1, 0), ir = Math.min(i + 1, nx - 1);
+            for (int j = 0; j < ny; j++) {
+                int jl = Math.max(j - 1, 0), jr = Math.min(j + 1, ny - 1);
+                for (int k = 0; k < nz; k++) {
+                    int kl = Math.max(k - 1, 0), kr = Math.min(k + 1, nz - 1);
+                    int index = node(i, j, k);
+                    Ex[index] = -(re[(ir * my + j) * mz + k] - re[(il * my + j) * mz + k]) / ((ir - il) * hx);
+                    Ey[index] = -(re[(i * my + jr) * mz + k] - re[(i * my + jl) * mz + k]) / ((jr - jl) * hy);
+                    Ez[index] = -(re[(i * my + j) * mz + kr] - re[(i * my + j) * mz + kl]) / ((kr - kl) * hz);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Vector3 E(Vector3 r, double t){
+        double[] eb = new double[6];
+        fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        return new Vector3(eb[0], eb[1], eb[2]);
+    }
+
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+
+        double gx = (x - x0) / hx;
+        double gy = (y - y0) / hy;
+        double gz = (z - z0) / hz;
+        eb[3] = eb[4] = eb[5] = 0;
+
+        if (outside(gx, gy, gz)) {
+            double dx = x - centreX, dy = y - centreY, dz = z - centreZ;
+            double s = pointCharge(dx, dy, dz);
+            eb[0] = s * dx;
+            eb[1] = s * dy;
+            eb[2] = s * dz;
+            return;
+        }
+
+        int i = Math.min((int) gx, nx - 2);
+        int j = Math.min((int) gy, ny - 2);
+        int k = Math.min((int) gz, nz - 2);
+        double fx = gx - i, fy = gy - j, fz = gz - k;
+        eb[0] = interpolate(Ex, i, j, k, fx, fy, fz);
+        eb[1] = interpolate(Ey, i, j, k, fx, fy, fz);
+        eb[2] = interpolate(Ez, i, j, k, fx, fy, fz);
+    }
+
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        for (int p = from; p < to; p++) {
+
+            double gx = (x[p] - x0) / hx;
+            double gy = (y[p] - y0) / hy;
+            double gz = (z[p] - z0) / hz;
+
+            if (outside(gx, gy, gz)) {
+                double dx = x[p] - centreX, dy = y[p] - centreY, dz = z[p] - centreZ;
+                double s = pointCharge(dx, dy, dz);
+                ex[p] += s * dx;
+                ey[p] += s * dy;
+                ez[p] += s * dz;
+                continue;
+            }
+
+            int i = Math.min((int) gx, nx - 2);
+            int j = Math.min((int) gy, ny - 2);
+            int k = Math.min((int) gz, nz - 2);
+            double fx = gx - i, fy = gy - j, fz = gz - k;
+            ex[p] += interpolate(Ex, i, j, k, fx, fy, fz);
+            ey[p] += interpolate(Ey, i, j, k, fx, fy, fz);
+            ez[p] += interpolate(Ez, i, j, k, fx, fy, fz);
+        }
+    }
+
+    /**
+     * Returns true if grid coordinates (gx, gy, gz) are outside the grid
+     */
+    private boolean outside(double gx, double gy, double gz){
+        return gx < 0 || gy < 0 || gz < 0 || gx > nx - 1 || gy > ny - 1 || gz > nz - 1;
+    }
+
+    /**
+     * Returns factor of displacement (dx, dy, dz) from the centre of charge giving E of the bunch as a point charge
+     */
+    private double pointCharge(double dx, double dy, double dz){
+        double r2 = dx * dx + dy * dy + dz * dz;
+        return COULOMB * totalCharge / (r2 * Math.sqrt(r2));
+    }
+
+    /**
+     * Trilinear (cloud-in-cell) interpolation of node values
+     */
+    private double interpolate(double[] f, int i, int j, int k, double fx, double fy, double fz){
+        return f[node(i, j, k)] * (1 - fx) * (1 - fy) * (1 - fz)
+                + f[node(i + 1, j, k)] * fx * (1 - fy) * (1 - fz)
+                + f[node(i, j + 1, k)] * (1 - fx) * fy * (1 - fz)
+                + f[node(i + 1, j + 1, k)] * fx * fy * (1 - fz)
+                + f[node(i, j, k + 1)] * (1 - fx) * (1 - fy) * fz
+                + f[node(i + 1, j, k + 1)] * fx * (1 - fy) * fz
+                + f[node(i, j + 1, k + 1)] * (1 - fx) * fy * fz
+                + f[node(i + 1, j + 1, k + 1)] * fx * fy * fz;
+    }
+
+}
@@ -0,0 +1,48 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Magnetic quadrupole field B = g (y, x, 0) of gradient g about the z axis.
+ * A body of positive charge moving along +z is focused in x and defocused in y for g > 0.
+ */
+public class Quadrupole extends BField {
+
+    private final double gradient;
+
+    /**
+     * Constructs quadrupole field
+     * @param gradient gradient dBy/dx = dBx/dy
+     */
+    public Quadrupole(double gradient){
+        this.gradient = gradient;
+    }
+
+    public double getGradient(){
+        return gradient;
+    }
+
+    @Override
+    public Vector3 B(Vector3 r, double t){
+        return new Vector3(gradient * r.getY(), gradient * r.getX(), 0);
+    }
+
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        eb[0] = eb[1] = eb[2] = 0;
+        eb[3] = gradient * y;
+        eb[4] = gradient * x;
+        eb[5] = 0;
+    }
+
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        for (int i = from; i < to; i++) {
+            bx[i] += gradient * y[i];
+            by[i] += gradient * x[i];
+        }
+    }
+
+}
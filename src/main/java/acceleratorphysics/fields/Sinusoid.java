@@ -8,6 +8,7 @@ import acceleratorphysics.util.Vector3;
 public class Sinusoid extends EMField {
 
     private final EMField field;
+    private final boolean electric;
 
     private final Vector3 cavityCentre;
     private final double Lx;
@@ -24,6 +25,7 @@ public class Sinusoid extends EMField {
             Vector3 cavityCentre, double Lx, double Ly, double Lz,
             Vector3 direction, double amplitude, double frequency, double phase
     ){
+        electric = fieldType == Type.ELECTRIC;
         switch (fieldType) {
             case ELECTRIC:
                 field = new EField() {
@@ -147,6 +149,52 @@ public class Sinusoid extends EMField {
         return (inCavity(r)) ? direction.scale(magnitude(t)) : Vector3.ZERO;
     }
 
+    /**
+     * Tests cavity and evaluates sin once for E and B
+     */
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        for (int c = 0; c < 6; c++) {
+            eb[c] = 0;
+        }
+        if (Math.abs(x - cavityCentre.getX()) <= Lx &&
+            Math.abs(y - cavityCentre.getY()) <= Ly &&
+            Math.abs(z - cavityCentre.getZ()) <= Lz) {
+            double m = magnitude(t);
+            int on = electric ? 0 : 3;
+            eb[on] = m * direction.getX();
+            eb[on + 1] = m * direction.getY();
+            eb[on + 2] = m * direction.getZ();
+        }
+    }
+
+    /**
+     * Evaluates sin once for every point
+     */
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        double m = magnitude(t);
+        double fx = m * direction.getX(), fy = m * direction.getY(), fz = m * direction.getZ();
+        double x0 = cavityCentre.getX(), y0 = cavityCentre.getY(), z0 = cavityCentre.getZ();
+        double[] cx = electric ? ex : bx, cy = electric ? ey : by, cz = electric ? ez : bz;
+        for (int i = from; i < to; i++) {
+            double s = (Math.abs(x[i] - x0) <= Lx && Math.abs(y[i] - y0) <= Ly && Math.abs(z[i] - z0) <= Lz) ? 1 : 0;
+            cx[i] += s * fx;
+            cy[i] += s * fy;
+            cz[i] += s * fz;
+        }
+    }
+
+    /**
+     * Returns cavity (everywhere if its widths are not set)
+     */
+    @Override
+    public Support getSupport(){
+        return Support.around(cavityCentre, Lx, Ly, Lz);
+    }
+
     @Override
     public Vector3 E(Vector3 r, double t){
         return field.E(r, t);
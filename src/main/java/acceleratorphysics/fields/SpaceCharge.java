@@ -0,0 +1,34 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.particles.ChargedParticle;
+import acceleratorphysics.particles.ParticleStore;
+
+/**
+ * Electric field due to the charges of a particle store (space charge).
+ * Concrete implementations precompute from the positions of the charges in update(),
+ * which must be called whenever the positions change, before the field is evaluated.
+ * Evaluation of the field after update() must be safe from concurrent threads.
+ */
+public abstract class SpaceCharge extends EField {
+
+    /**
+     * Coulomb's constant 1 / (4 pi epsilon_0)
+     */
+    protected static final double COULOMB = 1 / (4 * Math.PI * ChargedParticle.EPSILON_NOUGHT);
+
+    protected final ParticleStore store;
+
+    /**
+     * Constructs field due to the charges of store
+     * @param store particle store
+     */
+    protected SpaceCharge(ParticleStore store){
+        this.store = store;
+    }
+
+    /**
+     * Recomputes this field from the current positions of the charges
+     */
+    public abstract void update();
+
+}
@@ -1,48 +1,324 @@
 package acceleratorphysics.fields;
 
+import acceleratorphysics.util.MutableVector3;
 import acceleratorphysics.util.Vector3;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
  * Superimposed EMField
+ *
+ * Fields with a bounded support (see EMField.getSupport()), such as the cavities and magnets of a
+ * beam line, are indexed by a uniform grid over the union of their supports, so that at a point only the
+ * fields whose support overlaps the cell of the point are evaluated. Fields without a bounded support,
+ * such as Uniform, are evaluated everywhere.
  */
 public class Superimposed extends EMField {
 
-    private final EMField[] fields;
+    private static final int MAX_CELLS = 1 << 16;
+    private static final int MAX_BULK_FIELDS = 8; // bounded fields evaluated in bulk before falling back to the index
 
-    private Superimposed(int i){
-        fields = new EMField[i];
-    }
+    private final EMField[] everywhere; // unbounded fields
+    private final EMField[] bounded;
+    private final Support[] supports;   // supports[f] of bounded[f]
+    private final Support support;      // of all fields
+
+    // Grid of nx * ny * nz cells over union of supports of bounded fields,
+    // cell c overlaps bounded[cellFields[n]] for cellStart[c] <= n < cellStart[c + 1]
+    private final Support grid;
+    private final int nx, ny, nz;
+    private final double sx, sy, sz; // cells per unit length
+    private final int[] cellStart;
+    private final int[] cellFields;
+
+    // Scratch of fields() and addFields(): a field may be evaluated by several threads at once, and nested
+    // Superimposed fields each need their own, so it is per instance and per thread
+    private final ThreadLocal<double[]> term = ThreadLocal.withInitial(() -> new double[6]);
+    private final ThreadLocal<double[]> sum = ThreadLocal.withInitial(() -> new double[6]);
 
     /**
      * Superimposes EMField objects
      * @param fieldsIn
      */
     public Superimposed(EMField... fieldsIn){
-        this(fieldsIn.length);
         if(fieldsIn.length <= 1) {
             throw new IllegalArgumentException(
                     "Use Superimposed to superimpose 2 or more EMField objects."
             );
         }
-        for (int i = 0; i < fieldsIn.length; i++){
-            fields[i] = fieldsIn[i];
+
+        List<EMField> unboundedList = new ArrayList<>();
+        List<EMField> boundedList = new ArrayList<>();
+        Support union = null;
+        for (EMField field : fieldsIn) {
+            Support s = field.getSupport();
+            if (s.isBounded()) {
+                boundedList.add(field);
+            } else {
+                unboundedList.add(field);
+            }
+            union = (union == null) ? s : union.union(s);
+        }
+        everywhere = unboundedList.toArray(new EMField[0]);
+        bounded = boundedList.toArray(new EMField[0]);
+        support = union;
+
+        supports = new Support[bounded.length];
+        Support box = null;
+        double wx = 0, wy = 0, wz = 0;
+        for (int f = 0; f < bounded.length; f++) {
+            supports[f] = bounded[f].getSupport();
+            box = (box == null) ? supports[f] : box.union(supports[f]);
+            wx += supports[f].maxX - supports[f].minX;
+            wy += supports[f].maxY - supports[f].minY;
+            wz += supports[f].maxZ - supports[f].minZ;
+        }
+        grid = box;
+
+        if (bounded.length == 0) {
+            nx = ny = nz = 0;
+            sx = sy = sz = 0;
+            cellStart = new int[1];
+            cellFields = new int[0];
+            return;
+        }
+
+        // About one cell per mean width of a support along each axis, at most a few cells per field
+        int[] n = {
+                cells(grid.maxX - grid.minX, wx / bounded.length, bounded.length),
+                cells(grid.maxY - grid.minY, wy / bounded.length, bounded.length),
+                cells(grid.maxZ - grid.minZ, wz / bounded.length, bounded.length)
+        };
+        long limit = Math.min(MAX_CELLS, 8L * bounded.length);
+        while ((long) n[0] * n[1] * n[2] > limit) {
+            int widest = (n[0] >= n[1] && n[0] >= n[2]) ? 0 : (n[1] >= n[2]) ? 1 : 2;
+            n[widest] = (n[widest] + 1) / 2;
+        }
+        nx = n[0];
+        ny = n[1];
+        nz = n[2];
+        sx = scale(nx, grid.maxX - grid.minX);
+        sy = scale(ny, grid.maxY - grid.minY);
+        sz = scale(nz, grid.maxZ - grid.minZ);
+
+        // Count fields overlapping each cell, then list them
+        cellStart = new int[nx * ny * nz + 1];
+        int[] members = null;
+        int[] fill = null;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int f = 0; f < bounded.length; f++) {
+                Support s = supports[f];
+                int i0 = cell(s.minX, grid.minX, sx, nx), i1 = cell(s.maxX, grid.minX, sx, nx);
+                int j0 = cell(s.minY, grid.minY, sy, ny), j1 = cell(s.maxY, grid.minY, sy, ny);
+                int k0 = cell(s.minZ, grid.minZ, sz, nz), k1 = cell(s.maxZ, grid.minZ, sz, nz);
+                for (int i = i0; i <= i1; i++) {
+                    for (int j = j0; j <= j1; j++) {
+                        for (int k = k0; k <= k1; k++) {
+                            int c = (i * ny + j) * nz + k;
+                            if (members == null) {
+                                cellStart[c + 1]++;
+                            } else {
+                                members[fill[c]++] = f;
+                            }
+                        }
+                    }
+                }
+            }
+            if (members == null) {
+                for (int c = 0; c < nx * ny * nz; c++) {
+                    cellStart[c + 1] += cellStart[c];
+                }
+                members = new int[cellStart[nx * ny * nz]];
+                fill = cellStart.clone();
+            }
+        }
+        cellFields = members;
+    }
+
+    private static int cells(double extent, double width, int count){
+        if (!(extent > 0 && width > 0)) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(2L * count, (long) Math.ceil(extent / width)));
+    }
+
+    private static double scale(int cells, double extent){
+        return (extent > 0) ? cells / extent : 0;
+    }
+
+    /**
+     * Index along an axis of cell containing coordinate v
+     */
+    private static int cell(double v, double min, double scale, int cells){
+        int i = (int) ((v - min) * scale);
+        return (i < 0) ? 0 : (i >= cells) ? cells - 1 : i;
+    }
+
+    /**
+     * Index of cell containing r, or -1 if r is outside grid
+     */
+    private int cell(Vector3 r){
+        return cell(r.getX(), r.getY(), r.getZ());
+    }
+
+    /**
+     * Index of cell containing (x, y, z), or -1 if it is outside grid
+     */
+    private int cell(double x, double y, double z){
+        if (grid == null || !grid.contains(x, y, z)) {
+            return -1;
+        }
+        return (cell(x, grid.minX, sx, nx) * ny + cell(y, grid.minY, sy, ny)) * nz + cell(z, grid.minZ, sz, nz);
+    }
+
+    /**
+     * Returns true if every field is uniform
+     */
+    @Override
+    public boolean isUniform(){
+        if (bounded.length > 0) {
+            return false;
+        }
+        for (EMField field : everywhere) {
+            if (!field.isUniform()) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    /**
+     * Returns union of supports of fields
+     */
+    @Override
+    public Support getSupport(){
+        return support;
     }
 
     @Override
     public Vector3 E(Vector3 r, double t){
-        return Arrays.stream(fields)
-                .map(f -> f.E(r,t))
-                .reduce(Vector3.ZERO, Vector3::add);
+        MutableVector3 sum = new MutableVector3();
+        for (EMField field : everywhere) {
+            sum.add(field.E(r, t));
+        }
+        int c = cell(r);
+        if (c >= 0) {
+            for (int n = cellStart[c]; n < cellStart[c + 1]; n++) {
+                int f = cellFields[n];
+                if (supports[f].contains(r)) {
+                    sum.add(bounded[f].E(r, t));
+                }
+            }
+        }
+        return sum.toVector3();
     }
 
     @Override
     public Vector3 B(Vector3 r, double t){
-        return Arrays.stream(fields)
-                .map(f -> f.B(r, t))
-                .reduce(Vector3.ZERO, Vector3::add);
+        MutableVector3 sum = new MutableVector3();
+        for (EMField field : everywhere) {
+            sum.add(field.B(r, t));
+        }
+        int c = cell(r);
+        if (c >= 0) {
+            for (int n = cellStart[c]; n < cellStart[c + 1]; n++) {
+                int f = cellFields[n];
+                if (supports[f].contains(r)) {
+                    sum.add(bounded[f].B(r, t));
+                }
+            }
+        }
+        return sum.toVector3();
+    }
+
+    /**
+     * Adds fields evaluated everywhere and bounded fields whose support overlaps the bounding box of the points
+     */
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        for (EMField field : everywhere) {
+            field.addFields(t, x, y, z, ex, ey, ez, bx, by, bz, from, to);
+        }
+        if (bounded.length == 0 || from >= to) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            minZ = Math.min(minZ, z[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+            maxZ = Math.max(maxZ, z[i]);
+        }
+        int overlapping = 0;
+        for (Support support : supports) {
+            if (support.overlaps(minX, minY, minZ, maxX, maxY, maxZ)) {
+                overlapping++;
+            }
+        }
+        if (overlapping <= MAX_BULK_FIELDS) {
+            // points are local (e.g. a bunch), each overlapping field is evaluated over all of them
+            for (int f = 0; f < bounded.length; f++) {
+                if (supports[f].overlaps(minX, minY, minZ, maxX, maxY, maxZ)) {
+                    bounded[f].addFields(t, x, y, z, ex, ey, ez, bx, by, bz, from, to);
+                }
+            }
+        } else {
+            // points are spread over many fields, each point looks up its fields in the index
+            double[] eb = this.sum.get();
+            double[] term = this.term.get();
+            for (int i = from; i < to; i++) {
+                boundedFields(x[i], y[i], z[i], t, eb, term);
+                ex[i] += eb[0];
+                ey[i] += eb[1];
+                ez[i] += eb[2];
+                bx[i] += eb[3];
+                by[i] += eb[4];
+                bz[i] += eb[5];
+            }
+        }
+    }
+
+    /**
+     * Sums E and B of each field evaluated together
+     */
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        double[] term = this.term.get();
+        boundedFields(x, y, z, t, eb, term);
+        for (EMField field : everywhere) {
+            field.fields(x, y, z, t, term);
+            for (int m = 0; m < 6; m++) {
+                eb[m] += term[m];
+            }
+        }
+    }
+
+    /**
+     * Sets eb to sum of E and B of bounded fields at (x, y, z), looked up in the index
+     * @param term scratch
+     */
+    private void boundedFields(double x, double y, double z, double t, double[] eb, double[] term){
+        for (int m = 0; m < 6; m++) {
+            eb[m] = 0;
+        }
+        int c = cell(x, y, z);
+        if (c >= 0) {
+            for (int n = cellStart[c]; n < cellStart[c + 1]; n++) {
+                int f = cellFields[n];
+                if (supports[f].contains(x, y, z)) {
+                    bounded[f].fields(x, y, z, t, term);
+                    for (int m = 0; m < 6; m++) {
+                        eb[m] += term[m];
+                    }
+                }
+            }
+        }
     }
 }
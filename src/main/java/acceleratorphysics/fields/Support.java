@@ -0,0 +1,130 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Axis aligned box outside which a field is zero (the support of the field).
+ * The box is closed, and unbounded if any of its bounds is infinite.
+ */
+public final class Support {
+
+    /**
+     * Support of a field that may be non-zero everywhere
+     */
+    public static final Support EVERYWHERE = new Support(
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY
+    );
+
+    final double minX, minY, minZ;
+    final double maxX, maxY, maxZ;
+
+    private Support(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * Constructs box with opposite corners min and max
+     * @param min corner with least coordinates
+     * @param max corner with greatest coordinates
+     */
+    public Support(Vector3 min, Vector3 max){
+        this(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+        if (!(minX <= maxX && minY <= maxY && minZ <= maxZ)) {
+            throw new IllegalArgumentException("Corners of support are not ordered.");
+        }
+    }
+
+    /**
+     * Constructs box of half widths (lx, ly, lz) about centre, unbounded along axes of infinite half width
+     * @param centre centre of box
+     * @param lx half width along x
+     * @param ly half width along y
+     * @param lz half width along z
+     * @return support
+     */
+    public static Support around(Vector3 centre, double lx, double ly, double lz){
+        if (!(lx >= 0 && ly >= 0 && lz >= 0)) {
+            throw new IllegalArgumentException("Half widths of support must be non-negative.");
+        }
+        double x = centre.getX(), y = centre.getY(), z = centre.getZ();
+        return new Support(x - lx, y - ly, z - lz, x + lx, y + ly, z + lz);
+    }
+
+    /**
+     * Gets corner with least coordinates (of a bounded box)
+     * @return corner
+     */
+    public Vector3 getMin(){
+        return new Vector3(minX, minY, minZ);
+    }
+
+    /**
+     * Gets corner with greatest coordinates (of a bounded box)
+     * @return corner
+     */
+    public Vector3 getMax(){
+        return new Vector3(maxX, maxY, maxZ);
+    }
+
+    /**
+     * Returns true if box is bounded
+     * @return true if all bounds are finite
+     */
+    public boolean isBounded(){
+        return !Double.isInfinite(minX) && !Double.isInfinite(minY) && !Double.isInfinite(minZ)
+                && !Double.isInfinite(maxX) && !Double.isInfinite(maxY) && !Double.isInfinite(maxZ);
+    }
+
+    /**
+     * Returns true if (x, y, z) is in box
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return true if in box
+     */
+    public boolean contains(double x, double y, double z){
+        return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+    }
+
+    /**
+     * Returns true if r is in box
+     * @param r position
+     * @return true if in box
+     */
+    public boolean contains(Vector3 r){
+        return contains(r.getX(), r.getY(), r.getZ());
+    }
+
+    /**
+     * Returns true if box overlaps box with corners (minX, minY, minZ) and (maxX, maxY, maxZ)
+     */
+    boolean overlaps(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+        return minX <= this.maxX && maxX >= this.minX
+                && minY <= this.maxY && maxY >= this.minY
+                && minZ <= this.maxZ && maxZ >= this.minZ;
+    }
+
+    /**
+     * Smallest box containing this box and that
+     * @param that box
+     * @return union of boxes
+     */
+    public Support union(Support that){
+        return new Support(
+                Math.min(minX, that.minX), Math.min(minY, that.minY), Math.min(minZ, that.minZ),
+                Math.max(maxX, that.maxX), Math.max(maxY, that.maxY), Math.max(maxZ, that.maxZ)
+        );
+    }
+
+    @Override
+    public String toString(){
+        return "Support[(" + minX + ", " + minY + ", " + minZ + "), (" + maxX + ", " + maxY + ", " + maxZ + ")]";
+    }
+
+}
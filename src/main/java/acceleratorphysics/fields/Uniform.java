@@ -8,8 +8,14 @@ import acceleratorphysics.util.Vector3;
 public class Uniform extends EMField {
 
     private final EMField field;
+    private final boolean electric;
+    private final double x, y, z;
 
     public Uniform(Type type, Vector3 value){
+        electric = type == Type.ELECTRIC;
+        x = value.getX();
+        y = value.getY();
+        z = value.getZ();
         switch (type){
             case ELECTRIC:
                 field = new EField() {
@@ -42,4 +48,30 @@ public class Uniform extends EMField {
         return field.B(r, t);
     }
 
+    @Override
+    public boolean isUniform(){
+        return true;
+    }
+
+    @Override
+    public void addFields(double t, double[] x, double[] y, double[] z,
+                          double[] ex, double[] ey, double[] ez, double[] bx, double[] by, double[] bz,
+                          int from, int to){
+        double[] cx = electric ? ex : bx, cy = electric ? ey : by, cz = electric ? ez : bz;
+        for (int i = from; i < to; i++) {
+            cx[i] += this.x;
+            cy[i] += this.y;
+            cz[i] += this.z;
+        }
+    }
+
+    @Override
+    public void fields(double x, double y, double z, double t, double[] eb){
+        int on = electric ? 0 : 3, off = electric ? 3 : 0;
+        eb[on] = this.x;
+        eb[on + 1] = this.y;
+        eb[on + 2] = this.z;
+        eb[off] = eb[off + 1] = eb[off + 2] = 0;
+    }
+
 }
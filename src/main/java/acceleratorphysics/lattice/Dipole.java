@@ -0,0 +1,95 @@
+package acceleratorphysics.lattice;
+
+import acceleratorphysics.ParticleAccelerator;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.numerical.LorentzSystem;
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Element of uniform magnetic field, through which bodies are tracked exactly along their helices
+ * (see IVPSolver.exactUniform). The time at which a body reaches the exit plane is found by
+ * Newton's method on the exact trajectory.
+ */
+final class Dipole extends Element {
+
+    private static final int MAX_ITERATIONS = 50;
+
+    private final Vector3 B;
+
+    Dipole(double length, Vector3 B){
+        super(length);
+        this.B = B;
+    }
+
+    @Override
+    double track(double[] y, double t, double qm, double c){
+
+        if (!(y[5] > 0)) {
+            return Double.NaN;
+        }
+
+        double invC2 = 1D / (c * c);
+        LorentzSystem system = new LorentzSystem() {
+            @Override
+            public void fields(double t, double[] y, double[] e, double[] b) {
+                e[0] = e[1] = e[2] = 0;
+                b[0] = B.getX();
+                b[1] = B.getY();
+                b[2] = B.getZ();
+            }
+
+            @Override
+            public void chargeToMass(double[] ratio) {
+                ratio[0] = qm;
+            }
+
+            @Override
+            public void lightSpeed(double[] speed) {
+                speed[0] = c;
+            }
+
+            @Override
+            public boolean uniformFields() {
+                return true;
+            }
+
+            @Override
+            public int dimension() {
+                return 6;
+            }
+
+            @Override
+            public void derivative(double t, double[] y, double[] dydt) {
+                dydt[0] = y[3];
+                dydt[1] = y[4];
+                dydt[2] = y[5];
+                ParticleAccelerator.acceleration(qm, invC2, y[3], y[4], y[5],
+                        0, 0, 0, B.getX(), B.getY(), B.getZ(), dydt, 3);
+            }
+        };
+
+        IVPSolver exact = IVPSolver.exactUniform();
+        double[][] work = new double[exact.workBuffers()][6];
+        double[] entrance = y.clone();
+        double tolerance = EXIT_TOLERANCE * getLength();
+
+        double dt = (getLength() - y[2]) / y[5];
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            System.arraycopy(entrance, 0, y, 0, 6);
+            exact.step(system, t, y, work, dt);
+            double miss = getLength() - y[2];
+            if (Math.abs(miss) <= tolerance) {
+                return t + dt;
+            }
+            if (!(y[5] > 0)) {
+                return Double.NaN; // turned back before the exit plane
+            }
+            dt += miss / y[5];
+            if (!(dt > 0)) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+
+}
@@ -0,0 +1,24 @@
+package acceleratorphysics.lattice;
+
+/**
+ * Field free element, through which bodies move in straight lines (tracked exactly)
+ */
+final class Drift extends Element {
+
+    Drift(double length){
+        super(length);
+    }
+
+    @Override
+    double track(double[] y, double t, double qm, double c){
+        if (!(y[5] > 0)) {
+            return Double.NaN;
+        }
+        double dt = (getLength() - y[2]) / y[5];
+        y[0] += y[3] * dt;
+        y[1] += y[4] * dt;
+        y[2] = getLength();
+        return t + dt;
+    }
+
+}
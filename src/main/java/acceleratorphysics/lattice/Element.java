@@ -0,0 +1,47 @@
+package acceleratorphysics.lattice;
+
+/**
+ * Element of a lattice, occupying 0 <= z < length in its own coordinates
+ * (x and y as in the lattice, z measured from the entrance of the element).
+ * An element pushes a body from where it is in the element to the exit plane z = length
+ * by whatever method is exact or cheapest for its field.
+ */
+abstract class Element {
+
+    /**
+     * Largest distance short of the exit plane at which a body counts as having left an element
+     */
+    static final double EXIT_TOLERANCE = 1E-12;
+
+    private final double length;
+
+    /**
+     * Constructs element
+     * @param length longitudinal extent
+     */
+    Element(double length){
+        if (!(length > 0)) {
+            throw new IllegalArgumentException("Length of element must be positive.");
+        }
+        this.length = length;
+    }
+
+    /**
+     * Gets length
+     * @return longitudinal extent
+     */
+    double getLength(){
+        return length;
+    }
+
+    /**
+     * Pushes body from its position in this element to the exit plane
+     * @param y state of body (x, y, z, vx, vy, vz) in element coordinates (overwritten with state at exit)
+     * @param t time at state y
+     * @param qm ratio of charge to rest mass
+     * @param c speed of light, infinite for Newtonian bodies
+     * @return time at which body reaches exit, or NaN if it does not (y is then where it was lost)
+     */
+    abstract double track(double[] y, double t, double qm, double c);
+
+}
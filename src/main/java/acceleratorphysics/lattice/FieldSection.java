@@ -0,0 +1,101 @@
+package acceleratorphysics.lattice;
+
+import acceleratorphysics.ParticleAccelerator;
+import acceleratorphysics.fields.EMField;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.numerical.LorentzSystem;
+
+/**
+ * Element of an arbitrary field (e.g. a quadrupole, an RF cavity or a field map), through which bodies
+ * are integrated numerically by the Boris method. Steps are shortened near the exit so that bodies stop
+ * on the exit plane. The field is evaluated in element coordinates at lattice time.
+ */
+final class FieldSection extends Element {
+
+    private static final long MAX_STEPS = 100000000L;
+
+    private final EMField field;
+    private final double h;
+
+    /**
+     * Constructs element of field
+     * @param length longitudinal extent
+     * @param field field in element coordinates
+     * @param h time step
+     */
+    FieldSection(double length, EMField field, double h){
+        super(length);
+        if (!(h > 0)) {
+            throw new IllegalArgumentException("Time step must be positive.");
+        }
+        this.field = field;
+        this.h = h;
+    }
+
+    @Override
+    double track(double[] y, double t, double qm, double c){
+
+        double invC2 = 1D / (c * c);
+        LorentzSystem system = new LorentzSystem() {
+
+            private final double[] eb = new double[6];
+
+            @Override
+            public void fields(double t, double[] y, double[] e, double[] b) {
+                field.fields(y[0], y[1], y[2], t, eb);
+                System.arraycopy(eb, 0, e, 0, 3);
+                System.arraycopy(eb, 3, b, 0, 3);
+            }
+
+            @Override
+            public void chargeToMass(double[] ratio) {
+                ratio[0] = qm;
+            }
+
+            @Override
+            public void lightSpeed(double[] speed) {
+                speed[0] = c;
+            }
+
+            @Override
+            public int dimension() {
+                return 6;
+            }
+
+            @Override
+            public void derivative(double t, double[] y, double[] dydt) {
+                field.fields(y[0], y[1], y[2], t, eb);
+                dydt[0] = y[3];
+                dydt[1] = y[4];
+                dydt[2] = y[5];
+                ParticleAccelerator.acceleration(qm, invC2, y[3], y[4], y[5],
+                        eb[0], eb[1], eb[2], eb[3], eb[4], eb[5], dydt, 3);
+            }
+        };
+
+        IVPSolver boris = IVPSolver.boris(h);
+        double[][] work = new double[boris.workBuffers()][6];
+        double tolerance = EXIT_TOLERANCE * getLength();
+
+        for (long steps = 0; steps < MAX_STEPS; steps++) {
+            double remaining = getLength() - y[2];
+            if (remaining <= tolerance) {
+                return t;
+            }
+            if (y[2] < 0) {
+                return Double.NaN; // left through the entrance
+            }
+            if (y[5] > 0 && remaining < y[5] * h) {
+                // last steps, aimed at the exit plane
+                double dt = remaining / y[5];
+                boris.stepBy(system, t, y, work, dt);
+                t += dt;
+            } else {
+                boris.step(system, t, y, work);
+                t += h;
+            }
+        }
+        return Double.NaN;
+    }
+
+}
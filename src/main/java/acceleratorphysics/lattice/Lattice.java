@@ -0,0 +1,296 @@
+package acceleratorphysics.lattice;
+
+import acceleratorphysics.fields.EMField;
+import acceleratorphysics.fields.FieldMap;
+import acceleratorphysics.fields.Quadrupole;
+import acceleratorphysics.fields.Sinusoid;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ChargedParticle;
+import acceleratorphysics.particles.Particle;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.util.Vector3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Beam line of elements placed end to end along the z axis from z = 0, each with its own field
+ * in its own coordinates (z measured from its entrance). Bodies are tracked element by element,
+ * each element by its own method: drifts and dipoles exactly, other fields numerically,
+ * so that no field is evaluated outside its element.
+ *
+ * Bodies are tracked independently of each other (without space charge, see BunchAccelerator),
+ * each with its own time, from wherever they are to the end of the lattice.
+ */
+public final class Lattice {
+
+    private final Element[] elements;
+    private final double[] starts;
+    private final double length;
+
+    private Lattice(List<Element> elementsIn){
+        elements = elementsIn.toArray(new Element[0]);
+        starts = new double[elements.length];
+        double s = 0;
+        for (int i = 0; i < elements.length; i++) {
+            starts[i] = s;
+            s += elements[i].getLength();
+        }
+        length = s;
+    }
+
+    /**
+     * Lattice Builder
+     */
+    public static class Builder {
+
+        private final List<Element> elements = new ArrayList<>();
+        private double h = IVPSolver.DEFAULT_STEPSIZE;
+
+        /**
+         * Sets time step of elements tracked numerically that are added after this call
+         * @param h time step
+         * @return this builder
+         */
+        public Builder setTimeStep(double h){
+            if (!(h > 0)) {
+                throw new IllegalArgumentException("Time step must be positive.");
+            }
+            this.h = h;
+            return this;
+        }
+
+        /**
+         * Adds field free element
+         * @param length length
+         * @return this builder
+         */
+        public Builder drift(double length){
+            elements.add(new Drift(length));
+            return this;
+        }
+
+        /**
+         * Adds element of uniform magnetic field
+         * @param length length
+         * @param B magnetic field
+         * @return this builder
+         */
+        public Builder dipole(double length, Vector3 B){
+            elements.add(new Dipole(length, B));
+            return this;
+        }
+
+        /**
+         * Adds magnetic quadrupole (see Quadrupole)
+         * @param length length
+         * @param gradient gradient
+         * @return this builder
+         */
+        public Builder quadrupole(double length, double gradient){
+            return field(length, new Quadrupole(gradient));
+        }
+
+        /**
+         * Adds RF cavity
+         * @param length length
+         * @param cavity field of cavity in element coordinates
+         * @return this builder
+         */
+        public Builder cavity(double length, Sinusoid cavity){
+            return field(length, cavity);
+        }
+
+        /**
+         * Adds section of field map
+         * @param length length
+         * @param map field map in element coordinates
+         * @return this builder
+         */
+        public Builder fieldMap(double length, FieldMap map){
+            return field(length, map);
+        }
+
+        /**
+         * Adds element of any field, tracked numerically
+         * @param length length
+         * @param field field in element coordinates
+         * @return this builder
+         */
+        public Builder field(double length, EMField field){
+            elements.add(new FieldSection(length, field, h));
+            return this;
+        }
+
+        public Lattice build(){
+            if (elements.isEmpty()) {
+                throw new IllegalStateException("Lattice needs at least 1 element.");
+            }
+            return new Lattice(elements);
+        }
+    }
+
+    /**
+     * Gets number of elements
+     * @return number of elements
+     */
+    public int size(){
+        return elements.length;
+    }
+
+    /**
+     * Gets length
+     * @return total length of elements
+     */
+    public double getLength(){
+        return length;
+    }
+
+    /**
+     * Gets position of entrance of element i
+     * @param i index of element
+     * @return z at entrance
+     */
+    public double getStart(int i){
+        return starts[i];
+    }
+
+    /**
+     * Tracks body from its position to the end of the lattice, drifting to the entrance first if it is before it
+     * @param y state of body (x, y, z, vx, vy, vz) (overwritten with state at end, or where it was lost)
+     * @param t time at state y
+     * @param qm ratio of charge to rest mass
+     * @param c speed of light, infinite for Newtonian bodies
+     * @return time at which body reaches end of lattice, or NaN if it is lost
+     */
+    public double track(double[] y, double t, double qm, double c){
+
+        if (y[2] < 0) {
+            if (!(y[5] > 0)) {
+                return Double.NaN;
+            }
+            double dt = -y[2] / y[5];
+            y[0] += y[3] * dt;
+            y[1] += y[4] * dt;
+            y[2] = 0;
+            t += dt;
+        }
+
+        for (int i = 0; i < elements.length && !Double.isNaN(t); i++) {
+            if (y[2] >= starts[i] + elements[i].getLength()) {
+                continue;
+            }
+            y[2] -= starts[i];
+            t = elements[i].track(y, t, qm, c);
+            // bodies stop within tolerance of the exit, which is the entrance of the next element
+            y[2] = Double.isNaN(t) ? y[2] + starts[i] : starts[i] + elements[i].getLength();
+        }
+        return t;
+    }
+
+    /**
+     * Tracks every particle of bunch from its position to the end of the lattice
+     * @param bunch bunch (positions and velocities overwritten with those at end, or where lost)
+     * @param t time
+     * @return time at which each particle reaches end of lattice, NaN for particles that are lost
+     */
+    public double[] track(ChargedBunch bunch, double t){
+        Particle[] particles = bunch.getParticles();
+        ParticleStore store = bunch.getStore();
+        double[] x = store.x(), y = store.y(), z = store.z();
+        double[] vx = store.vx(), vy = store.vy(), vz = store.vz();
+        double[] times = new double[particles.length];
+        double[] state = new double[6];
+
+        for (int i = 0; i < particles.length; i++) {
+            ChargedParticle particle = (ChargedParticle) particles[i];
+            state[0] = x[i];
+            state[1] = y[i];
+            state[2] = z[i];
+            state[3] = vx[i];
+            state[4] = vy[i];
+            state[5] = vz[i];
+            times[i] = track(state, t, particle.getCharge() / particle.getRestMass(), particle.getLightSpeed());
+            x[i] = state[0];
+            y[i] = state[1];
+            z[i] = state[2];
+            vx[i] = state[3];
+            vy[i] = state[4];
+            vz[i] = state[5];
+        }
+        return times;
+    }
+
+    /**
+     * Relative size of the perturbations from which transferMatrix differentiates
+     */
+    private static final double PERTURBATION = 1E-6;
+
+    /**
+     * Derives linear map of the lattice (see TransferMatrix) about a reference body entering on the z axis,
+     * by tracking bodies perturbed from the reference in each coordinate and taking central differences.
+     * The map is exact for drifts and dipoles to the accuracy of the differences, and for other elements
+     * to that of their time step.
+     * @param v0 speed of reference at entrance
+     * @param t0 time at which reference enters (the phase of time dependent fields)
+     * @param qm ratio of charge to rest mass
+     * @param c speed of light, infinite for Newtonian bodies
+     * @return map from entrance to end of lattice
+     */
+    public TransferMatrix transferMatrix(double v0, double t0, double qm, double c){
+
+        if (!(v0 > 0)) {
+            throw new IllegalArgumentException("Reference must enter moving along z.");
+        }
+        double p0 = TransferMatrix.momentum(v0, c);
+        double[] reference = trackCoordinates(new double[6], v0, t0, qm, c, p0, null);
+        double p1 = reference[6]; // exit momentum of reference
+
+        double[] scale = {length, 1, length, 1, length, 1};
+        double[] m = new double[36];
+        double[] u = new double[6];
+        for (int j = 0; j < 6; j++) {
+            double e = PERTURBATION * scale[j];
+            u[j] = e;
+            double[] plus = trackCoordinates(u, v0, t0, qm, c, p0, reference);
+            u[j] = -e;
+            double[] minus = trackCoordinates(u, v0, t0, qm, c, p0, reference);
+            u[j] = 0;
+            for (int i = 0; i < 6; i++) {
+                m[6 * i + j] = (plus[i] - minus[i]) / (2 * e);
+            }
+        }
+        return new TransferMatrix(m, length, p1 / p0);
+    }
+
+    /**
+     * Tracks body of coordinates u at entrance relative to a reference of speed v0 entering on axis at t0
+     * @param reference coordinates and exit time of reference (see return), or null to track the reference
+     * @return coordinates at end relative to reference, then exit momentum per unit rest mass and exit time
+     */
+    private double[] trackCoordinates(double[] u, double v0, double t0, double qm, double c,
+                                      double p0, double[] reference){
+
+        double speed = TransferMatrix.speed(p0 * (1 + u[5]), c);
+        double vz = speed / Math.sqrt(1 + u[1] * u[1] + u[3] * u[3]);
+        double[] y = {u[0], u[2], 0, vz * u[1], vz * u[3], vz};
+        double t = track(y, t0 - u[4] / v0, qm, c);
+        if (Double.isNaN(t)) {
+            throw new IllegalStateException("Body near reference is lost in lattice.");
+        }
+
+        double p = TransferMatrix.momentum(Math.sqrt(y[3] * y[3] + y[4] * y[4] + y[5] * y[5]), c);
+        double[] v = {y[0], y[3] / y[5], y[1], y[4] / y[5], 0, 0, p, t};
+        if (reference != null) {
+            double p1 = reference[6];
+            v[4] = -(t - reference[7]) * TransferMatrix.speed(p1, c);
+            v[5] = p / p1 - 1;
+            for (int i = 0; i < 4; i++) {
+                v[i] -= reference[i];
+            }
+        }
+        return v;
+    }
+
+}
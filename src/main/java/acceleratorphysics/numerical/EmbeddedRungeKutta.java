@@ -0,0 +1,172 @@
+package acceleratorphysics.numerical;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive embedded Runge-Kutta method given by its Butcher tableau.
+ * Each step evaluates a pair of solutions of orders p and p - 1 from the same stages; their difference
+ * estimates the local error, which is weighed against absTol + relTol * |y| component by component.
+ * A step whose RMS weighted error exceeds one is rejected and retried with a smaller step,
+ * and the size of the next step is predicted from the error of the accepted one.
+ *
+ * stepSize() is the largest step the method takes. step(ODESystem, double, double[], double[][], double)
+ * takes one accepted step; step(ODESystem, double, double[], double[][]) integrates exactly stepSize()
+ * in as many accepted steps as needed.
+ *
+ * Methods whose last stage is evaluated at the solution (first same as last, FSAL) reuse it as
+ * the first stage of the next step, provided the next step starts where the last one ended.
+ * An instance remembers its predicted step size and so should not be shared by concurrent solves.
+ */
+class EmbeddedRungeKutta extends PhaseSpaceSolver {
+
+    private static final double SAFETY = 0.9;
+    private static final double MIN_FACTOR = 0.2;
+    private static final double MAX_FACTOR = 5;
+
+    private final double absTol;
+    private final double relTol;
+
+    // Butcher tableau
+    private final double[] c;
+    private final double[][] a;
+    private final double[] b;       // weights of solution of order p
+    private final double[] e;       // b - weights of embedded solution of order p - 1
+    private final double exponent;  // 1 / p
+    private final boolean fsal;
+
+    private double estimate;        // predicted size of next step
+
+    // End of last accepted step, at which the last stage was evaluated
+    private ODESystem lastSystem;
+    private double[][] lastWork;
+    private double lastT = Double.NaN;
+
+    /**
+     * Constructs embedded Runge-Kutta method
+     * @param name name of method
+     * @param maxStep largest step size
+     * @param absTol absolute tolerance
+     * @param relTol relative tolerance
+     * @param c nodes
+     * @param a Runge-Kutta matrix (row i holds i coefficients)
+     * @param b weights of solution of order p
+     * @param bHat weights of embedded solution of order p - 1
+     * @param order order p
+     */
+    EmbeddedRungeKutta(String name, double maxStep, double absTol, double relTol,
+                       double[] c, double[][] a, double[] b, double[] bHat, int order){
+        super(name, maxStep);
+        if (!(maxStep > 0) || absTol < 0 || relTol < 0 || absTol + relTol == 0) {
+            throw new IllegalArgumentException(
+                    "Maximum step size must be positive and tolerances non-negative, not both zero."
+            );
+        }
+        this.absTol = absTol;
+        this.relTol = relTol;
+        this.c = c;
+        this.a = a;
+        this.b = b;
+        this.e = new double[b.length];
+        for (int i = 0; i < b.length; i++) {
+            e[i] = b[i] - bHat[i];
+        }
+        this.exponent = 1D / order;
+        this.fsal = Arrays.equals(a[a.length - 1], Arrays.copyOf(b, b.length - 1)) && b[b.length - 1] == 0;
+        this.estimate = maxStep;
+    }
+
+    /**
+     * One work buffer per stage, one for the stage state and, for FSAL methods,
+     * one holding the end of the last accepted step
+     */
+    @Override
+    public int workBuffers(){
+        return b.length + (fsal ? 2 : 1);
+    }
+
+    @Override
+    public void step(ODESystem system, double t, double[] y, double[][] work){
+        double remaining = h;
+        while (remaining > 0) {
+            double taken = step(system, t, y, work, remaining);
+            t += taken;
+            remaining -= taken;
+        }
+    }
+
+    @Override
+    public double step(ODESystem system, double t, double[] y, double[][] work, double limit){
+
+        final int n = y.length;
+        final int s = b.length;
+        final double[][] k = work;
+        final double[] stage = work[s];
+        final double[] last = fsal ? work[s + 1] : null;
+
+        boolean truncated = limit < estimate;
+        double step = truncated ? limit : estimate;
+        boolean rejected = false;
+
+        if (!(fsal && system == lastSystem && work == lastWork && t == lastT && Arrays.equals(y, last))) {
+            system.derivative(t, y, k[0]);
+        }
+
+        while (true) {
+
+            for (int i = 1; i < s; i++) {
+                double[] row = a[i - 1];
+                for (int m = 0; m < n; m++) {
+                    double sum = 0;
+                    for (int j = 0; j < row.length; j++) {
+                        sum += row[j] * k[j][m];
+                    }
+                    stage[m] = y[m] + step * sum;
+                }
+                system.derivative(t + c[i] * step, stage, k[i]);
+            }
+
+            // Solution of order p (already in stage for FSAL methods) and RMS weighted error
+            double error = 0;
+            for (int m = 0; m < n; m++) {
+                double sum = 0, diff = 0;
+                for (int j = 0; j < s; j++) {
+                    sum += b[j] * k[j][m];
+                    diff += e[j] * k[j][m];
+                }
+                if (!fsal) {
+                    stage[m] = y[m] + step * sum;
+                }
+                double scale = absTol + relTol * Math.max(Math.abs(y[m]), Math.abs(stage[m]));
+                double r = step * diff / scale;
+                error += r * r;
+            }
+            error = Math.sqrt(error / n);
+
+            if (error <= 1) {
+                double factor = (error == 0) ? MAX_FACTOR
+                        : Math.min(MAX_FACTOR, Math.max(MIN_FACTOR, SAFETY * Math.pow(error, -exponent)));
+                double next = Math.min(h, step * (rejected ? Math.min(1, factor) : factor));
+                // a step cut short by limit says nothing against the prediction
+                estimate = truncated ? Math.max(estimate, next) : next;
+
+                System.arraycopy(stage, 0, y, 0, n);
+                if (fsal) {
+                    System.arraycopy(k[s - 1], 0, k[0], 0, n);
+                    System.arraycopy(y, 0, last, 0, n);
+                    lastSystem = system;
+                    lastWork = work;
+                    lastT = t + step;
+                }
+                return step;
+            }
+
+            step *= Math.max(MIN_FACTOR, SAFETY * Math.pow(error, -exponent));
+            truncated = false;
+            rejected = true;
+            if (t + step == t) {
+                throw new IllegalStateException(name() + " step size underflow at t = " + t + ".");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package acceleratorphysics.numerical;
+
+/**
+ * A utility class for in-place radix-2 fast Fourier transforms of complex data
+ * held as separate real and imaginary arrays.
+ */
+public final class FFT {
+
+    private FFT(){
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns true if n is a power of two
+     * @param n
+     * @return true if n = 2^k
+     */
+    public static boolean isPowerOfTwo(int n){
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    /**
+     * Transforms n complex values re[offset + k * stride], im[offset + k * stride] in place.
+     * The inverse transform is scaled by 1/n.
+     * @param re real parts
+     * @param im imaginary parts
+     * @param offset index of first value
+     * @param stride distance between consecutive values
+     * @param n number of values (power of two)
+     * @param inverse true for inverse transform
+     */
+    public static void transform(double[] re, double[] im, int offset, int stride, int n, boolean inverse){
+
+        if (!isPowerOfTwo(n)) {
+            throw new IllegalArgumentException("FFT length must be a power of two.");
+        }
+
+        // Bit reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                int a = offset + i * stride;
+                int b = offset + j * stride;
+                double t = re[a]; re[a] = re[b]; re[b] = t;
+                t = im[a]; im[a] = im[b]; im[b] = t;
+            }
+        }
+
+        // Butterflies
+        double sign = inverse ? 1 : -1;
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = sign * 2 * Math.PI / length;
+            double wRe = Math.cos(angle);
+            double wIm = Math.sin(angle);
+            for (int i = 0; i < n; i += length) {
+                double uRe = 1, uIm = 0;
+                for (int k = 0; k < length / 2; k++) {
+                    int a = offset + (i + k) * stride;
+                    int b = offset + (i + k + length / 2) * stride;
+                    double vRe = re[b] * uRe - im[b] * uIm;
+                    double vIm = re[b] * uIm + im[b] * uRe;
+                    re[b] = re[a] - vRe;
+                    im[b] = im[a] - vIm;
+                    re[a] += vRe;
+                    im[a] += vIm;
+                    double next = uRe * wRe - uIm * wIm;
+                    uIm = uRe * wIm + uIm * wRe;
+                    uRe = next;
+                }
+            }
+        }
+
+        if (inverse) {
+            for (int k = 0; k < n; k++) {
+                re[offset + k * stride] /= n;
+                im[offset + k * stride] /= n;
+            }
+        }
+    }
+
+    /**
+     * Transforms complex nx * ny * nz grid in place, stored with index (i * ny + j) * nz + k.
+     * @param re real parts
+     * @param im imaginary parts
+     * @param nx size along x (power of two)
+     * @param ny size along y (power of two)
+     * @param nz size along z (power of two)
+     * @param inverse true for inverse transform
+     */
+    public static void transform3D(double[] re, double[] im, int nx, int ny, int nz, boolean inverse){
+        for (int i = 0; i < nx; i++) {
+            for (int j = 0; j < ny; j++) {
+                transform(re, im, (i * ny + j) * nz, 1, nz, inverse);
+            }
+        }
+        for (int i = 0; i < nx; i++) {
+            for (int k = 0; k < nz; k++) {
+                transform(re, im, i * ny * nz + k, nz, ny, inverse);
+            }
+        }
+        for (int j = 0; j < ny; j++) {
+            for (int k = 0; k < nz; k++) {
+                transform(re, im, j * nz + k, ny * nz, nx, inverse);
+            }
+        }
+    }
+
+}
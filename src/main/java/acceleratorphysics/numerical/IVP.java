@@ -2,19 +2,22 @@ package acceleratorphysics.numerical;
 
 import acceleratorphysics.util.Vector3;
 
-import java.util.Observable;
-
 /**
  * Defines contract for initial value problem of 2nd order in euclidean space.
  * Concrete implementations must represent the problem in the form
  *
  *      y'' = f(y', y, t)
  *
+ * The primitive contract of ODESystem is adapted onto the Vector3 contract below.
+ * Concrete implementations may override derivative, state and advance to avoid
+ * allocating Vector3 objects on every step.
  */
-public abstract class IVP extends Observable {
+public abstract class IVP implements ODESystem {
 
     private final int order; // = 2. may be generalised in future development
 
+    private final StepListeners listeners = new StepListeners();
+
     /**
      * Constructs initial value problem of order order
      * @param order order
@@ -70,6 +73,77 @@ public abstract class IVP extends Observable {
         return f(y(),t());
     }
 
+    /**
+     * Length of flat state vector: y, y', ... y^(order-1) in consecutive triples
+     * @return 3 * order
+     */
+    @Override
+    public int dimension(){
+        return 3 * order;
+    }
+
+    /**
+     * Evaluates y' ... y^(order) of flat state y into dydt
+     * @param t time
+     * @param y state
+     * @param dydt derivative of state (overwritten)
+     */
+    @Override
+    public void derivative(double t, double[] y, double[] dydt){
+        Vector3[] Y = new Vector3[order];
+        for (int i = 0; i < order; i++) {
+            Y[i] = new Vector3(y[3 * i], y[3 * i + 1], y[3 * i + 2]);
+        }
+        System.arraycopy(y, 3, dydt, 0, 3 * (order - 1));
+        Vector3 f = f(Y, t);
+        dydt[3 * order - 3] = f.getX();
+        dydt[3 * order - 2] = f.getY();
+        dydt[3 * order - 1] = f.getZ();
+    }
+
+    /**
+     * Copies value of solution at current mesh point into flat state y
+     * @param y state (overwritten)
+     */
+    protected void state(double[] y){
+        Vector3[] Y = y();
+        for (int i = 0; i < order; i++) {
+            y[3 * i] = Y[i].getX();
+            y[3 * i + 1] = Y[i].getY();
+            y[3 * i + 2] = Y[i].getZ();
+        }
+    }
+
+    /**
+     * Sets value of solution at mesh point t() + h to flat state y
+     * (adapted onto increment(Vector3[], double))
+     * @param y state at t() + h
+     * @param h step size
+     */
+    protected void advance(double[] y, double h){
+        Vector3[] Y = y();
+        Vector3[] dy = new Vector3[order];
+        for (int i = 0; i < order; i++) {
+            dy[i] = new Vector3(
+                    y[3 * i] - Y[i].getX(),
+                    y[3 * i + 1] - Y[i].getY(),
+                    y[3 * i + 2] - Y[i].getZ()
+            );
+        }
+        increment(dy, h);
+    }
+
+    /**
+     * Sets value of solution at mesh point t() + h to flat state y without evaluating the problem there,
+     * as part of a system which evaluates it in bulk (see IVPSystem.advance).
+     * By default this is advance(double[], double).
+     * @param y state at t() + h
+     * @param h step size
+     */
+    protected void move(double[] y, double h){
+        advance(y, h);
+    }
+
     /**
      * This method must be implemented such that if
      *
@@ -110,6 +184,15 @@ public abstract class IVP extends Observable {
         return order == N;
     }
 
+    /**
+     * Throws if this concrete implementation is implemented inconsistently
+     */
+    final void checkImplementation(){
+        if(!implementedCorrectly()) {
+            throw new InconsistentImplementationException(order, y().length);
+        }
+    }
+
     /**
      * Exception thrown when this interface is implemented improperly
      */
@@ -129,20 +212,52 @@ public abstract class IVP extends Observable {
 
 
     /**
-     * Iterates this IVP using specified numerical method for specified time
+     * Adds listener called after every step of solve, without locking or allocating
+     * @param listener step listener (see StepListener.everySteps and everyTime to decimate)
+     * @return this IVP
+     */
+    public IVP addStepListener(StepListener listener){
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Removes step listener
+     * @param listener step listener
+     * @return this IVP
+     */
+    public IVP removeStepListener(StepListener listener){
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Returns number of steps taken by solve
+     * @return steps
+     */
+    public long getSteps(){
+        return listeners.getSteps();
+    }
+
+    /**
+     * Iterates this IVP using specified numerical method for specified time.
+     * State and work buffers are allocated once, not per step.
+     * Steps are as long as the numerical method takes them; adaptive methods stop at exactly time.
+     * Step listeners are called after every step (see StepObservable for observers).
      * @param solver numerical method
      * @param time time
      * @return this IVP object
      */
     public final IVP solve(IVPSolver solver, double time){
-        if(!implementedCorrectly()) {
-            throw new InconsistentImplementationException(order, y().length);
-        }
+        checkImplementation();
+        double[] y = new double[dimension()];
+        double[][] work = new double[solver.workBuffers()][y.length];
         double t0 = t();
         while (t()-t0 < time){
-            increment(solver.dy(this), solver.stepSize()); // 'visit' happens here
-            setChanged();
-            notifyObservers();
+            state(y); // listeners may have changed this IVP
+            double h = solver.step(this, t(), y, work, time - (t() - t0)); // 'visit' happens here
+            advance(y, h);
+            listeners.step(t(), y);
         }
         return this;
     }
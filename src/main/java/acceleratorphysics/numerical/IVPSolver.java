@@ -6,18 +6,24 @@ import acceleratorphysics.util.Vector3;
 /**
  * Defines contract for a numerical method that solves initial value problems.
  * Also contains static factory of such numerical methods.
+ *
+ * Numerical methods step flat phase space state (see ODESystem) in place using a
+ * caller supplied work buffer, so that stepping does not allocate. The Vector3
+ * contract dy(IVP) is kept as an adapter.
  */
 public interface IVPSolver {
 
     double DEFAULT_STEPSIZE = 1E-3;
 
+    double DEFAULT_TOLERANCE = 1E-9;
+
     /**
      * Name of numerical method
      */
     String name();
 
     /**
-     * Returns step size (allows future development of variable step size methods)
+     * Returns step size (largest step size of adaptive methods)
      * @return step size
      */
     double stepSize();
@@ -30,30 +36,91 @@ public interface IVPSolver {
      */
     Vector3[] dy(IVP ivp);
 
+    /**
+     * Advances phase space state y of system from t to t + stepSize() in place.
+     * Methods implementing only dy(IVP) are adapted here, in which case system
+     * must be an IVP whose current state is y.
+     * @param system system of initial value problems
+     * @param t time of state y
+     * @param y state (overwritten with state at t + stepSize())
+     * @param work workBuffers() work buffers, each of length y.length
+     */
+    default void step(ODESystem system, double t, double[] y, double[][] work){
+        if (!(system instanceof IVP)) {
+            throw new UnsupportedOperationException(
+                    name() + " implements dy(IVP) only and cannot step an ODESystem."
+            );
+        }
+        Vector3[] dy = dy((IVP) system);
+        for (int i = 0; i < dy.length; i++) {
+            y[3 * i] += dy[i].getX();
+            y[3 * i + 1] += dy[i].getY();
+            y[3 * i + 2] += dy[i].getZ();
+        }
+    }
+
+    /**
+     * Advances phase space state y of system from t by one step in place and returns the size of the step.
+     * Fixed step methods step by stepSize() as step(ODESystem, double, double[], double[][]) does.
+     * Adaptive methods choose the step by error control and step by no more than limit.
+     * @param system system of initial value problems
+     * @param t time of state y
+     * @param y state (overwritten with state at t + returned step size)
+     * @param work workBuffers() work buffers, each of length y.length
+     * @param limit largest step an adaptive method may take
+     * @return step size taken
+     */
+    default double step(ODESystem system, double t, double[] y, double[][] work, double limit){
+        step(system, t, y, work);
+        return stepSize();
+    }
+
+    /**
+     * Advances phase space state y of system from t to t + dt in place, a step other than stepSize()
+     * (e.g. one landing on a boundary), without constructing another numerical method.
+     * Supported by the splitting methods (boris, the leapfrogs and their compositions).
+     * @param system system of initial value problems
+     * @param t time of state y
+     * @param y state (overwritten with state at t + dt)
+     * @param work workBuffers() work buffers, each of length y.length
+     * @param dt step size
+     */
+    default void stepBy(ODESystem system, double t, double[] y, double[][] work, double dt){
+        throw new UnsupportedOperationException(name() + " steps by stepSize() only.");
+    }
+
+    /**
+     * Returns number of work buffers, each the length of the state vector, required by step
+     * @return number of work buffers
+     */
+    default int workBuffers(){
+        return 0;
+    }
+
     /**
      * Returns euler method
      * @param h step size
      * @return euler method
      */
     static IVPSolver euler(double h){
-        return new IVPSolver() {
+        return new PhaseSpaceSolver("EULER", h) {
 
             @Override
-            public String name(){
-                return "EULER";
+            public int workBuffers() {
+                return 1;
             }
 
             @Override
-            public double stepSize() {
-                return h;
-            }
+            public void step(ODESystem system, double t, double[] y, double[][] work) {
 
-            @Override
-            public Vector3[] dy(IVP ivp) {
+                final int n = y.length;
+                final double[] dydt = work[0];
 
-                Vector3[] dy = ivp.y();
+                system.derivative(t, y, dydt);
 
-                return new Vector3[]{dy[1].scale(h), ivp.f().scale(h)};
+                for (int i = 0; i < n; i++) {
+                    y[i] += h * dydt[i];
+                }
             }
         };
     }
@@ -72,26 +139,28 @@ public interface IVPSolver {
      * @return euler cromer method
      */
     static IVPSolver eulerCromer(double h) {
-        return new IVPSolver() {
-            @Override
-            public String name() {
-                return "EULERCROMER";
-            }
+        return new PhaseSpaceSolver("EULERCROMER", h) {
 
             @Override
-            public double stepSize() {
-                return h;
+            public int workBuffers() {
+                return 1;
             }
 
             @Override
-            public Vector3[] dy(IVP ivp) {
+            public void step(ODESystem system, double t, double[] y, double[][] work) {
 
-                Vector3[] dy = new Vector3[2];
+                final int n = y.length;
+                final double[] dydt = work[0];
 
-                dy[1] = ivp.f().scale(h);
-                dy[0] = ivp.y()[1].add(dy[1]).scale(h);
+                system.derivative(t, y, dydt);
 
-                return dy;
+                // velocity first, then position from updated velocity
+                for (int j = 0; j < n; j += 6) {
+                    for (int r = j; r < j + 3; r++) {
+                        y[r + 3] += h * dydt[r + 3];
+                        y[r] += h * y[r + 3];
+                    }
+                }
             }
         };
     }
@@ -110,34 +179,31 @@ public interface IVPSolver {
      * @return midpoint method
      */
     static IVPSolver midpoint(double h){
-        return new IVPSolver() {
-            @Override
-            public String name() {
-                return "MIDPOINT";
-            }
+        return new PhaseSpaceSolver("MIDPOINT", h) {
 
             @Override
-            public double stepSize() {
-                return h;
+            public int workBuffers() {
+                return 2;
             }
 
             @Override
-            public Vector3[] dy(IVP ivp) {
+            public void step(ODESystem system, double t, double[] y, double[][] work) {
 
-                // Current iteration
-                Vector3[] y = ivp.y();
+                final int n = y.length;
+                final double[] dydt = work[0];
+                final double[] mid = work[1];
 
                 // Half iteration using euler method
-                Vector3[] euler = euler(h/2).dy(ivp);
-                y[0] = y[0].add(euler[0]);
-                y[1] = y[1].add(euler[1]);
-
-                // Mid-points
-                Vector3[] dy = new Vector3[2];
-                dy[1] = ivp.f(y,ivp.t(h/2)).scale(h);
-                dy[0] = y[1].scale(h);
-
-                return dy;
+                system.derivative(t, y, dydt);
+                for (int i = 0; i < n; i++) {
+                    mid[i] = y[i] + 0.5 * h * dydt[i];
+                }
+
+                // Full iteration using gradient at mid-point
+                system.derivative(t + 0.5 * h, mid, dydt);
+                for (int i = 0; i < n; i++) {
+                    y[i] += h * dydt[i];
+                }
             }
         };
     }
@@ -156,34 +222,40 @@ public interface IVPSolver {
      * @return velocity verlet method
      */
     static IVPSolver velocityVerlet(double h){
-        return new IVPSolver() {
-            @Override
-            public String name() {
-                return "VELOCITYVERLET";
-            }
+        return new PhaseSpaceSolver("VELOCITYVERLET", h) {
 
             @Override
-            public double stepSize() {
-                return h;
+            public int workBuffers() {
+                return 2;
             }
 
             @Override
-            public Vector3[] dy(IVP ivp) {
-
-                Vector3[] y = ivp.y(); // current y, y'
-                Vector3 f = ivp.f();  // current y''
-
-                Vector3[] dy = new Vector3[2]; // increments
-
-                dy[0] = y[1].add(f.scale(h/2)).scale(h);
-
-                y[0] = y[0].add(dy[0]); // update y
-                y[1] = y[1].add(f.scale(h));
-                Vector3 future_f = ivp.f(y,ivp.t(h));
-
-                dy[1] = f.scale(h/2).add(future_f.scale(h/2));
-
-                return dy;
+            public void step(ODESystem system, double t, double[] y, double[][] work) {
+
+                final int n = y.length;
+                final double[] dydt = work[0];
+                final double[] future = work[1]; // future y, y'
+
+                system.derivative(t, y, dydt); // current y''
+
+                for (int j = 0; j < n; j += 6) {
+                    for (int r = j; r < j + 3; r++) {
+                        double v = y[r + 3];
+                        double a = dydt[r + 3];
+                        y[r] += h * (v + 0.5 * h * a); // update y
+                        y[r + 3] = v + 0.5 * h * a;    // half of y' increment
+                        future[r] = y[r];
+                        future[r + 3] = v + h * a;
+                    }
+                }
+
+                system.derivative(t + h, future, dydt); // future y''
+
+                for (int j = 0; j < n; j += 6) {
+                    for (int v = j + 3; v < j + 6; v++) {
+                        y[v] += 0.5 * h * dydt[v];
+                    }
+                }
             }
         };
     }
@@ -195,74 +267,241 @@ public interface IVPSolver {
      */
     static IVPSolver rungeKutta4(double h) {
 
-        return new IVPSolver() {
+        return new PhaseSpaceSolver("RK4", h) {
+
             @Override
-            public String name() {
-                return "RK4";
+            public int workBuffers() {
+                return 3;
             }
 
             @Override
-            public double stepSize() {
-                return h;
+            public void step(ODESystem system, double t, double[] y, double[][] work){
+
+                final int n = y.length;
+                final double[] dydt = work[0];
+                final double[] stage = work[1];
+                final double[] sum = work[2]; // weighted sum of stage gradients
+
+                // Gradient at t
+                system.derivative(t, y, dydt);
+                for (int i = 0; i < n; i++) {
+                    sum[i] = dydt[i];
+                    stage[i] = y[i] + 0.5 * h * dydt[i];
+                }
+
+                // Stage 1 (t + h/2) from gradient at t
+                system.derivative(t + 0.5 * h, stage, dydt);
+                for (int i = 0; i < n; i++) {
+                    sum[i] += 2D * dydt[i];
+                    stage[i] = y[i] + 0.5 * h * dydt[i];
+                }
+
+                // Stage 2 (t + h/2) from gradient of stage 1
+                system.derivative(t + 0.5 * h, stage, dydt);
+                for (int i = 0; i < n; i++) {
+                    sum[i] += 2D * dydt[i];
+                    stage[i] = y[i] + h * dydt[i];
+                }
+
+                // Stage 3 (t + h) from gradient of stage 2
+                system.derivative(t + h, stage, dydt);
+                for (int i = 0; i < n; i++) {
+                    y[i] += h / 6 * (sum[i] + dydt[i]);
+                }
             }
+        };
+    }
 
+    /**
+     * 4th order Runge-Kutta method
+     * @return 4th order Runge-Kutta method with default step size
+     */
+    static IVPSolver rungeKutta4(){
+        return rungeKutta4(DEFAULT_STEPSIZE);
+    }
 
-            @Override
-            public Vector3[] dy(IVP ivp){
+    /**
+     * Boris method for charged bodies in an electromagnetic field (system must be a LorentzSystem).
+     * Each body drifts half a step, is kicked by the fields at its mid-step position
+     * (half electric kick, magnetic rotation, half electric kick) and drifts the other half step.
+     * The kick acts on u = gamma * v, so the method is relativistic for bodies of finite speed of light.
+     * It evaluates the fields once per step, preserves phase space volume and
+     * conserves energy exactly in a pure magnetic field.
+     * @param h step size
+     * @return Boris method
+     */
+    static IVPSolver boris(double h){
+        return new SplittingSolver("BORIS", h, true, new double[]{0.5, 1, 0.5}, true);
+    }
+
+    /**
+     * Boris method
+     * @return Boris method with default step size
+     */
+    static IVPSolver boris(){
+        return boris(DEFAULT_STEPSIZE);
+    }
 
-                Vector3[] y0 = ivp.y();
+    /**
+     * Position leapfrog (drift, kick, drift), one evaluation per step. The kick of a LorentzSystem is
+     * a Boris kick, so that for LorentzSystems this is the Boris method; other systems are kicked
+     * by the acceleration of their derivative. Symplectic for accelerations that depend on position only.
+     * @param h step size
+     * @return position leapfrog
+     */
+    static IVPSolver positionLeapfrog(double h){
+        return new SplittingSolver("POSITIONLEAPFROG", h, true, new double[]{0.5, 1, 0.5}, false);
+    }
 
-                Vector3 k0 = y0[1].scale(h);
-                Vector3 l0 = ivp.f().scale(h);
+    /**
+     * Position leapfrog
+     * @return position leapfrog with default step size
+     */
+    static IVPSolver positionLeapfrog(){
+        return positionLeapfrog(DEFAULT_STEPSIZE);
+    }
 
-                Vector3[] dy0 = new Vector3[2];
-                dy0[0] = y0[0].add(k0.scale(0.5));
-                dy0[1] = y0[1].add(l0.scale(0.5));
+    /**
+     * Velocity leapfrog (kick, drift, kick), two evaluations per step, kicks as in positionLeapfrog.
+     * For systems that are not LorentzSystems this is the velocity Verlet method.
+     * @param h step size
+     * @return velocity leapfrog
+     */
+    static IVPSolver velocityLeapfrog(double h){
+        return new SplittingSolver("VELOCITYLEAPFROG", h, false, new double[]{0.5, 1, 0.5}, false);
+    }
 
-                Vector3 k1 = y0[1].add(l0.scale(0.5)).scale(h);
-                Vector3 l1 = ivp.f(dy0, ivp.t(0.5 * h)).scale(h);
+    /**
+     * Velocity leapfrog
+     * @return velocity leapfrog with default step size
+     */
+    static IVPSolver velocityLeapfrog(){
+        return velocityLeapfrog(DEFAULT_STEPSIZE);
+    }
 
-                Vector3[] dy1 = new Vector3[2];
-                dy1[0] = y0[0].add(k1.scale(0.5));
-                dy1[1] = y0[1].add(l1.scale(0.5));
+    /**
+     * 4th order Forest-Ruth method (Yoshida's triple jump): three position leapfrog substeps of
+     * weights w1, 1 - 2 w1, w1 with w1 = 1 / (2 - 2^(1/3)), three evaluations per step.
+     * Being a composition of leapfrog, its energy error stays bounded over long runs.
+     * @param h step size
+     * @return Forest-Ruth method
+     */
+    static IVPSolver forestRuth(double h){
+        double w1 = 1 / (2 - Math.cbrt(2));
+        return SplittingSolver.composition("FORESTRUTH", h, w1, 1 - 2 * w1, w1);
+    }
 
-                Vector3 k2 = y0[1].add(l1.scale(0.5)).scale(h);
-                Vector3 l2 = ivp.f(dy1, ivp.t(0.5 * h)).scale(h);
+    /**
+     * 4th order Forest-Ruth method
+     * @return Forest-Ruth method with default step size
+     */
+    static IVPSolver forestRuth(){
+        return forestRuth(DEFAULT_STEPSIZE);
+    }
 
-                Vector3[] dy2 = new Vector3[2];
-                dy2[0] = y0[0].add(k2);
-                dy2[1] = y0[1].add(l2);
+    /**
+     * 6th order Yoshida method (solution A): seven position leapfrog substeps, seven evaluations per step
+     * @param h step size
+     * @return 6th order Yoshida method
+     */
+    static IVPSolver yoshida6(double h){
+        double w1 = -1.17767998417887, w2 = 0.235573213359357, w3 = 0.784513610477560;
+        double w0 = 1 - 2 * (w1 + w2 + w3);
+        return SplittingSolver.composition("YOSHIDA6", h, w3, w2, w1, w0, w1, w2, w3);
+    }
 
-                Vector3 k3 = y0[1].add(l2).scale(h);
-                Vector3 l3 = ivp.f(dy2, ivp.t(h)).scale(h);
+    /**
+     * 6th order Yoshida method
+     * @return 6th order Yoshida method with default step size
+     */
+    static IVPSolver yoshida6(){
+        return yoshida6(DEFAULT_STEPSIZE);
+    }
 
+    /**
+     * Exact propagation of charged bodies in uniform, constant fields (system must be a LorentzSystem
+     * whose uniformFields() is true). Each step advances the bodies along their closed form
+     * trajectories, a helix with drift for Newtonian bodies, so that the step size is limited only
+     * by how often the state is to be observed. Relativistic bodies are propagated in any
+     * combination of electric and magnetic field.
+     * @param h step size
+     * @return exact propagator
+     */
+    static IVPSolver exactUniform(double h){
+        return new UniformFieldSolver(h);
+    }
 
-                Vector3[] dy = new Vector3[2];
+    /**
+     * Exact propagation of charged bodies in uniform, constant fields in one step per solve
+     * @return exact propagator with infinite step size
+     */
+    static IVPSolver exactUniform(){
+        return exactUniform(Double.POSITIVE_INFINITY);
+    }
 
-                dy[0] = k0
-                        .add(k1.scale(2D))
-                        .add(k2.scale(2D))
-                        .add(k3)
-                        .scale(1D/6);
+    /**
+     * Dormand-Prince 5(4) method: adaptive, with 4th order embedded error estimate and FSAL
+     * @param maxStep largest step size
+     * @param absTol absolute tolerance
+     * @param relTol relative tolerance
+     * @return Dormand-Prince method
+     */
+    static IVPSolver dormandPrince(double maxStep, double absTol, double relTol){
+        return new EmbeddedRungeKutta("DORMANDPRINCE", maxStep, absTol, relTol,
+                new double[]{0, 1D / 5, 3D / 10, 4D / 5, 8D / 9, 1, 1},
+                new double[][]{
+                        {1D / 5},
+                        {3D / 40, 9D / 40},
+                        {44D / 45, -56D / 15, 32D / 9},
+                        {19372D / 6561, -25360D / 2187, 64448D / 6561, -212D / 729},
+                        {9017D / 3168, -355D / 33, 46732D / 5247, 49D / 176, -5103D / 18656},
+                        {35D / 384, 0, 500D / 1113, 125D / 192, -2187D / 6784, 11D / 84}
+                },
+                new double[]{35D / 384, 0, 500D / 1113, 125D / 192, -2187D / 6784, 11D / 84, 0},
+                new double[]{5179D / 57600, 0, 7571D / 16695, 393D / 640, -92097D / 339200, 187D / 2100, 1D / 40},
+                5
+        );
+    }
 
-                dy[1] = l0
-                        .add(l1.scale(2D))
-                        .add(l2.scale(2D))
-                        .add(l3)
-                        .scale(1D/6);
+    /**
+     * Dormand-Prince 5(4) method with default tolerances
+     * @param maxStep largest step size
+     * @return Dormand-Prince method
+     */
+    static IVPSolver dormandPrince(double maxStep){
+        return dormandPrince(maxStep, DEFAULT_TOLERANCE, DEFAULT_TOLERANCE);
+    }
 
-                return dy;
-            }
-        };
+    /**
+     * Cash-Karp 5(4) method: adaptive, with 4th order embedded error estimate
+     * @param maxStep largest step size
+     * @param absTol absolute tolerance
+     * @param relTol relative tolerance
+     * @return Cash-Karp method
+     */
+    static IVPSolver cashKarp(double maxStep, double absTol, double relTol){
+        return new EmbeddedRungeKutta("CASHKARP", maxStep, absTol, relTol,
+                new double[]{0, 1D / 5, 3D / 10, 3D / 5, 1, 7D / 8},
+                new double[][]{
+                        {1D / 5},
+                        {3D / 40, 9D / 40},
+                        {3D / 10, -9D / 10, 6D / 5},
+                        {-11D / 54, 5D / 2, -70D / 27, 35D / 27},
+                        {1631D / 55296, 175D / 512, 575D / 13824, 44275D / 110592, 253D / 4096}
+                },
+                new double[]{37D / 378, 0, 250D / 621, 125D / 594, 0, 512D / 1771},
+                new double[]{2825D / 27648, 0, 18575D / 48384, 13525D / 55296, 277D / 14336, 1D / 4},
+                5
+        );
     }
 
     /**
-     * 4th order Runge-Kutta method
-     * @return 4th order Runge-Kutta method with default step size
+     * Cash-Karp 5(4) method with default tolerances
+     * @param maxStep largest step size
+     * @return Cash-Karp method
      */
-    static IVPSolver rungeKutta4(){
-        return rungeKutta4(DEFAULT_STEPSIZE);
+    static IVPSolver cashKarp(double maxStep){
+        return cashKarp(maxStep, DEFAULT_TOLERANCE, DEFAULT_TOLERANCE);
     }
 
 }
-
@@ -1,17 +1,366 @@
 package acceleratorphysics.numerical;
 
-import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-public class IVPSystem {
+/**
+ * System of initial value problems solved together as one.
+ * The state of every IVP is held in one flat phase space vector (see ODESystem)
+ * and the derivative of every IVP is evaluated for a stage before any of them is advanced,
+ * so multi-stage methods stay consistent when the IVPs interact.
+ *
+ * Given a ForkJoinPool, derivatives and advances are evaluated in parallel over blocks of
+ * consecutive IVPs. Every stage joins all blocks before the numerical method continues,
+ * and each IVP is evaluated exactly as in the serial path, so results are identical.
+ * IVPs must then tolerate concurrent evaluation of different IVPs of the system.
+ *
+ * The LorentzSystem contract is delegated to the IVPs, each of which must then be a LorentzSystem.
+ */
+public class IVPSystem implements LorentzSystem {
 
-    private static ArrayList<IVPSystem> system;
+    private final IVP[] ivps;
+    private final int[] offsets;
+    private final int dimension;
 
+    /**
+     * Default number of IVPs per block (the block's slice of state and derivative fits in L1 cache)
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private final int widest;   // largest dimension of an IVP
+    private double[][] in;      // per block: state of one IVP
+    private double[][] out;     // per block: derivative of one IVP
+    private double[][] field;   // per block: magnetic field of one IVP (electric field in out)
+
+    private ForkJoinPool pool;  // null for serial evaluation
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    private double time;
+
+    private final StepListeners listeners = new StepListeners();
+
+    /**
+     * Constructs system of initial value problems
+     * @param ivps initial value problems
+     */
     public IVPSystem(IVP... ivps){
-        system = new ArrayList<>();
+        if (ivps.length == 0) {
+            throw new IllegalArgumentException("Use IVPSystem to solve 1 or more IVP objects.");
+        }
+        this.ivps = ivps.clone();
+        offsets = new int[ivps.length];
+        int n = 0;
+        int widest = 0;
+        for (int i = 0; i < ivps.length; i++) {
+            offsets[i] = n;
+            n += ivps[i].dimension();
+            widest = Math.max(widest, ivps[i].dimension());
+        }
+        dimension = n;
+        this.widest = widest;
+        time = ivps[0].t();
+        allocateBlocks();
+    }
+
+    /**
+     * Sets pool in which blocks of IVPs are evaluated in parallel
+     * @param pool fork/join pool, or null for serial evaluation
+     * @return this system
+     */
+    public IVPSystem setPool(ForkJoinPool pool){
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Sets number of consecutive IVPs evaluated together by one task
+     * @param blockSize IVPs per block
+     * @return this system
+     */
+    public IVPSystem setBlockSize(int blockSize){
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.blockSize = blockSize;
+        allocateBlocks();
+        return this;
+    }
+
+    /**
+     * Allocates scratch buffers of every block
+     */
+    private void allocateBlocks(){
+        int blocks = (ivps.length + blockSize - 1) / blockSize;
+        in = new double[blocks][widest];
+        out = new double[blocks][widest];
+        field = new double[blocks][widest];
+    }
+
+    /**
+     * Operation on IVPs of one block
+     */
+    protected interface BlockOperation {
+
+        /**
+         * Applies operation to IVPs from <= i < to of block
+         * @param block index of block
+         * @param from first IVP of block
+         * @param to end of IVPs of block (exclusive)
+         */
+        void apply(int block, int from, int to);
+    }
+
+    /**
+     * Applies operation to every block, in parallel if a pool is set.
+     * Subclasses use this to evaluate work shared by the IVPs of a block in one pass.
+     * @param operation operation on block
+     */
+    protected void forEachBlock(BlockOperation operation){
+        int blocks = in.length;
+        if (pool == null || blocks == 1) {
+            for (int b = 0; b < blocks; b++) {
+                operation.apply(b, b * blockSize, Math.min(ivps.length, (b + 1) * blockSize));
+            }
+        } else {
+            pool.invoke(new Blocks(operation, 0, blocks));
+        }
+    }
+
+    /**
+     * Fork/join task applying operation to blocks [lo, hi)
+     */
+    private final class Blocks extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BlockOperation operation;
+        private final int lo, hi;
+
+        Blocks(BlockOperation operation, int lo, int hi){
+            this.operation = operation;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute(){
+            if (hi - lo == 1) {
+                operation.apply(lo, lo * blockSize, Math.min(ivps.length, hi * blockSize));
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Blocks(operation, lo, mid), new Blocks(operation, mid, hi));
+            }
+        }
+    }
+
+    @Override
+    public int dimension(){
+        return dimension;
+    }
+
+    /**
+     * Returns time of current mesh point
+     * @return time at now
+     */
+    public double t(){
+        return time;
+    }
+
+    /**
+     * Called with the state of every IVP at a stage, before any derivative of that stage is evaluated.
+     * Systems of interacting IVPs override this to expose stage state to the interaction.
+     * @param t time of stage
+     * @param y state of stage
+     */
+    protected void stage(double t, double[] y){
+    }
+
+    @Override
+    public void derivative(double t, double[] y, double[] dydt){
+        stage(t, y);
+        forEachBlock((b, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int n = ivps[i].dimension();
+                System.arraycopy(y, offsets[i], in[b], 0, n);
+                ivps[i].derivative(t, in[b], out[b]);
+                System.arraycopy(out[b], 0, dydt, offsets[i], n);
+            }
+        });
+    }
+
+    /**
+     * Returns IVP i as a LorentzSystem
+     * @param i index of IVP
+     * @return IVP i
+     */
+    private LorentzSystem lorentz(int i){
+        if (!(ivps[i] instanceof LorentzSystem)) {
+            throw new UnsupportedOperationException(
+                    ivps[i].getClass().getName() + " is not a LorentzSystem."
+            );
+        }
+        return (LorentzSystem) ivps[i];
+    }
+
+    @Override
+    public void fields(double t, double[] y, double[] e, double[] b){
+        stage(t, y);
+        forEachBlock((block, from, to) -> {
+            for (int i = from; i < to; i++) {
+                int n = ivps[i].dimension();
+                System.arraycopy(y, offsets[i], in[block], 0, n);
+                lorentz(i).fields(t, in[block], out[block], field[block]);
+                System.arraycopy(out[block], 0, e, offsets[i] / 2, n / 2);
+                System.arraycopy(field[block], 0, b, offsets[i] / 2, n / 2);
+            }
+        });
+    }
+
+    /**
+     * Returns true if every IVP is a LorentzSystem, so that the LorentzSystem contract of this system holds
+     */
+    boolean lorentzOnly(){
+        for (IVP ivp : ivps) {
+            if (!(ivp instanceof LorentzSystem)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if every IVP is a LorentzSystem in uniform fields
+     */
+    @Override
+    public boolean uniformFields(){
+        for (IVP ivp : ivps) {
+            if (!(ivp instanceof LorentzSystem) || !((LorentzSystem) ivp).uniformFields()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void chargeToMass(double[] qm){
+        for (int i = 0; i < ivps.length; i++) {
+            lorentz(i).chargeToMass(in[0]);
+            System.arraycopy(in[0], 0, qm, offsets[i] / 6, ivps[i].dimension() / 6);
+        }
+    }
+
+    @Override
+    public void lightSpeed(double[] c){
+        for (int i = 0; i < ivps.length; i++) {
+            lorentz(i).lightSpeed(in[0]);
+            System.arraycopy(in[0], 0, c, offsets[i] / 6, ivps[i].dimension() / 6);
+        }
+    }
+
+    /**
+     * Copies value of solution of every IVP at current mesh point into flat state y
+     * @param y state (overwritten)
+     */
+    protected void state(double[] y){
+        for (int i = 0; i < ivps.length; i++) {
+            ivps[i].state(in[0]);
+            System.arraycopy(in[0], 0, y, offsets[i], ivps[i].dimension());
+        }
+    }
+
+    /**
+     * Sets value of solution of every IVP at mesh point t() + h to flat state y.
+     * The system is staged at y and every IVP evaluated there once, so that what an IVP holds besides
+     * its state (e.g. the acceleration of a particle) is that of the state it was advanced to.
+     * @param y state at t() + h
+     * @param h step size
+     */
+    protected void advance(double[] y, double h){
+        time += h;
+        stage(time, y);
+        forEachBlock((b, from, to) -> advance(time, y, h, b, from, to));
+    }
+
+    /**
+     * Advances IVPs from <= i < to, block b of the system, to flat state y at t, evaluating each there.
+     * Systems evaluating the interaction in bulk override this to move the IVPs (see move)
+     * and evaluate the block in one call.
+     * @param t time reached
+     * @param y state at t
+     * @param h step size
+     * @param b block
+     * @param from first IVP of block
+     * @param to IVP after last of block
+     */
+    protected void advance(double t, double[] y, double h, int b, int from, int to){
+        for (int i = from; i < to; i++) {
+            System.arraycopy(y, offsets[i], in[b], 0, ivps[i].dimension());
+            ivps[i].advance(in[b], h);
+        }
+    }
+
+    /**
+     * Sets value of solution of IVP i to its part of flat state y without evaluating it (see IVP.move)
+     * @param y state at t() (already advanced by h)
+     * @param h step size
+     * @param b block of IVP
+     * @param i index of IVP
+     */
+    protected final void move(double[] y, double h, int b, int i){
+        System.arraycopy(y, offsets[i], in[b], 0, ivps[i].dimension());
+        ivps[i].move(in[b], h);
+    }
+
+    /**
+     * Adds listener called after every step of solve, without locking or allocating
+     * @param listener step listener (see StepListener.everySteps and everyTime to decimate)
+     * @return this IVPSystem
+     */
+    public IVPSystem addStepListener(StepListener listener){
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Removes step listener
+     * @param listener step listener
+     * @return this IVPSystem
+     */
+    public IVPSystem removeStepListener(StepListener listener){
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Returns number of steps taken by solve
+     * @return steps
+     */
+    public long getSteps(){
+        return listeners.getSteps();
     }
 
-    public void solve(IVPSolver solver, double time){
-        system.forEach(ivp -> ivp.solve(solver, time));
+    /**
+     * Iterates this system using specified numerical method for specified time
+     * Steps are as long as the numerical method takes them; adaptive methods stop at exactly time.
+     * Step listeners are called after every step.
+     * @param solver numerical method
+     * @param time time
+     * @return this system
+     */
+    public final IVPSystem solve(IVPSolver solver, double time){
+        for (IVP ivp : ivps) {
+            ivp.checkImplementation();
+        }
+        double[] y = new double[dimension];
+        double[][] work = new double[solver.workBuffers()][dimension];
+        double t0 = t();
+        while (t()-t0 < time){
+            state(y); // listeners may have changed the IVPs
+            double h = solver.step(this, t(), y, work, time - (t() - t0));
+            advance(y, h);
+            listeners.step(t(), y);
+        }
+        return this;
     }
 
 }
@@ -0,0 +1,43 @@
+package acceleratorphysics.numerical;
+
+/**
+ * Defines primitive contract for a system of charged bodies in an electromagnetic field
+ * (see ODESystem for the layout of state).
+ * Exposes the fields and charge to mass ratios rather than only the acceleration, so that
+ * numerical methods specialised for the Lorentz force, such as the Boris method, can push the bodies.
+ *
+ * Velocities in state are coordinate velocities dr/dt also for relativistic bodies.
+ */
+public interface LorentzSystem extends ODESystem {
+
+    /**
+     * Evaluates electric and magnetic fields at the position of every body of state y at time t
+     * @param t time
+     * @param y state
+     * @param e electric field at body j in e[3j .. 3j+2] (overwritten)
+     * @param b magnetic field at body j in b[3j .. 3j+2] (overwritten)
+     */
+    void fields(double t, double[] y, double[] e, double[] b);
+
+    /**
+     * Copies ratio of charge to rest mass of every body into qm
+     * @param qm qm[j] = charge / rest mass of body j (overwritten)
+     */
+    void chargeToMass(double[] qm);
+
+    /**
+     * Copies speed of light of every body into c, infinite for Newtonian bodies
+     * @param c c[j] = speed of light of body j (overwritten)
+     */
+    void lightSpeed(double[] c);
+
+    /**
+     * Returns true if the fields are the same everywhere and at all times, so that the bodies may be
+     * propagated exactly (see IVPSolver.exactUniform)
+     * @return true if fields are uniform and constant
+     */
+    default boolean uniformFields(){
+        return false;
+    }
+
+}
@@ -0,0 +1,33 @@
+package acceleratorphysics.numerical;
+
+/**
+ * Defines primitive contract for a system of 2nd order initial value problems
+ * in euclidean space, flattened into phase space.
+ * For each body j of the system the state vector holds
+ *
+ *      y[6j .. 6j+2] = position    y[6j+3 .. 6j+5] = velocity
+ *
+ * and its derivative holds
+ *
+ *      dydt[6j .. 6j+2] = velocity    dydt[6j+3 .. 6j+5] = acceleration
+ *
+ * Implementations must not allocate per call so that solvers may step
+ * the system at steady memory.
+ */
+public interface ODESystem {
+
+    /**
+     * Length of the phase space state vector
+     * @return 6 * number of bodies
+     */
+    int dimension();
+
+    /**
+     * Evaluates the derivative of state y at time t into dydt
+     * @param t time
+     * @param y state
+     * @param dydt derivative of state (overwritten)
+     */
+    void derivative(double t, double[] y, double[] dydt);
+
+}
@@ -0,0 +1,60 @@
+package acceleratorphysics.numerical;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Base of the built-in numerical methods, which are implemented on flat phase space state.
+ * The Vector3 contract dy(IVP) is adapted onto step(ODESystem, double, double[], double[][]).
+ */
+abstract class PhaseSpaceSolver implements IVPSolver {
+
+    private final String name;
+    protected final double h;
+
+    /**
+     * Constructs numerical method
+     * @param name name of method
+     * @param h step size
+     */
+    PhaseSpaceSolver(String name, double h){
+        this.name = name;
+        this.h = h;
+    }
+
+    @Override
+    public String name(){
+        return name;
+    }
+
+    @Override
+    public double stepSize(){
+        return h;
+    }
+
+    @Override
+    public abstract void step(ODESystem system, double t, double[] y, double[][] work);
+
+    @Override
+    public abstract int workBuffers();
+
+    @Override
+    public Vector3[] dy(IVP ivp){
+
+        double[] y = new double[ivp.dimension()];
+        ivp.state(y);
+        double[] y0 = y.clone();
+
+        step(ivp, ivp.t(), y, new double[workBuffers()][y.length]);
+
+        Vector3[] dy = new Vector3[y.length / 3];
+        for (int i = 0; i < dy.length; i++) {
+            dy[i] = new Vector3(
+                    y[3 * i] - y0[3 * i],
+                    y[3 * i + 1] - y0[3 * i + 1],
+                    y[3 * i + 2] - y0[3 * i + 2]
+            );
+        }
+        return dy;
+    }
+
+}
@@ -0,0 +1,189 @@
+package acceleratorphysics.numerical;
+
+/**
+ * Symmetric splitting of each step into drifts, which advance positions at constant velocity,
+ * and kicks, which advance velocities at constant position. The step alternates drifts and kicks
+ * by coefficients of h, starting with either; kicks are evaluated at the time the drifts have reached.
+ *
+ * Leapfrog is the splitting (1/2, 1, 1/2), and composing it with weights w_1..w_n,
+ * which merges the half drifts of consecutive substeps, gives methods of higher even order.
+ *
+ * Kicks of LorentzSystems are Boris kicks, which are exact in direction for the magnetic force,
+ * preserve phase space volume and keep the splitting symmetric although the force depends on velocity.
+ * Other systems are kicked by the acceleration of their derivative, and the method is symplectic
+ * when the acceleration depends on position and time only.
+ */
+class SplittingSolver extends PhaseSpaceSolver {
+
+    private final boolean driftFirst;
+    private final double[] coefficients; // drift and kick coefficients, alternating
+    private final boolean lorentzOnly;
+
+    private Kind last; // kind of system last stepped
+
+    /**
+     * Constructs splitting method
+     * @param name name of method
+     * @param h step size
+     * @param driftFirst true if the first operator is a drift, false for a kick
+     * @param coefficients coefficients of drifts and kicks, alternating
+     * @param lorentzOnly true to refuse systems that are not LorentzSystems
+     */
+    SplittingSolver(String name, double h, boolean driftFirst, double[] coefficients, boolean lorentzOnly){
+        super(name, h);
+        this.driftFirst = driftFirst;
+        this.coefficients = coefficients.clone();
+        this.lorentzOnly = lorentzOnly;
+    }
+
+    /**
+     * Constructs position (drift first) composition of leapfrog substeps of weights w
+     * @param name name of method
+     * @param h step size
+     * @param w weights of substeps, which sum to 1
+     * @return composition method
+     */
+    static SplittingSolver composition(String name, double h, double... w){
+        double[] coefficients = new double[2 * w.length + 1];
+        for (int i = 0; i < w.length; i++) {
+            coefficients[2 * i] += 0.5 * w[i];
+            coefficients[2 * i + 1] = w[i];
+            coefficients[2 * i + 2] = 0.5 * w[i];
+        }
+        return new SplittingSolver(name, h, true, coefficients, false);
+    }
+
+    @Override
+    public int workBuffers(){
+        return 4;
+    }
+
+    @Override
+    public void step(ODESystem system, double t, double[] y, double[][] work){
+        stepBy(system, t, y, work, h);
+    }
+
+    @Override
+    public void stepBy(ODESystem system, double t, double[] y, double[][] work, double dt){
+
+        Kind kind = last;
+        if (kind == null || kind.system != system) {
+            kind = new Kind(system);
+            last = kind;
+        }
+        boolean lorentz = kind.lorentz;
+        if (lorentzOnly && !lorentz) {
+            throw new UnsupportedOperationException(name() + " steps LorentzSystems only.");
+        }
+        if (lorentz) {
+            ((LorentzSystem) system).chargeToMass(work[2]);
+            ((LorentzSystem) system).lightSpeed(work[3]);
+        }
+
+        double tau = t; // time reached by drifts
+        boolean drift = driftFirst;
+        for (double coefficient : coefficients) {
+            double d = coefficient * dt;
+            if (drift) {
+                drift(y, d);
+                tau += d;
+            } else if (lorentz) {
+                ((LorentzSystem) system).fields(tau, y, work[0], work[1]);
+                borisKick(y, work[0], work[1], work[2], work[3], d);
+            } else {
+                system.derivative(tau, y, work[0]);
+                kick(y, work[0], d);
+            }
+            drift = !drift;
+        }
+    }
+
+    /**
+     * Whether the fields of every body of a system may be evaluated, remembered between steps
+     * because a failing instanceof check of an interface is slow
+     */
+    private static final class Kind {
+
+        final ODESystem system;
+        final boolean lorentz;
+
+        Kind(ODESystem system){
+            this.system = system;
+            lorentz = (system instanceof IVPSystem)
+                    ? ((IVPSystem) system).lorentzOnly()
+                    : system instanceof LorentzSystem;
+        }
+    }
+
+    /**
+     * Advances positions of every body of y by dt at its velocity
+     */
+    static void drift(double[] y, double dt){
+        for (int j = 0; j < y.length; j += 6) {
+            for (int r = j; r < j + 3; r++) {
+                y[r] += dt * y[r + 3];
+            }
+        }
+    }
+
+    /**
+     * Advances velocities of every body of y by dt at the accelerations of derivative dydt
+     */
+    private static void kick(double[] y, double[] dydt, double dt){
+        for (int j = 0; j < y.length; j += 6) {
+            for (int v = j + 3; v < j + 6; v++) {
+                y[v] += dt * dydt[v];
+            }
+        }
+    }
+
+    /**
+     * Boris kick of every body of y by dt in fields e, b: half electric kick, magnetic rotation, half electric kick,
+     * acting on u = gamma v so that it is relativistic for bodies of finite speed of light
+     * @param y state
+     * @param e electric field at each body
+     * @param b magnetic field at each body
+     * @param qm ratio of charge to mass of each body
+     * @param c speed of light of each body
+     * @param dt duration of kick
+     */
+    static void borisKick(double[] y, double[] e, double[] b, double[] qm, double[] c, double dt){
+
+        for (int j = 0, k = 0; j < y.length; j += 6, k++) {
+
+            final double c2 = c[k] * c[k];
+            final double kick = 0.5 * dt * qm[k];
+            final int f = j / 2;
+
+            // u = gamma v, plus half electric kick
+            double v2 = y[j + 3] * y[j + 3] + y[j + 4] * y[j + 4] + y[j + 5] * y[j + 5];
+            double gamma = 1D / Math.sqrt(1D - v2 / c2);
+            double ux = gamma * y[j + 3] + kick * e[f];
+            double uy = gamma * y[j + 4] + kick * e[f + 1];
+            double uz = gamma * y[j + 5] + kick * e[f + 2];
+
+            // Magnetic rotation
+            gamma = Math.sqrt(1D + (ux * ux + uy * uy + uz * uz) / c2);
+            double tx = kick * b[f] / gamma;
+            double ty = kick * b[f + 1] / gamma;
+            double tz = kick * b[f + 2] / gamma;
+            double s = 2D / (1D + tx * tx + ty * ty + tz * tz);
+            double px = ux + (uy * tz - uz * ty);
+            double py = uy + (uz * tx - ux * tz);
+            double pz = uz + (ux * ty - uy * tx);
+            ux += s * (py * tz - pz * ty);
+            uy += s * (pz * tx - px * tz);
+            uz += s * (px * ty - py * tx);
+
+            // Half electric kick, back to velocity
+            ux += kick * e[f];
+            uy += kick * e[f + 1];
+            uz += kick * e[f + 2];
+            gamma = Math.sqrt(1D + (ux * ux + uy * uy + uz * uz) / c2);
+            y[j + 3] = ux / gamma;
+            y[j + 4] = uy / gamma;
+            y[j + 5] = uz / gamma;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package acceleratorphysics.numerical;
+
+/**
+ * Listener to the steps of a solve (see IVP.addStepListener and IVPSystem.addStepListener),
+ * called on the solving thread after every step with the state the step reached.
+ * The state is the solver's own buffer, passed without copying: listeners read it during the call
+ * and must neither keep nor modify it.
+ */
+@FunctionalInterface
+public interface StepListener {
+
+    /**
+     * Called after a step
+     * @param t time reached
+     * @param step number of steps taken so far, from 1
+     * @param y phase space state at t (see ODESystem)
+     */
+    void step(double t, long step, double[] y);
+
+    /**
+     * Returns listener calling listener after every n-th step
+     * @param n steps between calls
+     * @param listener listener
+     * @return decimating listener
+     */
+    static StepListener everySteps(int n, StepListener listener){
+        if (n <= 0) {
+            throw new IllegalArgumentException("Steps between calls must be positive.");
+        }
+        return (t, step, y) -> {
+            if (step % n == 0) {
+                listener.step(t, step, y);
+            }
+        };
+    }
+
+    /**
+     * Returns listener calling listener after the first step and after the first step
+     * to reach each later multiple of dt
+     * @param dt time between calls
+     * @param listener listener
+     * @return decimating listener
+     */
+    static StepListener everyTime(double dt, StepListener listener){
+        if (!(dt > 0)) {
+            throw new IllegalArgumentException("Time between calls must be positive.");
+        }
+        return new StepListener() {
+
+            private long last = Long.MIN_VALUE; // multiple of dt of last call
+
+            @Override
+            public void step(double t, long step, double[] y) {
+                long k = (long) Math.floor(t / dt);
+                if (k != last) {
+                    last = k;
+                    listener.step(t, step, y);
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,56 @@
+package acceleratorphysics.numerical;
+
+import java.util.Arrays;
+
+/**
+ * Step listeners of a solvable system, held in an array replaced on every change so that
+ * calling them takes no lock and allocates nothing
+ */
+final class StepListeners {
+
+    private static final StepListener[] NONE = new StepListener[0];
+
+    private volatile StepListener[] listeners = NONE;
+    private long steps;
+
+    synchronized void add(StepListener listener){
+        if (listener == null) {
+            throw new NullPointerException("Step listener is null.");
+        }
+        StepListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    synchronized void remove(StepListener listener){
+        StepListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                StepListener[] shrunk = new StepListener[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets number of steps taken
+     * @return steps
+     */
+    long getSteps(){
+        return steps;
+    }
+
+    /**
+     * Counts step and calls every listener
+     */
+    void step(double t, double[] y){
+        long step = ++steps;
+        for (StepListener listener : listeners) {
+            listener.step(t, step, y);
+        }
+    }
+
+}
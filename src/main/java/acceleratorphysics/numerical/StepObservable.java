@@ -0,0 +1,24 @@
+package acceleratorphysics.numerical;
+
+import java.util.Observable;
+
+/**
+ * Adapter notifying observers after every step of a solve, for code written against java.util.Observer:
+ *
+ *      StepObservable steps = new StepObservable();
+ *      steps.addObserver(observer);
+ *      ivp.addStepListener(steps);
+ *
+ * Observers are passed this adapter and no argument. Notification synchronizes on the adapter
+ * every step; prefer plain step listeners.
+ */
+@SuppressWarnings("deprecation")
+public class StepObservable extends Observable implements StepListener {
+
+    @Override
+    public void step(double t, long step, double[] y){
+        setChanged();
+        notifyObservers();
+    }
+
+}
@@ -0,0 +1,380 @@
+package acceleratorphysics.numerical;
+
+/**
+ * Exact propagation of charged bodies in fields that are uniform in space and constant in time
+ * (see LorentzSystem.uniformFields()). The fields are evaluated once per step and each body is advanced
+ * along its closed form trajectory, so that the step may be arbitrarily long:
+ *
+ *      Newtonian bodies gyrate about B while drifting with E x B / B^2 and accelerating along B,
+ *      relativistic bodies gyrate at qB / (gamma m) in a magnetic field, or move on a hyperbola
+ *      with d(gamma v)/dt = qE / m in an electric field.
+ *
+ * Relativistic bodies in electric and magnetic fields together are advanced by the exponential of the field
+ * tensor in proper time (see Exponential), which drifts at E x B / B^2 when |E| &lt; c|B|
+ * and accelerates without bound otherwise.
+ */
+class UniformFieldSolver extends PhaseSpaceSolver {
+
+    /**
+     * Constructs exact propagator
+     * @param h step size (may be infinite, in which case solve takes one step)
+     */
+    UniformFieldSolver(double h){
+        super("EXACTUNIFORM", h);
+        if (!(h > 0)) {
+            throw new IllegalArgumentException("Step size must be positive.");
+        }
+    }
+
+    @Override
+    public int workBuffers(){
+        return 4;
+    }
+
+    @Override
+    public void step(ODESystem system, double t, double[] y, double[][] work){
+        if (Double.isInfinite(h)) {
+            throw new UnsupportedOperationException(name() + " with infinite step size must be given a step limit.");
+        }
+        propagate(system, t, y, work, h);
+    }
+
+    /**
+     * Steps by the whole of limit if it is shorter than the step size
+     */
+    @Override
+    public double step(ODESystem system, double t, double[] y, double[][] work, double limit){
+        double step = Math.min(h, limit);
+        propagate(system, t, y, work, step);
+        return step;
+    }
+
+    private void propagate(ODESystem system, double t, double[] y, double[][] work, double h){
+
+        Exponential exponential = null;
+
+        if (!(system instanceof LorentzSystem) || !((LorentzSystem) system).uniformFields()) {
+            throw new UnsupportedOperationException(name() + " steps LorentzSystems in uniform fields only.");
+        }
+        LorentzSystem lorentz = (LorentzSystem) system;
+
+        final double[] e = work[0];
+        final double[] b = work[1];
+        final double[] qm = work[2];
+        final double[] c = work[3];
+
+        lorentz.chargeToMass(qm);
+        lorentz.lightSpeed(c);
+        lorentz.fields(t, y, e, b);
+
+        for (int j = 0, k = 0; j < y.length; j += 6, k++) {
+            int f = j / 2;
+            double ex = e[f], ey = e[f + 1], ez = e[f + 2];
+            double bx = b[f], by = b[f + 1], bz = b[f + 2];
+            boolean electric = ex != 0 || ey != 0 || ez != 0;
+            boolean magnetic = bx != 0 || by != 0 || bz != 0;
+
+            if (Double.isInfinite(c[k])) {
+                gyrate(y, j, qm[k] * ex, qm[k] * ey, qm[k] * ez, bx, by, bz, qm[k], h);
+            } else if (!electric) {
+                double v2 = y[j + 3] * y[j + 3] + y[j + 4] * y[j + 4] + y[j + 5] * y[j + 5];
+                double gamma = 1D / Math.sqrt(1D - v2 / (c[k] * c[k]));
+                gyrate(y, j, 0, 0, 0, bx, by, bz, qm[k] / gamma, h);
+            } else if (!magnetic) {
+                hyperbola(y, j, qm[k] * ex, qm[k] * ey, qm[k] * ez, c[k], h);
+            } else {
+                if (exponential == null) {
+                    exponential = new Exponential();
+                }
+                exponential.propagate(y, j, ex, ey, ez, bx, by, bz, qm[k], c[k], h);
+            }
+        }
+    }
+
+    /**
+     * Advances body at y[j .. j+5] by h under dv/dt = a + qm v x B
+     * (a the electric acceleration, which with qm = 0 is the only one)
+     */
+    private static void gyrate(double[] y, int j, double ax, double ay, double az,
+                               double bx, double by, double bz, double qm, double h){
+
+        double vx = y[j + 3], vy = y[j + 4], vz = y[j + 5];
+        double b2 = bx * bx + by * by + bz * bz;
+
+        if (b2 == 0 || qm == 0) {
+            y[j] += (vx + 0.5 * ax * h) * h;
+            y[j + 1] += (vy + 0.5 * ay * h) * h;
+            y[j + 2] += (vz + 0.5 * az * h) * h;
+            y[j + 3] += ax * h;
+            y[j + 4] += ay * h;
+            y[j + 5] += az * h;
+            return;
+        }
+
+        double bn = Math.sqrt(b2);
+        double nx = bx / bn, ny = by / bn, nz = bz / bn;
+        double omega = qm * bn;
+
+        // Acceleration along B, drift (a x B) / (qm B^2) across it
+        double aPar = ax * nx + ay * ny + az * nz;
+        double dx = (ay * bz - az * by) / (qm * b2);
+        double dy = (az * bx - ax * bz) / (qm * b2);
+        double dz = (ax * by - ay * bx) / (qm * b2);
+
+        // Velocity along B, and relative to drift across it, which rotates about B at omega
+        double vPar = vx * nx + vy * ny + vz * nz;
+        double ux = vx - vPar * nx - dx;
+        double uy = vy - vPar * ny - dy;
+        double uz = vz - vPar * nz - dz;
+        double wx = ny * uz - nz * uy;
+        double wy = nz * ux - nx * uz;
+        double wz = nx * uy - ny * ux;
+
+        double theta = omega * h;
+        double cos = Math.cos(theta), sin = Math.sin(theta);
+        double half = Math.sin(0.5 * theta);
+        double s = h * sinc(theta);                   // sin(theta) / omega
+        double q = h * half * sinc(0.5 * theta);      // (1 - cos(theta)) / omega
+
+        double along = (vPar + 0.5 * aPar * h) * h;
+        y[j] += along * nx + dx * h + ux * s - wx * q;
+        y[j + 1] += along * ny + dy * h + uy * s - wy * q;
+        y[j + 2] += along * nz + dz * h + uz * s - wz * q;
+
+        double vAlong = vPar + aPar * h;
+        y[j + 3] = vAlong * nx + dx + ux * cos - wx * sin;
+        y[j + 4] = vAlong * ny + dy + uy * cos - wy * sin;
+        y[j + 5] = vAlong * nz + dz + uz * cos - wz * sin;
+    }
+
+    /**
+     * Advances relativistic body at y[j .. j+5] by h under d(gamma v)/dt = a
+     */
+    private static void hyperbola(double[] y, int j, double ax, double ay, double az, double c, double h){
+
+        double c2 = c * c;
+        double vx = y[j + 3], vy = y[j + 4], vz = y[j + 5];
+        double gamma0 = 1D / Math.sqrt(1D - (vx * vx + vy * vy + vz * vz) / c2);
+
+        double an = Math.sqrt(ax * ax + ay * ay + az * az);
+        double nx = ax / an, ny = ay / an, nz = az / an;
+
+        // u = gamma v: w along a grows linearly, u across a is constant
+        double w0 = gamma0 * (vx * nx + vy * ny + vz * nz);
+        double ux = gamma0 * vx - w0 * nx;
+        double uy = gamma0 * vy - w0 * ny;
+        double uz = gamma0 * vz - w0 * nz;
+        double g = Math.sqrt(1D + (ux * ux + uy * uy + uz * uz) / c2); // gamma across a
+        double w1 = w0 + an * h;
+        double gamma1 = Math.sqrt(g * g + w1 * w1 / c2);
+
+        // Displacements along a, (c^2 / a)(gamma1 - gamma0), and across a,
+        // u (c / a)(asinh(w1 / gc) - asinh(w0 / gc)), in forms without cancellation
+        double along = (w0 + w1) * h / (gamma0 + gamma1);
+        double p0 = w0 / (g * c), p1 = w1 / (g * c);
+        double across = (c / an) * asinh(p1 * Math.sqrt(1 + p0 * p0) - p0 * Math.sqrt(1 + p1 * p1));
+
+        y[j] += along * nx + ux * across;
+        y[j + 1] += along * ny + uy * across;
+        y[j + 2] += along * nz + uz * across;
+
+        y[j + 3] = (ux + w1 * nx) / gamma1;
+        y[j + 4] = (uy + w1 * ny) / gamma1;
+        y[j + 5] = (uz + w1 * nz) / gamma1;
+    }
+
+    /**
+     * Propagation of a relativistic body in electric and magnetic fields together.
+     * In proper time tau the 4-velocity u = (gamma c, gamma v) obeys du/dtau = M u, where
+     *
+     *      M u = qm ((E / c) . u,  (E / c) gamma c + u x B)
+     *
+     * M satisfies (M^2 - a^2)(M^2 + w^2) = 0, where a^2 - w^2 = qm^2 (E^2 / c^2 - B^2) and a w = qm^2 |E . B| / c,
+     * so that exp(tau M) u0 = c0 u0 + c1 M u0 + c2 M^2 u0 + c3 M^3 u0 and the 4-displacement is
+     * d0 u0 + d1 M u0 + d2 M^2 u0 + d3 M^3 u0. Their coefficients are written without cancellation,
+     * so that they hold through fields where a or w (or both, for |E| = c|B| and E . B = 0) vanish.
+     * The proper time of a step of h is found by Newton's method, lab time growing with tau at rate gamma &gt;= 1.
+     */
+    private static final class Exponential {
+
+        private static final int ITERATIONS = 100;
+
+        private double alpha, beta;  // a^2 / (a^2 + w^2), w^2 / (a^2 + w^2)
+        private double a2w2;         // a^2 w^2
+        private double a, w;
+
+        private double c0, c1, c2, c3; // of exp(tau M)
+        private double d0, d1, d2, d3; // of its integral from 0 to tau
+
+        /**
+         * Advances body at y[j .. j+5] by h
+         */
+        void propagate(double[] y, int j, double ex, double ey, double ez,
+                       double bx, double by, double bz, double qm, double c, double h){
+
+            // M acts on (t, x, y, z) as qm (e . r, e t + r x B) with e = E / c
+            double fx = ex / c, fy = ey / c, fz = ez / c;
+            double p = qm * qm * (bx * bx + by * by + bz * bz - fx * fx - fy * fy - fz * fz); // w^2 - a^2
+            double q = qm * qm * (fx * bx + fy * by + fz * bz);                              // a w
+            double r = Math.hypot(p, 2 * q);
+            double a2, w2;
+            if (p > 0) {
+                w2 = 0.5 * (p + r);
+                a2 = q * q / w2;
+            } else {
+                a2 = 0.5 * (r - p);
+                w2 = (a2 > 0) ? q * q / a2 : 0;
+            }
+            a = Math.sqrt(a2);
+            w = Math.sqrt(w2);
+            alpha = (a2 + w2 > 0) ? a2 / (a2 + w2) : 0.5;
+            beta = 1 - alpha;
+            a2w2 = q * q;
+
+            double vx = y[j + 3], vy = y[j + 4], vz = y[j + 5];
+            double gamma0 = 1D / Math.sqrt(1D - (vx * vx + vy * vy + vz * vz) / (c * c));
+
+            // u0 and its images under M, M^2, M^3
+            double u0 = gamma0 * c, ux = gamma0 * vx, uy = gamma0 * vy, uz = gamma0 * vz;
+            double m0 = qm * (fx * ux + fy * uy + fz * uz);
+            double mx = qm * (fx * u0 + uy * bz - uz * by);
+            double my = qm * (fy * u0 + uz * bx - ux * bz);
+            double mz = qm * (fz * u0 + ux * by - uy * bx);
+            double n0 = qm * (fx * mx + fy * my + fz * mz);
+            double nx = qm * (fx * m0 + my * bz - mz * by);
+            double ny = qm * (fy * m0 + mz * bx - mx * bz);
+            double nz = qm * (fz * m0 + mx * by - my * bx);
+            double o0 = qm * (fx * nx + fy * ny + fz * nz);
+            double ox = qm * (fx * n0 + ny * bz - nz * by);
+            double oy = qm * (fy * n0 + nz * bx - nx * bz);
+            double oz = qm * (fz * n0 + nx * by - ny * bx);
+
+            // Proper time tau of lab time h, bracketed by [0, h] as gamma >= 1
+            double lo = 0, hi = h;
+            double tau = h / gamma0;
+            for (int n = 0; n < ITERATIONS; n++) {
+                at(tau);
+                double f = (d0 * u0 + d1 * m0 + d2 * n0 + d3 * o0) / c - h;
+                if (f == 0) {
+                    break;
+                } else if (f > 0) {
+                    hi = tau;
+                } else {
+                    lo = tau;
+                }
+                double gamma = (c0 * u0 + c1 * m0 + c2 * n0 + c3 * o0) / c;
+                double next = tau - f / gamma;
+                if (!(next > lo && next < hi)) {
+                    next = 0.5 * (lo + hi);
+                }
+                if (next == tau || Math.abs(next - tau) <= 1E-15 * tau) {
+                    tau = next;
+                    break;
+                }
+                tau = next;
+            }
+            at(tau);
+
+            y[j] += d0 * ux + d1 * mx + d2 * nx + d3 * ox;
+            y[j + 1] += d0 * uy + d1 * my + d2 * ny + d3 * oy;
+            y[j + 2] += d0 * uz + d1 * mz + d2 * nz + d3 * oz;
+
+            // velocity from the spatial part of u, so that |v| < c however u was rounded
+            double wx = c0 * ux + c1 * mx + c2 * nx + c3 * ox;
+            double wy = c0 * uy + c1 * my + c2 * ny + c3 * oy;
+            double wz = c0 * uz + c1 * mz + c2 * nz + c3 * oz;
+            double gamma1 = Math.sqrt(1D + (wx * wx + wy * wy + wz * wz) / (c * c));
+            y[j + 3] = wx / gamma1;
+            y[j + 4] = wy / gamma1;
+            y[j + 5] = wz / gamma1;
+        }
+
+        /**
+         * Evaluates coefficients at proper time tau
+         */
+        private void at(double tau){
+            double x = a * tau, z = w * tau;
+            double t2 = tau * tau;
+            double ch = coshc(x), cw = cosc(z);
+            double sh = sinhc3(x), sw = sinc3(z);
+            double d = difference(x, z);
+            c0 = 1 + a2w2 * t2 * t2 * d;
+            c1 = tau * (beta * sinhc(x) + alpha * sinc(z));
+            c2 = t2 * (alpha * ch + beta * cw);
+            c3 = t2 * tau * (alpha * sh + beta * sw);
+            d0 = c1;
+            d1 = t2 * (beta * ch + alpha * cw);
+            d2 = c3;
+            d3 = t2 * t2 * d;
+        }
+
+        private static double sinhc(double x){
+            return (Math.abs(x) < 1E-4) ? 1 + x * x / 6 : Math.sinh(x) / x;
+        }
+
+        /**
+         * (cosh(x) - 1) / x^2
+         */
+        private static double coshc(double x){
+            double s = sinhc(0.5 * x);
+            return 0.5 * s * s;
+        }
+
+        /**
+         * (1 - cos(x)) / x^2
+         */
+        private static double cosc(double x){
+            double s = sinc(0.5 * x);
+            return 0.5 * s * s;
+        }
+
+        /**
+         * (sinh(x) - x) / x^3
+         */
+        private static double sinhc3(double x){
+            double x2 = x * x;
+            if (x2 < 0.0625) {
+                return 1D / 6 + x2 * (1D / 120 + x2 * (1D / 5040 + x2 * (1D / 362880 + x2 / 39916800)));
+            }
+            return (Math.sinh(x) - x) / (x2 * x);
+        }
+
+        /**
+         * (x - sin(x)) / x^3
+         */
+        private static double sinc3(double x){
+            double x2 = x * x;
+            if (x2 < 0.0625) {
+                return 1D / 6 - x2 * (1D / 120 - x2 * (1D / 5040 - x2 * (1D / 362880 - x2 / 39916800)));
+            }
+            return (x - Math.sin(x)) / (x2 * x);
+        }
+
+        /**
+         * (coshc(x) - cosc(z)) / (x^2 + z^2), by its series sum over k &gt;= 1 of
+         * (x^2k - (-z^2)^k) / ((x^2 + z^2) (2k + 2)!) when x and z are small
+         */
+        private static double difference(double x, double z){
+            double s = x * x, t = -z * z;
+            if (s - t < 0.1) {
+                double h1 = s + t;
+                double h2 = s * s + s * t + t * t;
+                double h3 = h2 * s + t * t * t;
+                double h4 = h3 * s + t * t * t * t;
+                return 1D / 24 + h1 / 720 + h2 / 40320 + h3 / 3628800 + h4 / 479001600;
+            }
+            return (coshc(x) - cosc(z)) / (s - t);
+        }
+    }
+
+    private static double sinc(double x){
+        return (Math.abs(x) < 1E-4) ? 1 - x * x / 6 : Math.sin(x) / x;
+    }
+
+    private static double asinh(double x){
+        double a = Math.abs(x);
+        double r = (a < 1E-4) ? a * (1 - a * a / 6) : Math.log(a + Math.sqrt(a * a + 1));
+        return Math.copySign(r, x);
+    }
+
+}
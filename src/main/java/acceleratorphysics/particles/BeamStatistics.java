@@ -0,0 +1,370 @@
+package acceleratorphysics.particles;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static acceleratorphysics.particles.Relativity.C;
+
+/**
+ * Statistics of the particles of a store in phase space (x, ux, y, uy, z, uz), where u = gamma * v / c
+ * is the normalised momentum of a particle (gamma = 1 in Newtonian mechanics).
+ * The beam is taken to move along z: the mean of uz is its reference momentum (beta * gamma).
+ *
+ * Means and second moments are accumulated in one pass over the columns of the store by
+ * Welford's method, which stays accurate when the spread is small beside the mean.
+ * Given a ForkJoinPool, blocks of consecutive particles are accumulated in parallel
+ * and their moments merged pairwise (Chan et al.).
+ */
+public final class BeamStatistics {
+
+    /**
+     * Coordinates of phase space
+     */
+    public enum Coordinate {
+        X, UX, Y, UY, Z, UZ
+    }
+
+    /**
+     * Planes of phase space, each a position and its normalised momentum
+     */
+    public enum Plane {
+
+        X(Coordinate.X, Coordinate.UX),
+        Y(Coordinate.Y, Coordinate.UY),
+        Z(Coordinate.Z, Coordinate.UZ);
+
+        private final Coordinate position, momentum;
+
+        Plane(Coordinate position, Coordinate momentum){
+            this.position = position;
+            this.momentum = momentum;
+        }
+
+        /**
+         * Gets position coordinate of plane
+         * @return position coordinate
+         */
+        public Coordinate getPosition(){
+            return position;
+        }
+
+        /**
+         * Gets momentum coordinate of plane
+         * @return momentum coordinate
+         */
+        public Coordinate getMomentum(){
+            return momentum;
+        }
+    }
+
+    /**
+     * Default number of particles per block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private static final int N = 6;
+
+    private final long count;
+    private final double[] mean;        // of each coordinate
+    private final double[] covariance;  // N x N, row major
+
+    private BeamStatistics(Moments moments){
+        count = moments.count;
+        mean = moments.mean;
+        covariance = new double[N * N];
+        for (int i = 0, k = 0; i < N; i++) {
+            for (int j = i; j < N; j++, k++) {
+                covariance[N * i + j] = covariance[N * j + i] = moments.comoment[k] / count;
+            }
+        }
+    }
+
+    /**
+     * Computes statistics of the particles of store serially
+     * @param store particle store
+     * @return statistics
+     */
+    public static BeamStatistics of(ParticleStore store){
+        return of(store, null, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Computes statistics of the particles of store in parallel over blocks of DEFAULT_BLOCK_SIZE particles
+     * @param store particle store
+     * @param pool fork/join pool, or null to compute serially
+     * @return statistics
+     */
+    public static BeamStatistics of(ParticleStore store, ForkJoinPool pool){
+        return of(store, pool, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Computes statistics of the particles of store in parallel over blocks
+     * @param store particle store
+     * @param pool fork/join pool, or null to compute serially
+     * @param blockSize particles per block
+     * @return statistics
+     */
+    public static BeamStatistics of(ParticleStore store, ForkJoinPool pool, int blockSize){
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        int blocks = (store.size() + blockSize - 1) / blockSize;
+        if (pool == null || blocks == 1) {
+            return new BeamStatistics(new Blocks(store, blockSize, 0, blocks, false).compute());
+        }
+        return new BeamStatistics(pool.invoke(new Blocks(store, blockSize, 0, blocks, true)));
+    }
+
+    /**
+     * Gets number of particles
+     * @return particles
+     */
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * Gets mean of coordinate
+     * @param c coordinate
+     * @return mean
+     */
+    public double getMean(Coordinate c){
+        return mean[c.ordinal()];
+    }
+
+    /**
+     * Gets central second moment of two coordinates
+     * @param a coordinate
+     * @param b coordinate
+     * @return mean of (a - mean a) * (b - mean b)
+     */
+    public double getCovariance(Coordinate a, Coordinate b){
+        return covariance[N * a.ordinal() + b.ordinal()];
+    }
+
+    /**
+     * Gets reference momentum of beam
+     * @return mean of uz (beta * gamma)
+     */
+    public double getReferenceMomentum(){
+        return mean[Coordinate.UZ.ordinal()];
+    }
+
+    /**
+     * Gets rms size of beam in plane
+     * @param plane plane
+     * @return rms deviation of position from its mean
+     */
+    public double getRmsSize(Plane plane){
+        return Math.sqrt(getCovariance(plane.position, plane.position));
+    }
+
+    /**
+     * Gets normalised rms emittance of beam in plane
+     * @param plane plane
+     * @return sqrt(&lt;x^2&gt;&lt;u^2&gt; - &lt;xu&gt;^2) of central moments of position x and momentum u
+     */
+    public double getEmittance(Plane plane){
+        double xx = getCovariance(plane.position, plane.position);
+        double uu = getCovariance(plane.momentum, plane.momentum);
+        double xu = getCovariance(plane.position, plane.momentum);
+        return Math.sqrt(Math.max(0, xx * uu - xu * xu)); // rounding may leave a tiny negative
+    }
+
+    /**
+     * Gets Twiss beta of beam in plane, the slope of trace space being u / (reference momentum)
+     * @param plane plane
+     * @return beta
+     */
+    public double getBeta(Plane plane){
+        return getCovariance(plane.position, plane.position) * getReferenceMomentum() / getEmittance(plane);
+    }
+
+    /**
+     * Gets Twiss alpha of beam in plane
+     * @param plane plane
+     * @return alpha
+     */
+    public double getAlpha(Plane plane){
+        return -getCovariance(plane.position, plane.momentum) / getEmittance(plane);
+    }
+
+    /**
+     * Gets Twiss gamma of beam in plane
+     * @param plane plane
+     * @return gamma
+     */
+    public double getGamma(Plane plane){
+        return getCovariance(plane.momentum, plane.momentum) / (getReferenceMomentum() * getEmittance(plane));
+    }
+
+    /**
+     * Count, means and sums of products of deviations (upper triangle) of a set of particles
+     */
+    private static final class Moments {
+
+        long count;
+        final double[] mean = new double[N];
+        final double[] comoment = new double[N * (N + 1) / 2];
+
+        /**
+         * Merges moments of another set into these
+         */
+        Moments merge(Moments other){
+            if (other.count == 0) {
+                return this;
+            }
+            if (count == 0) {
+                count = other.count;
+                System.arraycopy(other.mean, 0, mean, 0, N);
+                System.arraycopy(other.comoment, 0, comoment, 0, comoment.length);
+                return this;
+            }
+            long n = count + other.count;
+            double w = (double) count * other.count / n;
+            double[] d = new double[N];
+            for (int i = 0; i < N; i++) {
+                d[i] = other.mean[i] - mean[i];
+                mean[i] += d[i] * other.count / n;
+            }
+            for (int i = 0, k = 0; i < N; i++) {
+                for (int j = i; j < N; j++, k++) {
+                    comoment[k] += other.comoment[k] + d[i] * d[j] * w;
+                }
+            }
+            count = n;
+            return this;
+        }
+    }
+
+    /**
+     * Fork/join task accumulating moments of blocks [lo, hi)
+     */
+    private static final class Blocks extends RecursiveTask<Moments> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ParticleStore store;
+        private final int blockSize;
+        private final int lo, hi;
+        private final boolean fork;
+
+        Blocks(ParticleStore store, int blockSize, int lo, int hi, boolean fork){
+            this.store = store;
+            this.blockSize = blockSize;
+            this.lo = lo;
+            this.hi = hi;
+            this.fork = fork;
+        }
+
+        @Override
+        protected Moments compute(){
+            if (fork && hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                Blocks right = new Blocks(store, blockSize, mid, hi, true);
+                right.fork();
+                Moments left = new Blocks(store, blockSize, lo, mid, true).compute();
+                return left.merge(right.join());
+            }
+            Moments moments = new Moments();
+            for (int b = lo; b < hi; b++) {
+                moments.merge(block(b * blockSize, Math.min(store.size(), (b + 1) * blockSize)));
+            }
+            return moments;
+        }
+
+        /**
+         * Accumulates moments of particles from <= i < to straight from the columns of store (Welford).
+         * Means and sums of products are kept in locals, so that each particle costs a few dozen flops.
+         */
+        private Moments block(int from, int to){
+            Framework framework = store.getFramework();
+            double[] x = store.x(), y = store.y(), z = store.z();
+            double[] vx = store.vx(), vy = store.vy(), vz = store.vz();
+            double m0 = 0, m1 = 0, m2 = 0, m3 = 0, m4 = 0, m5 = 0;
+            double c00 = 0, c01 = 0, c02 = 0, c03 = 0, c04 = 0, c05 = 0;
+            double c11 = 0, c12 = 0, c13 = 0, c14 = 0, c15 = 0;
+            double c22 = 0, c23 = 0, c24 = 0, c25 = 0;
+            double c33 = 0, c34 = 0, c35 = 0;
+            double c44 = 0, c45 = 0;
+            double c55 = 0;
+            for (int i = from; i < to; i++) {
+                double g = framework.lorentzFactor(vx[i], vy[i], vz[i]) / C;
+                double v0 = x[i], v1 = g * vx[i], v2 = y[i], v3 = g * vy[i], v4 = z[i], v5 = g * vz[i];
+                double r = 1D / (i - from + 1);
+                double d0 = v0 - m0;
+                double d1 = v1 - m1;
+                double d2 = v2 - m2;
+                double d3 = v3 - m3;
+                double d4 = v4 - m4;
+                double d5 = v5 - m5;
+                m0 += d0 * r;
+                m1 += d1 * r;
+                m2 += d2 * r;
+                m3 += d3 * r;
+                m4 += d4 * r;
+                m5 += d5 * r;
+                double e0 = v0 - m0;
+                double e1 = v1 - m1;
+                double e2 = v2 - m2;
+                double e3 = v3 - m3;
+                double e4 = v4 - m4;
+                double e5 = v5 - m5;
+                c00 += d0 * e0;
+                c01 += d0 * e1;
+                c02 += d0 * e2;
+                c03 += d0 * e3;
+                c04 += d0 * e4;
+                c05 += d0 * e5;
+                c11 += d1 * e1;
+                c12 += d1 * e2;
+                c13 += d1 * e3;
+                c14 += d1 * e4;
+                c15 += d1 * e5;
+                c22 += d2 * e2;
+                c23 += d2 * e3;
+                c24 += d2 * e4;
+                c25 += d2 * e5;
+                c33 += d3 * e3;
+                c34 += d3 * e4;
+                c35 += d3 * e5;
+                c44 += d4 * e4;
+                c45 += d4 * e5;
+                c55 += d5 * e5;
+            }
+            Moments moments = new Moments();
+            moments.count = to - from;
+            double[] mean = moments.mean, comoment = moments.comoment;
+            mean[0] = m0;
+            mean[1] = m1;
+            mean[2] = m2;
+            mean[3] = m3;
+            mean[4] = m4;
+            mean[5] = m5;
+            comoment[0] = c00;
+            comoment[1] = c01;
+            comoment[2] = c02;
+            comoment[3] = c03;
+            comoment[4] = c04;
+            comoment[5] = c05;
+            comoment[6] = c11;
+            comoment[7] = c12;
+            comoment[8] = c13;
+            comoment[9] = c14;
+            comoment[10] = c15;
+            comoment[11] = c22;
+            comoment[12] = c23;
+            comoment[13] = c24;
+            comoment[14] = c25;
+            comoment[15] = c33;
+            comoment[16] = c34;
+            comoment[17] = c35;
+            comoment[18] = c44;
+            comoment[19] = c45;
+            comoment[20] = c55;
+            return moments;
+        }
+    }
+
+}
@@ -4,8 +4,8 @@ import acceleratorphysics.util.RandomVector;
 import acceleratorphysics.util.Vector3;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.function.Function;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
 
 import static acceleratorphysics.util.RandomVector.Distribution;
 
@@ -13,10 +13,12 @@ import static acceleratorphysics.util.RandomVector.Distribution;
 
 /**
  * Represents a bunch of particles.
+ * The state of the bunch is held in a ParticleStore; its particles are views over rows of the store.
  * @param <T>
  */
 public class Bunch<T extends Particle>  implements Massive, Point {
 
+    final ParticleStore store;
     final ArrayList<T> particles;
 
     // FIXME:  only public for BunchAccelerator (see class javadoc)
@@ -24,16 +26,28 @@ public class Bunch<T extends Particle>  implements Massive, Point {
         return particles.toArray(new Particle[particles.size()]);
     }
 
+    /**
+     * gets structure-of-arrays storage of the particles in this bunch
+     * @return particle store
+     */
+    public ParticleStore getStore(){
+        return store;
+    }
+
 
     /**
-     * Construct punch from vararg list of particles
+     * Construct bunch over the rows of a particle store
+     * @param store particle store
      * @param state initial state
-     * @param particlesIn list of particles
+     * @param view constructs the particle viewing row i of store
      */
-    Bunch(State state, T... particlesIn){
-        particles = new ArrayList<>(Arrays.asList(particlesIn));
+    Bunch(ParticleStore store, State state, IntFunction<T> view){
+        this.store = store;
+        particles = new ArrayList<>(store.size());
+        for (int i = 0; i < store.size(); i++) {
+            particles.add(view.apply(i));
+        }
         state.manifest(this);
-        particlesIn = null; // heap pollution.
     }
 
     /**
@@ -44,8 +58,8 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      */
     void setPosition(Vector3 position, Vector3 spread, Distribution distribution){
         RandomVector randomVector = new RandomVector(distribution, position, spread);
-        for (T particle: particles) {
-            particle.setPosition(randomVector.next());
+        for (int i = 0; i < store.size(); i++) {
+            store.setPosition(i, randomVector.next());
         }
     }
 
@@ -57,8 +71,8 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      */
     void setVelocity(Vector3 velocity, Vector3 spread, Distribution distribution){
         RandomVector randomVector = new RandomVector(distribution, velocity, spread);
-        for (T particle: particles) {
-            particle.setVelocity(randomVector.next());
+        for (int i = 0; i < store.size(); i++) {
+            store.setVelocity(i, randomVector.next());
         }
     }
 
@@ -70,29 +84,17 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      */
     void setAcceleration(Vector3 acceleration, Vector3 spread, Distribution distribution){
         RandomVector randomVector = new RandomVector(distribution, acceleration, spread);
-        for (T particle: particles) {
-            particle.setAcceleration(randomVector.next());
+        for (int i = 0; i < store.size(); i++) {
+            store.setAcceleration(i, randomVector.next());
         }
     }
 
-    /**
-     * Returns the mean average of specified Vector3 quantities of particles in this bunch
-     * @param vector3Function Vector3 quantity of particle
-     * @return mean average of quantity from particles in this bunch
-     */
-    private Vector3 average(Function<Particle, Vector3> vector3Function){
-        return particles.stream()
-                .map(vector3Function)
-                .reduce(Vector3.ZERO, Vector3::add)
-                .scale(1.0/particles.size());
-    }
-
     /**
      * gets mean average acceleration of bunch
      * @return mean average acceleration
      */
     public Vector3 getAcceleration(){
-        return average(Particle::getAcceleration);
+        return store.meanAcceleration();
     }
 
     /**
@@ -100,7 +102,7 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      * @return mean average velocity
      */
     public Vector3 getVelocity(){
-        return average(Particle::getVelocity);
+        return store.meanVelocity();
     }
 
     /**
@@ -108,7 +110,24 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      * @return mean average position
      */
     public Vector3 getPosition(){
-        return average(Particle::getPosition);
+        return store.meanPosition();
+    }
+
+    /**
+     * computes rms sizes, emittances and Twiss parameters of bunch in one pass over its store
+     * @return beam statistics
+     */
+    public BeamStatistics getStatistics(){
+        return BeamStatistics.of(store);
+    }
+
+    /**
+     * computes statistics of bunch in parallel over blocks of particles
+     * @param pool fork/join pool, or null to compute serially
+     * @return beam statistics
+     */
+    public BeamStatistics getStatistics(ForkJoinPool pool){
+        return BeamStatistics.of(store, pool);
     }
 
     /**
@@ -116,9 +135,7 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      * @return mass
      */
     public double getMass(){
-        return particles.stream()
-                .mapToDouble(Particle::getMass)
-                .sum();
+        return store.totalMass();
     }
 
     /**
@@ -126,9 +143,7 @@ public class Bunch<T extends Particle>  implements Massive, Point {
      * @return energy
      */
     public double getEnergy(){
-        return particles.stream()
-                .mapToDouble(Particle::getEnergy)
-                .sum();
+        return store.totalEnergy();
     }
 
 }
@@ -1,8 +1,7 @@
 package acceleratorphysics.particles;
 
+import acceleratorphysics.fields.DirectSum;
 import acceleratorphysics.fields.EMField;
-import acceleratorphysics.fields.Superimposed;
-import acceleratorphysics.util.Vector3;
 
 
 // TODO: TEST ME
@@ -10,13 +9,24 @@ public final class ChargedBunch extends Bunch<ChargedParticle> implements Charge
 
     private final EMField coulombField;
 
+    /**
+     * Constructs charged bunch from copies of particles
+     * (the particles of the bunch are views over its store, not particlesIn)
+     * @param state initial state
+     * @param particlesIn particles
+     */
     public ChargedBunch(State state, ChargedParticle... particlesIn){
-        super(state, particlesIn);
-        coulombField = new Superimposed(
-                particles.stream()
-                        .map(ChargedParticle::getField)
-                        .toArray(EMField[]::new)
-        );
+        this(ParticleStore.of(particlesIn), state);
+    }
+
+    /**
+     * Constructs charged bunch over the rows of a particle store
+     * @param store particle store
+     * @param state initial state
+     */
+    ChargedBunch(ParticleStore store, State state){
+        super(store, state, i -> new ChargedParticle(store, i));
+        coulombField = new DirectSum(store);
     }
 
     @Override
@@ -26,29 +36,14 @@ public final class ChargedBunch extends Bunch<ChargedParticle> implements Charge
 
     @Override
     public double getCharge(){
-        return particles.stream()
-                .mapToDouble(ChargedParticle::getCharge)
-                .sum();
+        return store.totalCharge();
     }
 
+    /**
+     * Gets electrostatic potential energy of the bunch
+     * @return potential energy
+     */
     public double potentialEnergy(){
-        double k = 0; // FIXME:  find this constant
-        double EPE = 0;
-        for (int i = 0; i < particles.size(); i++){
-            ChargedParticle particle_i = particles.get(i);
-            double Qi = particle_i.getCharge();
-            Vector3 Ri = particle_i.getPosition();
-            for (int j = 0; j < particles.size(); j++) {
-                if (i == j) {
-                    continue;
-                }
-                ChargedParticle particle_j = particles.get(j);
-                double Qj = particle_j.getCharge();
-                Vector3 Rj = particle_j.getPosition();
-
-                EPE += (Qi * Qj) / Ri.subtract(Rj).norm();
-            }
-        }
-        return EPE * k;
+        return DirectSum.potentialEnergy(store);
     }
 }
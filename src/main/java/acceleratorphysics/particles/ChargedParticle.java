@@ -9,7 +9,7 @@ import acceleratorphysics.util.Vector3;
  */
 public class ChargedParticle extends Particle implements Charged {
 
-    static final double EPSILON_NOUGHT = 8.854187817E-12;
+    public static final double EPSILON_NOUGHT = 8.854187817E-12;
 
     private final double charge;
 
@@ -19,8 +19,16 @@ public class ChargedParticle extends Particle implements Charged {
     private final EMField coulombField = new EField() {
         @Override
         public Vector3 E(Vector3 r, double t) {
-            return r.subtract(getPosition())
-                    .scale(charge / (4 * Math.PI * EPSILON_NOUGHT));
+            Vector3 p = getPosition();
+            double dx = r.getX() - p.getX();
+            double dy = r.getY() - p.getY();
+            double dz = r.getZ() - p.getZ();
+            double r2 = dx * dx + dy * dy + dz * dz;
+            if (r2 == 0) {
+                return Vector3.ZERO; // no self field
+            }
+            double s = charge / (4 * Math.PI * EPSILON_NOUGHT * r2 * Math.sqrt(r2));
+            return new Vector3(s * dx, s * dy, s * dz);
         }
     };
 
@@ -36,6 +44,16 @@ public class ChargedParticle extends Particle implements Charged {
         this.charge = charge;
     }
 
+    /**
+     * Constructs charged particle whose state is row index of a particle store
+     * @param store particle store
+     * @param index row of store
+     */
+    ChargedParticle(ParticleStore store, int index) {
+        super(store, index);
+        this.charge = store.charge()[index];
+    }
+
     @Override
     public double getCharge(){
         return charge;
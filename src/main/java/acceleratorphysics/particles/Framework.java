@@ -12,69 +12,141 @@ enum Framework {
 
     NEWTONIAN, RELATIVISTIC;
 
+    /**
+     * Constructs material point of this framework with its own storage
+     * @param state initial state
+     * @param mass rest mass
+     * @return new material point
+     */
     MaterialPoint newMaterialPoint(State state, double mass){
+        return new HeapPoint(this, state, mass);
+    }
 
-        switch (this) {
+    /**
+     * Constructs material point of this framework backed by a row of a particle store
+     * @param store particle store
+     * @param index row of store
+     * @return new material point
+     */
+    MaterialPoint newMaterialPoint(ParticleStore store, int index){
+        return new StoredPoint(this, store, index);
+    }
 
+    /**
+     * Momentum of a point of rest mass m and velocity v
+     * @param m rest mass
+     * @param v velocity
+     * @return momentum
+     */
+    Vector3 momentum(double m, Vector3 v){
+        switch (this) {
             case NEWTONIAN:
-                return new MaterialPoint(state) {
-
-                    @Override
-                    Vector3 getMomentum() {
-                        return velocity.scale(mass);
-                    }
-
-                    @Override
-                    Vector3 getAcceleration(Vector3 force) {
-                        return force.scale(1.0/mass);
-                    }
+                return v.scale(m);
+            case RELATIVISTIC:
+                return v.scale(gamma(v) * m);
+            default:
+                throw undeveloped();
+        }
+    }
 
-                    @Override
-                    public double getMass() {
-                        return mass;
-                    }
+    /**
+     * Acceleration of a point of rest mass m and velocity v due to force
+     * @param m rest mass
+     * @param v velocity
+     * @param force force
+     * @return acceleration due to force
+     */
+    Vector3 acceleration(double m, Vector3 v, Vector3 force){
+        switch (this) {
+            case NEWTONIAN:
+                return force.scale(1.0 / m);
+            case RELATIVISTIC:
+                return force.subtract(v.scale(force.dot(v) / (C * C)))
+                        .scale(1.0 / (gamma(v) * m));
+            default:
+                throw undeveloped();
+        }
+    }
 
-                    @Override
-                    public double getEnergy() {
-                        return 0.5 * mass * velocity.dot(velocity);
-                    }
+    /**
+     * Mass of a point of rest mass m moving with velocity (vx, vy, vz)
+     * @param m rest mass
+     * @param vx x component of velocity
+     * @param vy y component of velocity
+     * @param vz z component of velocity
+     * @return mass
+     */
+    double mass(double m, double vx, double vy, double vz){
+        switch (this) {
+            case NEWTONIAN:
+                return m;
+            case RELATIVISTIC:
+                return gamma(vx, vy, vz) * m;
+            default:
+                throw undeveloped();
+        }
+    }
 
-                };
+    /**
+     * Ratio of mass to rest mass of a point moving with velocity (vx, vy, vz)
+     * @param vx x component of velocity
+     * @param vy y component of velocity
+     * @param vz z component of velocity
+     * @return gamma factor, 1 in Newtonian mechanics
+     */
+    double lorentzFactor(double vx, double vy, double vz){
+        switch (this) {
+            case NEWTONIAN:
+                return 1D;
+            case RELATIVISTIC:
+                return gamma(vx, vy, vz);
+            default:
+                throw undeveloped();
+        }
+    }
 
+    /**
+     * Energy of a point of rest mass m moving with velocity (vx, vy, vz)
+     * @param m rest mass
+     * @param vx x component of velocity
+     * @param vy y component of velocity
+     * @param vz z component of velocity
+     * @return energy
+     */
+    double energy(double m, double vx, double vy, double vz){
+        switch (this) {
+            case NEWTONIAN:
+                return 0.5 * m * (vx * vx + vy * vy + vz * vz);
             case RELATIVISTIC:
-                return new MaterialPoint(state) {
-
-                    @Override
-                    Vector3 getMomentum() {
-                        return velocity.scale(gamma(velocity)*mass);
-                    }
-
-                    @Override
-                    Vector3 getAcceleration(Vector3 force) {
-                        return force.subtract(velocity.scale(force.dot(velocity) / (C * C)))
-                                .scale(1.0 / (gamma(velocity) * mass));
-                    }
-
-                    @Override
-                    public double getMass() {
-                        return gamma(velocity) * mass;
-                    }
-
-                    @Override
-                    public double getEnergy() {
-                        return gamma(velocity) * mass * C * C;
-                    }
-                };
+                return gamma(vx, vy, vz) * m * C * C;
+            default:
+                throw undeveloped();
+        }
+    }
 
+    /**
+     * Speed of light, infinite in Newtonian mechanics
+     * @return speed of light
+     */
+    double lightSpeed(){
+        switch (this) {
+            case NEWTONIAN:
+                return Double.POSITIVE_INFINITY;
+            case RELATIVISTIC:
+                return C;
             default:
-                throw new AssertionError(
-                        "Implementation of MaterialPoint according to "
-                        + this.name()
-                        + " must be developed."
-                );
+                throw undeveloped();
         }
     }
 
+    private AssertionError undeveloped(){
+        return new AssertionError(
+                "Implementation of MaterialPoint according to "
+                + this.name()
+                + " must be developed."
+        );
+    }
+
 
     @Override
     public String toString(){
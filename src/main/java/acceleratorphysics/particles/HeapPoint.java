@@ -0,0 +1,95 @@
+package acceleratorphysics.particles;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Material point holding its own state
+ * (in primitive fields, so that it is stepped without allocating; Vector3 objects are made on request)
+ */
+final class HeapPoint extends MaterialPoint {
+
+    private final double mass;
+
+    private double x, y, z;     // position
+    private double vx, vy, vz;  // velocity
+    private double ax, ay, az;  // acceleration
+
+    /**
+     * Constructs material point with initial state
+     * @param framework mechanics framework
+     * @param state initial state
+     * @param mass rest mass
+     */
+    HeapPoint(Framework framework, State state, double mass){
+        super(framework, state);
+        this.mass = mass;
+    }
+
+    @Override
+    double getRestMass(){
+        return mass;
+    }
+
+    @Override
+    public Vector3 getPosition(){
+        return new Vector3(x, y, z);
+    }
+
+    @Override
+    public Vector3 getVelocity(){
+        return new Vector3(vx, vy, vz);
+    }
+
+    @Override
+    public Vector3 getAcceleration(){
+        return new Vector3(ax, ay, az);
+    }
+
+    @Override
+    void setPosition(Vector3 position){
+        x = position.getX();
+        y = position.getY();
+        z = position.getZ();
+    }
+
+    @Override
+    void setVelocity(Vector3 velocity){
+        vx = velocity.getX();
+        vy = velocity.getY();
+        vz = velocity.getZ();
+    }
+
+    @Override
+    void setAcceleration(Vector3 acceleration){
+        ax = acceleration.getX();
+        ay = acceleration.getY();
+        az = acceleration.getZ();
+    }
+
+    @Override
+    void phase(double[] y){
+        y[0] = x;
+        y[1] = this.y;
+        y[2] = z;
+        y[3] = vx;
+        y[4] = vy;
+        y[5] = vz;
+    }
+
+    @Override
+    void setPhase(double[] y){
+        x = y[0];
+        this.y = y[1];
+        z = y[2];
+        vx = y[3];
+        vy = y[4];
+        vz = y[5];
+    }
+
+    @Override
+    void setAcceleration(double ax, double ay, double az){
+        this.ax = ax;
+        this.ay = ay;
+        this.az = az;
+    }
+}
@@ -4,28 +4,71 @@ import acceleratorphysics.util.Vector3;
 
 /**
  * Represents a massive mutable point
+ * (quantities depending on mass are computed according to mechanics framework)
  */
 abstract class MaterialPoint extends MutablePoint implements Massive {
 
+    private final Framework framework;
+
     /**
      * Constructs material point with initial state
+     * @param framework mechanics framework
      * @param state state
      */
-    MaterialPoint(State state){
+    MaterialPoint(Framework framework, State state){
         super(state);
+        this.framework = framework;
+    }
+
+    /**
+     * Constructs material point whose state is already held in its storage
+     * @param framework mechanics framework
+     */
+    MaterialPoint(Framework framework){
+        this.framework = framework;
+    }
+
+    /**
+     * Returns rest mass
+     * @return rest mass
+     */
+    abstract double getRestMass();
+
+    /**
+     * Returns mechanics framework
+     * @return framework
+     */
+    Framework getFramework(){
+        return framework;
     }
 
     /**
      * Returns momentum
      * @return momentum
      */
-    abstract Vector3 getMomentum();
+    Vector3 getMomentum(){
+        return framework.momentum(getRestMass(), getVelocity());
+    }
 
     /**
      * Returns acceleration due to force
      * @param force
      * @return acceleration due to force
      */
-    abstract Vector3 getAcceleration(Vector3 force);
+    Vector3 getAcceleration(Vector3 force){
+        return framework.acceleration(getRestMass(), getVelocity(), force);
+    }
+
+    @Override
+    public double getMass(){
+        Vector3 v = getVelocity();
+        return framework.mass(getRestMass(), v.getX(), v.getY(), v.getZ());
+    }
+
+    @Override
+    public double getEnergy(){
+        Vector3 v = getVelocity();
+        return framework.energy(getRestMass(), v.getX(), v.getY(), v.getZ());
+    }
 
 }
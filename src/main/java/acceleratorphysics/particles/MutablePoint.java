@@ -2,40 +2,43 @@ package acceleratorphysics.particles;
 
 import acceleratorphysics.util.Vector3;
 
+/**
+ * Represents a point whose state may be changed.
+ * Storage of the state is left to concrete implementations.
+ */
 abstract class MutablePoint implements Point {
 
-    Vector3 position;
-    Vector3 velocity;
-    Vector3 acceleration;
-
+    /**
+     * Constructs mutable point and manifests initial state into it
+     * @param state initial state
+     */
     protected MutablePoint(State state){
         state.manifest(this);
     }
 
-    @Override
-    public Vector3 getPosition(){
-        return position;
+    /**
+     * Constructs mutable point whose state is already held in its storage
+     */
+    protected MutablePoint(){
     }
 
-    @Override
-    public Vector3 getVelocity(){
-        return velocity;
-    }
+    abstract void setPosition(Vector3 position);
 
-    @Override
-    public Vector3 getAcceleration(){
-        return acceleration;
-    }
+    abstract void setVelocity(Vector3 velocity);
 
-    void setPosition(Vector3 position){
-        this.position = position;
-    }
+    abstract void setAcceleration(Vector3 acceleration);
 
-    void setVelocity(Vector3 velocity){
-        this.velocity = velocity;
-    }
+    /**
+     * Copies position and velocity into y
+     * @param y y[0..2] = position, y[3..5] = velocity (overwritten)
+     */
+    abstract void phase(double[] y);
 
-    void setAcceleration(Vector3 acceleration){
-        this.acceleration = acceleration;
-    }
+    /**
+     * Sets position and velocity from y
+     * @param y y[0..2] = position, y[3..5] = velocity
+     */
+    abstract void setPhase(double[] y);
+
+    abstract void setAcceleration(double ax, double ay, double az);
 }
@@ -12,6 +12,8 @@ public abstract class Newton2ndLaw extends IVP {
     private final Particle particle;
     private double time;
 
+    private final double[] a = new double[3]; // scratch
+
     /**
      * Constructs IVP corresponding to newtons 2nd law on specified particle
      * @param particle particle
@@ -43,6 +45,24 @@ public abstract class Newton2ndLaw extends IVP {
      */
     protected abstract Vector3 acceleration(Vector3 r, Vector3 v, double t);
 
+    /**
+     * Evaluates acceleration of the particle in phase space state y without allocating.
+     * Adapted onto acceleration(Vector3, Vector3, double) unless overridden.
+     * @param t time
+     * @param y y[0..2] = position, y[3..5] = velocity
+     * @param a acceleration (overwritten)
+     */
+    protected void acceleration(double t, double[] y, double[] a){
+        Vector3 acceleration = acceleration(
+                new Vector3(y[0], y[1], y[2]),
+                new Vector3(y[3], y[4], y[5]),
+                t
+        );
+        a[0] = acceleration.getX();
+        a[1] = acceleration.getY();
+        a[2] = acceleration.getZ();
+    }
+
     @Override
     public Vector3[] y(){
         return new Vector3[]{particle.getPosition(), particle.getVelocity()};
@@ -53,6 +73,41 @@ public abstract class Newton2ndLaw extends IVP {
         return time;
     }
 
+    @Override
+    public void derivative(double t, double[] y, double[] dydt){
+        acceleration(t, y, a);
+        dydt[0] = y[3];
+        dydt[1] = y[4];
+        dydt[2] = y[5];
+        dydt[3] = a[0];
+        dydt[4] = a[1];
+        dydt[5] = a[2];
+    }
+
+    @Override
+    protected void state(double[] y){
+        particle.phase(y);
+    }
+
+    /**
+     * Sets position and velocity of the particle, and its acceleration evaluated at them
+     */
+    @Override
+    protected void advance(double[] y, double h){
+        move(y, h);
+        acceleration(time, y, a);
+        particle.setAcceleration(a[0], a[1], a[2]);
+    }
+
+    /**
+     * Sets position and velocity of the particle, leaving its acceleration to the system evaluating it
+     */
+    @Override
+    protected void move(double[] y, double h){
+        time += h;
+        particle.setPhase(y);
+    }
+
     @Override
     protected void increment(Vector3[] dy, double h){
         time += h;
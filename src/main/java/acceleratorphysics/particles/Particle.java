@@ -8,7 +8,6 @@ import acceleratorphysics.util.Vector3;
 public class Particle {
 
     private final MaterialPoint point;
-    private final String type;
 
     /**
      * Constructs particle with mass in an initial state according to a framework
@@ -20,7 +19,17 @@ public class Particle {
         if(mass <= 0)
             throw new IllegalArgumentException("Massless particle not supported.");
         point = framework.newMaterialPoint(state, mass);
-        type = framework.toString();
+    }
+
+    /**
+     * Constructs particle whose state is row index of a particle store
+     * @param store particle store
+     * @param index row of store
+     */
+    Particle(ParticleStore store, int index) {
+        if(store.mass()[index] <= 0)
+            throw new IllegalArgumentException("Massless particle not supported.");
+        point = store.getFramework().newMaterialPoint(store, index);
     }
 
     @Deprecated
@@ -36,6 +45,30 @@ public class Particle {
         return point.getMass();
     }
 
+    /**
+     * Gets rest mass
+     * @return rest mass
+     */
+    public double getRestMass(){
+        return point.getRestMass();
+    }
+
+    /**
+     * Gets speed of light in mechanics framework of particle (infinite if Newtonian)
+     * @return speed of light
+     */
+    public double getLightSpeed(){
+        return getFramework().lightSpeed();
+    }
+
+    /**
+     * Gets mechanics framework
+     * @return framework
+     */
+    Framework getFramework(){
+        return point.getFramework();
+    }
+
     /**
      * Gets energy
      * @return energy
@@ -117,8 +150,34 @@ public class Particle {
         point.setAcceleration(acceleration);
     }
 
+    /**
+     * Copies position and velocity into y without allocating
+     * @param y y[0..2] = position, y[3..5] = velocity (overwritten)
+     */
+    void phase(double[] y){
+        point.phase(y);
+    }
+
+    /**
+     * Sets position and velocity from y without allocating
+     * @param y y[0..2] = position, y[3..5] = velocity
+     */
+    void setPhase(double[] y){
+        point.setPhase(y);
+    }
+
+    /**
+     * Sets acceleration without allocating
+     * @param ax x component
+     * @param ay y component
+     * @param az z component
+     */
+    void setAcceleration(double ax, double ay, double az){
+        point.setAcceleration(ax, ay, az);
+    }
+
     public String toString(){
-        return type + " Particle Object: " +
+        return getFramework() + " Particle Object: " +
                 "\nMass:         " + getMass() +
                 "\nPosition:     " + getPosition() +
                 "\nVelocity:     " + getVelocity() +
@@ -1,6 +1,6 @@
 package acceleratorphysics.particles;
 
-import java.util.stream.DoubleStream;
+import java.util.Arrays;
 
 /**
  * Abstract factory for Particle objects
@@ -141,11 +141,9 @@ public abstract class ParticleFactory {
      * @return new bunch
      */
     public Bunch<Particle> massiveBunch(State state, double[] masses){
-        return new Bunch<Particle>(state,
-                (Particle[])DoubleStream.of(masses)
-                .mapToObj(m -> massiveParticle(state, m))
-                .toArray()
-        );
+        ParticleStore store = new ParticleStore(framework(), masses.length);
+        System.arraycopy(masses, 0, store.mass(), 0, masses.length);
+        return new Bunch<>(store, state, i -> new Particle(store, i));
     }
 
     /**
@@ -159,12 +157,24 @@ public abstract class ParticleFactory {
         if(mass.length != charge.length){
             throw new IllegalArgumentException("Masses and Charges are unequal in number");
         }
-        int n = mass.length;
-        ChargedParticle[] particles = new ChargedParticle[n];
-        for (int i = 0; i < n; i++){
-            particles[i] = chargedParticle(state, mass[i], charge[i]);
-        }
-        return new ChargedBunch(state, particles);
+        ParticleStore store = new ParticleStore(framework(), mass.length);
+        System.arraycopy(mass, 0, store.mass(), 0, mass.length);
+        System.arraycopy(charge, 0, store.charge(), 0, charge.length);
+        return new ChargedBunch(store, state);
+    }
+
+    /**
+     * Constructs a particle store of N identical charged particles
+     * @param N number of particles
+     * @param mass mass of each particle
+     * @param charge charge of each particle
+     * @return new particle store
+     */
+    private ParticleStore chargedStore(int N, double mass, double charge){
+        ParticleStore store = new ParticleStore(framework(), N);
+        Arrays.fill(store.mass(), mass);
+        Arrays.fill(store.charge(), charge);
+        return store;
     }
 
     /**
@@ -174,11 +184,7 @@ public abstract class ParticleFactory {
      * @return bunch of protons
      */
     public ChargedBunch protonBunch(State state, int N){
-        ChargedParticle[] protons = new ChargedParticle[N];
-        for (int i = 0; i < N; i++){
-            protons[i] = proton(state);
-        }
-        return new ChargedBunch(state, protons);
+        return new ChargedBunch(chargedStore(N, PROTON_MASS, PROTON_CHARGE), state);
     }
 
     /**
@@ -188,13 +194,7 @@ public abstract class ParticleFactory {
      * @return bunch of electrons
      */
     public ChargedBunch electronBunch(State state, int N){
-        ChargedParticle[] electrons = new ChargedParticle[N];
-        for (int i = 0; i < N; i++){
-            electrons[i] = electron(state);
-        }
-        return new ChargedBunch(state, electrons);
+        return new ChargedBunch(chargedStore(N, ELECTRON_MASS, ELECTRON_CHARGE), state);
     }
 
 }
-
-
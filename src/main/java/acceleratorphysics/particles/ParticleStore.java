@@ -0,0 +1,319 @@
+package acceleratorphysics.particles;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Structure-of-arrays storage for the particles of a bunch.
+ * The state of particle i is held in row i of primitive columns
+ * (x, y, z, vx, vy, vz, ax, ay, az, mass, charge) rather than in
+ * Vector3 objects, so that large bunches cost a handful of arrays.
+ *
+ * Columns are returned by reference. Writes to them are seen by the
+ * particles of the bunch backed by this store.
+ */
+public final class ParticleStore {
+
+    private final Framework framework;
+    private final int size;
+
+    private final double[] x, y, z;    // positions
+    private final double[] vx, vy, vz; // velocities
+    private final double[] ax, ay, az; // accelerations
+    private final double[] mass;       // rest masses
+    private final double[] charge;     // charges
+
+    /**
+     * Constructs store of size particles at origin with zero velocity / acceleration
+     * @param framework mechanics framework of every particle in store
+     * @param size number of particles
+     */
+    ParticleStore(Framework framework, int size){
+        if (size <= 0) {
+            throw new IllegalArgumentException("Particle store must hold at least one particle.");
+        }
+        this.framework = framework;
+        this.size = size;
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        vx = new double[size];
+        vy = new double[size];
+        vz = new double[size];
+        ax = new double[size];
+        ay = new double[size];
+        az = new double[size];
+        mass = new double[size];
+        charge = new double[size];
+    }
+
+    /**
+     * Constructs store holding copies of the states, rest masses and charges of particles
+     * @param particles particles sharing one mechanics framework
+     * @return new particle store
+     */
+    static ParticleStore of(Particle... particles){
+        if (particles.length == 0) {
+            throw new IllegalArgumentException("Particle store must hold at least one particle.");
+        }
+        ParticleStore store = new ParticleStore(particles[0].getFramework(), particles.length);
+        for (int i = 0; i < particles.length; i++) {
+            Particle particle = particles[i];
+            if (particle.getFramework() != store.framework) {
+                throw new IllegalArgumentException("Particles of a bunch must share a mechanics framework.");
+            }
+            store.mass[i] = particle.getRestMass();
+            store.charge[i] = (particle instanceof ChargedParticle)
+                    ? ((ChargedParticle) particle).getCharge()
+                    : 0D;
+            store.setPosition(i, particle.getPosition());
+            store.setVelocity(i, particle.getVelocity());
+            store.setAcceleration(i, particle.getAcceleration());
+        }
+        return store;
+    }
+
+    /**
+     * Returns mechanics framework of particles in this store
+     * @return framework
+     */
+    Framework getFramework(){
+        return framework;
+    }
+
+    /**
+     * Returns number of particles in this store
+     * @return number of particles
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * x column of positions
+     * @return x positions
+     */
+    public double[] x(){
+        return x;
+    }
+
+    /**
+     * y column of positions
+     * @return y positions
+     */
+    public double[] y(){
+        return y;
+    }
+
+    /**
+     * z column of positions
+     * @return z positions
+     */
+    public double[] z(){
+        return z;
+    }
+
+    /**
+     * x column of velocities
+     * @return x velocities
+     */
+    public double[] vx(){
+        return vx;
+    }
+
+    /**
+     * y column of velocities
+     * @return y velocities
+     */
+    public double[] vy(){
+        return vy;
+    }
+
+    /**
+     * z column of velocities
+     * @return z velocities
+     */
+    public double[] vz(){
+        return vz;
+    }
+
+    /**
+     * x column of accelerations
+     * @return x accelerations
+     */
+    public double[] ax(){
+        return ax;
+    }
+
+    /**
+     * y column of accelerations
+     * @return y accelerations
+     */
+    public double[] ay(){
+        return ay;
+    }
+
+    /**
+     * z column of accelerations
+     * @return z accelerations
+     */
+    public double[] az(){
+        return az;
+    }
+
+    /**
+     * Column of rest masses
+     * @return rest masses
+     */
+    public double[] mass(){
+        return mass;
+    }
+
+    /**
+     * Column of charges
+     * @return charges
+     */
+    public double[] charge(){
+        return charge;
+    }
+
+    /**
+     * Gets position of particle i
+     * @param i index of particle
+     * @return position
+     */
+    public Vector3 getPosition(int i){
+        return new Vector3(x[i], y[i], z[i]);
+    }
+
+    /**
+     * Gets velocity of particle i
+     * @param i index of particle
+     * @return velocity
+     */
+    public Vector3 getVelocity(int i){
+        return new Vector3(vx[i], vy[i], vz[i]);
+    }
+
+    /**
+     * Gets acceleration of particle i
+     * @param i index of particle
+     * @return acceleration
+     */
+    public Vector3 getAcceleration(int i){
+        return new Vector3(ax[i], ay[i], az[i]);
+    }
+
+    /**
+     * Gets mass of particle i according to mechanics framework
+     * @param i index of particle
+     * @return mass
+     */
+    public double getMass(int i){
+        return framework.mass(mass[i], vx[i], vy[i], vz[i]);
+    }
+
+    /**
+     * Gets energy of particle i according to mechanics framework
+     * @param i index of particle
+     * @return energy
+     */
+    public double getEnergy(int i){
+        return framework.energy(mass[i], vx[i], vy[i], vz[i]);
+    }
+
+    void setPosition(int i, Vector3 r){
+        x[i] = r.getX();
+        y[i] = r.getY();
+        z[i] = r.getZ();
+    }
+
+    void setVelocity(int i, Vector3 v){
+        vx[i] = v.getX();
+        vy[i] = v.getY();
+        vz[i] = v.getZ();
+    }
+
+    void setAcceleration(int i, Vector3 a){
+        ax[i] = a.getX();
+        ay[i] = a.getY();
+        az[i] = a.getZ();
+    }
+
+    /**
+     * Mean average of columns (cx, cy, cz)
+     * @param cx x column
+     * @param cy y column
+     * @param cz z column
+     * @return mean average
+     */
+    private Vector3 mean(double[] cx, double[] cy, double[] cz){
+        double sx = 0, sy = 0, sz = 0;
+        for (int i = 0; i < size; i++) {
+            sx += cx[i];
+            sy += cy[i];
+            sz += cz[i];
+        }
+        return new Vector3(sx / size, sy / size, sz / size);
+    }
+
+    /**
+     * Mean average position of particles
+     * @return mean position
+     */
+    public Vector3 meanPosition(){
+        return mean(x, y, z);
+    }
+
+    /**
+     * Mean average velocity of particles
+     * @return mean velocity
+     */
+    public Vector3 meanVelocity(){
+        return mean(vx, vy, vz);
+    }
+
+    /**
+     * Mean average acceleration of particles
+     * @return mean acceleration
+     */
+    public Vector3 meanAcceleration(){
+        return mean(ax, ay, az);
+    }
+
+    /**
+     * Collective mass of particles according to mechanics framework
+     * @return mass
+     */
+    public double totalMass(){
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += getMass(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Collective energy of particles according to mechanics framework
+     * @return energy
+     */
+    public double totalEnergy(){
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += getEnergy(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Collective charge of particles
+     * @return charge
+     */
+    public double totalCharge(){
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += charge[i];
+        }
+        return sum;
+    }
+
+}
@@ -25,5 +25,16 @@ final class Relativity {
         return 1D / Math.sqrt(1D - u.dot(u) / (C * C));
     }
 
+    /**
+     * Gamma factor
+     * @param ux x component of velocity
+     * @param uy y component of velocity
+     * @param uz z component of velocity
+     * @return gamma
+     */
+    static double gamma(double ux, double uy, double uz){
+        return 1D / Math.sqrt(1D - (ux * ux + uy * uy + uz * uz) / (C * C));
+    }
+
 
 }
@@ -0,0 +1,96 @@
+package acceleratorphysics.particles;
+
+import acceleratorphysics.util.Vector3;
+
+/**
+ * Material point whose state is a row of a ParticleStore
+ */
+final class StoredPoint extends MaterialPoint {
+
+    private final ParticleStore store;
+    private final int index;
+
+    /**
+     * Constructs view over row index of store
+     * @param framework mechanics framework
+     * @param store particle store
+     * @param index row of store
+     */
+    StoredPoint(Framework framework, ParticleStore store, int index){
+        super(framework);
+        this.store = store;
+        this.index = index;
+    }
+
+    @Override
+    double getRestMass(){
+        return store.mass()[index];
+    }
+
+    @Override
+    public double getMass(){
+        return store.getMass(index);
+    }
+
+    @Override
+    public double getEnergy(){
+        return store.getEnergy(index);
+    }
+
+    @Override
+    public Vector3 getPosition(){
+        return store.getPosition(index);
+    }
+
+    @Override
+    public Vector3 getVelocity(){
+        return store.getVelocity(index);
+    }
+
+    @Override
+    public Vector3 getAcceleration(){
+        return store.getAcceleration(index);
+    }
+
+    @Override
+    void setPosition(Vector3 position){
+        store.setPosition(index, position);
+    }
+
+    @Override
+    void setVelocity(Vector3 velocity){
+        store.setVelocity(index, velocity);
+    }
+
+    @Override
+    void setAcceleration(Vector3 acceleration){
+        store.setAcceleration(index, acceleration);
+    }
+
+    @Override
+    void phase(double[] y){
+        y[0] = store.x()[index];
+        y[1] = store.y()[index];
+        y[2] = store.z()[index];
+        y[3] = store.vx()[index];
+        y[4] = store.vy()[index];
+        y[5] = store.vz()[index];
+    }
+
+    @Override
+    void setPhase(double[] y){
+        store.x()[index] = y[0];
+        store.y()[index] = y[1];
+        store.z()[index] = y[2];
+        store.vx()[index] = y[3];
+        store.vy()[index] = y[4];
+        store.vz()[index] = y[5];
+    }
+
+    @Override
+    void setAcceleration(double ax, double ay, double az){
+        store.ax()[index] = ax;
+        store.ay()[index] = ay;
+        store.az()[index] = az;
+    }
+}
@@ -0,0 +1,186 @@
+package acceleratorphysics.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads Vector3 data written by VectorWriter from a file mapped into memory, so that any vector
+ * is reached in constant time without reading those before it. The file is mapped in chunks of
+ * whole vectors of at most 1 GB, each mapped on first access and paged in by the operating system.
+ *
+ * A reader keeps a position, like VectorReader, and is not safe for concurrent use.
+ */
+public class MappedVectorReader implements Closeable {
+
+    private static final int VECTOR_BYTES = 3 * Double.BYTES;
+    private static final long MAX_CHUNK_BYTES = (1L << 30) / VECTOR_BYTES * VECTOR_BYTES;
+
+    private final FileChannel channel;
+    private final long size;            // vectors
+    private final long chunkVectors;    // vectors per chunk
+    private final DoubleBuffer[] chunks;
+
+    private long position;              // index of next vector
+
+    /**
+     * Opens file of vectors
+     * @param file file written by VectorWriter
+     * @throws IOException if the file cannot be read or does not hold whole vectors
+     */
+    public MappedVectorReader(Path file) throws IOException {
+        this(file, MAX_CHUNK_BYTES);
+    }
+
+    MappedVectorReader(Path file, long chunkBytes) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        long bytes = channel.size();
+        if (bytes % VECTOR_BYTES != 0) {
+            channel.close();
+            throw new IOException(file + " does not hold a whole number of vectors.");
+        }
+        size = bytes / VECTOR_BYTES;
+        chunkVectors = chunkBytes / VECTOR_BYTES;
+        chunks = new DoubleBuffer[(int) ((size + chunkVectors - 1) / chunkVectors)];
+    }
+
+    /**
+     * Returns chunk k, mapping it on first access
+     */
+    private DoubleBuffer chunk(int k) throws IOException {
+        DoubleBuffer chunk = chunks[k];
+        if (chunk == null) {
+            long from = k * chunkVectors;
+            long vectors = Math.min(chunkVectors, size - from);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    from * VECTOR_BYTES, vectors * VECTOR_BYTES);
+            chunk = mapped.asDoubleBuffer();
+            chunks[k] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Gets number of vectors
+     * @return vectors in file
+     */
+    public long size(){
+        return size;
+    }
+
+    /**
+     * Gets position
+     * @return index of next vector read
+     */
+    public long position(){
+        return position;
+    }
+
+    /**
+     * Moves to vector
+     * @param index index of next vector read, at most size()
+     */
+    public void seek(long index){
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("No vector " + index + " of " + size + ".");
+        }
+        position = index;
+    }
+
+    /**
+     * Skips vectors, fewer if the end is reached first
+     * @param n vectors to skip
+     * @return vectors skipped
+     */
+    public long skip(long n){
+        long skipped = Math.max(0, Math.min(n, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * Reads next vector
+     * @return vector
+     * @throws IOException if the end has been reached
+     */
+    public Vector3 readVector() throws IOException {
+        if (position >= size) {
+            throw new EOFException("No vector " + position + " of " + size + ".");
+        }
+        DoubleBuffer chunk = chunk((int) (position / chunkVectors));
+        int i = 3 * (int) (position % chunkVectors);
+        position++;
+        return new Vector3(chunk.get(i), chunk.get(i + 1), chunk.get(i + 2));
+    }
+
+    /**
+     * Reads next vectors into dst as x, y, z of each in turn
+     * @param dst destination
+     * @param offset index in dst of x of first vector
+     * @param count vectors to read
+     * @return vectors read, fewer than count only at the end, or -1 if the end has been reached
+     * @throws IOException if a chunk of the file cannot be mapped
+     */
+    public int read(double[] dst, int offset, int count) throws IOException {
+        if (offset < 0 || count < 0 || offset + 3L * count > dst.length) {
+            throw new IndexOutOfBoundsException("Destination cannot hold " + count + " vectors.");
+        }
+        if (position >= size && count > 0) {
+            return -1;
+        }
+        int total = (int) Math.min(count, size - position);
+        int done = 0;
+        while (done < total) {
+            int k = (int) (position / chunkVectors);
+            int from = (int) (position % chunkVectors);
+            int n = (int) Math.min(total - done, chunkVectors - from);
+            DoubleBuffer chunk = chunk(k).duplicate();
+            chunk.position(3 * from);
+            chunk.get(dst, offset + 3 * done, 3 * n);
+            done += n;
+            position += n;
+        }
+        return total;
+    }
+
+    /**
+     * Returns read only view of vectors, x, y, z of each in turn, without copying them.
+     * The position is not changed.
+     * @param from index of first vector
+     * @param count vectors
+     * @return view of 3 * count doubles
+     * @throws IOException if the file cannot be mapped
+     */
+    public DoubleBuffer view(long from, int count) throws IOException {
+        if (from < 0 || count < 0 || from + count > size) {
+            throw new IndexOutOfBoundsException("No vectors " + from + " to " + (from + count) + " of " + size + ".");
+        }
+        if (count == 0) {
+            return DoubleBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        int k = (int) (from / chunkVectors);
+        int first = (int) (from % chunkVectors);
+        if (first + (long) count <= chunkVectors) {
+            DoubleBuffer view = chunk(k).duplicate();
+            view.position(3 * first).limit(3 * (first + count));
+            return view.slice().asReadOnlyBuffer();
+        }
+        // straddles chunks: map the range on its own
+        if ((long) VECTOR_BYTES * count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("View must be smaller than 2 GB.");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, from * VECTOR_BYTES, (long) VECTOR_BYTES * count)
+                .asDoubleBuffer().asReadOnlyBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,208 @@
+package acceleratorphysics.util;
+
+/**
+ * Represents mutable three dimensional euclidean vector.
+ * Intended as an accumulator in hot loops where allocating a Vector3 per
+ * operation is too costly. Operations mutate this vector and return it for chaining.
+ */
+public final class MutableVector3 {
+
+    private double x;
+    private double y;
+    private double z;
+
+    /**
+     * Constructs mutable zero vector
+     */
+    public MutableVector3(){
+    }
+
+    /**
+     * Constructs mutable 3d euclidean vector
+     * @param x
+     * @param y
+     * @param z
+     */
+    public MutableVector3(double x, double y, double z){
+        set(x, y, z);
+    }
+
+    /**
+     * Constructs mutable copy of v
+     * @param v
+     */
+    public MutableVector3(Vector3 v){
+        set(v);
+    }
+
+    /**
+     * x projection
+     * @return x
+     */
+    public double getX(){
+        return x;
+    }
+
+    /**
+     * y projection
+     * @return y
+     */
+    public double getY(){
+        return y;
+    }
+
+    /**
+     * z projection
+     * @return z
+     */
+    public double getZ(){
+        return z;
+    }
+
+    /**
+     * this = (x, y, z)
+     * @param x
+     * @param y
+     * @param z
+     * @return this
+     */
+    public MutableVector3 set(double x, double y, double z){
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * this = v
+     * @param v
+     * @return this
+     */
+    public MutableVector3 set(Vector3 v){
+        return set(v.getX(), v.getY(), v.getZ());
+    }
+
+    /**
+     * this = v
+     * @param v
+     * @return this
+     */
+    public MutableVector3 set(MutableVector3 v){
+        return set(v.x, v.y, v.z);
+    }
+
+    /**
+     * this += v
+     * @param v
+     * @return this
+     */
+    public MutableVector3 add(Vector3 v){
+        x += v.getX();
+        y += v.getY();
+        z += v.getZ();
+        return this;
+    }
+
+    /**
+     * this += v
+     * @param v
+     * @return this
+     */
+    public MutableVector3 add(MutableVector3 v){
+        x += v.x;
+        y += v.y;
+        z += v.z;
+        return this;
+    }
+
+    /**
+     * dst += this
+     * @param dst
+     * @return dst
+     */
+    public MutableVector3 addTo(MutableVector3 dst){
+        return dst.add(this);
+    }
+
+    /**
+     * this *= c
+     * @param c
+     * @return this
+     */
+    public MutableVector3 scaleInPlace(double c){
+        x *= c;
+        y *= c;
+        z *= c;
+        return this;
+    }
+
+    /**
+     * Fused multiply-add: this += c * v
+     * @param c
+     * @param v
+     * @return this
+     */
+    public MutableVector3 fma(double c, Vector3 v){
+        x += c * v.getX();
+        y += c * v.getY();
+        z += c * v.getZ();
+        return this;
+    }
+
+    /**
+     * Fused multiply-add: this += c * v
+     * @param c
+     * @param v
+     * @return this
+     */
+    public MutableVector3 fma(double c, MutableVector3 v){
+        x += c * v.x;
+        y += c * v.y;
+        z += c * v.z;
+        return this;
+    }
+
+    /**
+     * this = a cross b
+     * @param a
+     * @param b
+     * @return this
+     */
+    public MutableVector3 crossInto(Vector3 a, Vector3 b){
+        return set(
+                a.getY() * b.getZ() - a.getZ() * b.getY(),
+                a.getZ() * b.getX() - a.getX() * b.getZ(),
+                a.getX() * b.getY() - a.getY() * b.getX()
+        );
+    }
+
+    /**
+     * this dot v
+     * @param v
+     * @return this dot v
+     */
+    public double dot(Vector3 v){
+        return x * v.getX() + y * v.getY() + z * v.getZ();
+    }
+
+    /**
+     * gets norm
+     * @return norm
+     */
+    public double norm(){
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    /**
+     * Immutable snapshot of this vector
+     * @return new Vector3
+     */
+    public Vector3 toVector3(){
+        return new Vector3(x, y, z);
+    }
+
+    public String toString(){
+        return x + "\t" + y + "\t" + z;
+    }
+
+}
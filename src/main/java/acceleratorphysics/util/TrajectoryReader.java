@@ -0,0 +1,165 @@
+package acceleratorphysics.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static acceleratorphysics.util.TrajectoryWriter.*;
+
+/**
+ * Reads trajectory files written by TrajectoryWriter. The index of chunks is read on opening,
+ * so that any step of any column is read directly from its place in the file.
+ */
+public class TrajectoryReader implements Closeable {
+
+    /**
+     * Columns of a trajectory
+     */
+    public enum Column {
+        X, Y, Z, VX, VY, VZ
+    }
+
+    private final FileChannel channel;
+    private final int particles;
+    private final long[] ids;
+
+    private final long[] offsets;   // offset of each chunk
+    private final int[] counts;     // steps of each chunk
+    private final long[] firsts;    // index of first step of each chunk
+    private final double[] times;   // time of every step
+    private final int steps;
+
+    /**
+     * Opens trajectory file
+     * @param file trajectory file
+     * @throws IOException if file cannot be read or is not a complete trajectory file
+     */
+    public TrajectoryReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(file + " is not a trajectory file.");
+            }
+            particles = header.getInt();
+            if (header.getInt() != COLUMNS) {
+                throw new IOException(file + " does not hold 6 columns.");
+            }
+            ByteBuffer idBuffer = read(HEADER_BYTES, Long.BYTES * particles);
+            ids = new long[particles];
+            idBuffer.asLongBuffer().get(ids);
+
+            ByteBuffer footer = read(channel.size() - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int chunks = footer.getInt();
+            if (footer.getInt() != INDEX_MAGIC) {
+                throw new IOException(file + " has no index of chunks (was its writer closed?).");
+            }
+
+            ByteBuffer index = read(indexOffset, INDEX_ENTRY_BYTES * chunks);
+            offsets = new long[chunks];
+            counts = new int[chunks];
+            firsts = new long[chunks];
+            long n = 0;
+            for (int k = 0; k < chunks; k++) {
+                offsets[k] = index.getLong();
+                counts[k] = index.getInt();
+                index.getInt();
+                index.getDouble();
+                firsts[k] = n;
+                n += counts[k];
+            }
+            if (n > Integer.MAX_VALUE) {
+                throw new IOException(file + " holds too many steps.");
+            }
+            steps = (int) n;
+
+            times = new double[steps];
+            for (int k = 0; k < chunks; k++) {
+                read(offsets[k] + CHUNK_HEADER_BYTES, Double.BYTES * counts[k])
+                        .asDoubleBuffer().get(times, (int) firsts[k], counts[k]);
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private ByteBuffer read(long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Trajectory file ends early.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Gets number of particles
+     * @return particles recorded at every step
+     */
+    public int getParticles(){
+        return particles;
+    }
+
+    /**
+     * Gets number of steps
+     * @return steps recorded
+     */
+    public int getSteps(){
+        return steps;
+    }
+
+    /**
+     * Gets identifier of particle
+     * @param i index of particle
+     * @return identifier
+     */
+    public long getId(int i){
+        return ids[i];
+    }
+
+    /**
+     * Gets time of step
+     * @param step index of step
+     * @return time
+     */
+    public double getTime(int step){
+        return times[step];
+    }
+
+    /**
+     * Reads column of every particle at step
+     * @param step index of step
+     * @param column column
+     * @param dst destination of one value per particle
+     * @throws IOException if the file cannot be read
+     */
+    public void read(int step, Column column, double[] dst) throws IOException {
+        if (step < 0 || step >= steps) {
+            throw new IndexOutOfBoundsException("No step " + step + " of " + steps + ".");
+        }
+        int k = Arrays.binarySearch(firsts, step);
+        if (k < 0) {
+            k = -k - 2;
+        }
+        int s = (int) (step - firsts[k]);
+        long columnBytes = (long) Double.BYTES * counts[k] * particles;
+        long position = offsets[k] + CHUNK_HEADER_BYTES + (long) Double.BYTES * counts[k]
+                + column.ordinal() * columnBytes + (long) Double.BYTES * s * particles;
+        read(position, Double.BYTES * particles).asDoubleBuffer().get(dst, 0, particles);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
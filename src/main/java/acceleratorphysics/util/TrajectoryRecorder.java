@@ -0,0 +1,358 @@
+package acceleratorphysics.util;
+
+import acceleratorphysics.particles.ParticleStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records steps to a TrajectoryWriter from a background thread, so that the thread that solves
+ * does not wait on the disk. Each step is copied into a slot of a preallocated ring buffer
+ * shared by the recording thread (the producer) and the writing thread (the consumer) without locks.
+ * When the ring is full the producer blocks, drops the step, or, decimating, keeps only every
+ * n-th step while the ring is at least half full (and drops steps while it is full).
+ *
+ * Steps must be recorded from one thread at a time. Errors of the writer are rethrown by the
+ * next call to record or by close.
+ */
+public class TrajectoryRecorder implements Closeable {
+
+    /**
+     * What record does with a step when the ring is full
+     */
+    public enum BackPressure {
+        /**
+         * Wait for the writer to free a slot
+         */
+        BLOCK,
+        /**
+         * Drop the step
+         */
+        DROP,
+        /**
+         * Keep every n-th step while the ring is at least half full, drop steps while it is full
+         */
+        DECIMATE
+    }
+
+    /**
+     * Default size of the slots of ring in bytes (the ring holds as many steps as fit, at least 2)
+     */
+    public static final long DEFAULT_CAPACITY_BYTES = 1 << 25;
+
+    private static final long PARK_NANOS = 50_000;
+
+    private final TrajectoryWriter writer;
+    private final BackPressure backPressure;
+    private final int decimation;
+    private final int particles;
+
+    // Ring: slot k of sequence number s is s & mask
+    private final int mask;
+    private final double[] times;
+    private final double[][][] slots; // [slot][column][particle]
+
+    private final AtomicLong head = new AtomicLong(); // next sequence number to fill (producer)
+    private final AtomicLong tail = new AtomicLong(); // next sequence number to write (consumer)
+
+    private final Thread thread;
+    private volatile boolean closing;
+    private volatile Throwable failure; // of the writing thread
+
+    // producer only
+    private long offered;
+    private long dropped;
+
+    private TrajectoryRecorder(Builder builder){
+        writer = builder.writer;
+        backPressure = builder.backPressure;
+        decimation = builder.decimation;
+        particles = writer.getParticles();
+
+        int capacity;
+        if (builder.capacity > 0) {
+            capacity = Integer.highestOneBit(builder.capacity - 1) << 1;
+        } else {
+            long slotBytes = Double.BYTES * (1L + 6L * particles);
+            capacity = Integer.highestOneBit((int) Math.max(2, Math.min(1 << 30, builder.capacityBytes / slotBytes)));
+        }
+        mask = capacity - 1;
+        times = new double[capacity];
+        slots = new double[capacity][6][particles];
+
+        thread = new Thread(this::drain, "trajectory-recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * TrajectoryRecorder Builder
+     */
+    public static class Builder {
+
+        private final TrajectoryWriter writer;
+        private int capacity;
+        private long capacityBytes = DEFAULT_CAPACITY_BYTES;
+        private BackPressure backPressure = BackPressure.BLOCK;
+        private int decimation = 2;
+
+        /**
+         * Constructs builder of recorder writing to writer, which it closes when closed
+         * @param writer trajectory writer
+         */
+        public Builder(TrajectoryWriter writer){
+            this.writer = writer;
+        }
+
+        /**
+         * Sets number of steps the ring holds (rounded up to a power of 2), overriding capacity in bytes
+         * @param capacity slots of ring
+         * @return this builder
+         */
+        public Builder setCapacity(int capacity){
+            if (capacity < 2 || capacity > 1 << 30) {
+                throw new IllegalArgumentException("Ring must hold from 2 to 2^30 steps.");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets size of the slots of ring in bytes, which holds as many steps as fit
+         * (rounded down to a power of 2, at least 2)
+         * @param capacityBytes bytes of slots of ring
+         * @return this builder
+         */
+        public Builder setCapacityBytes(long capacityBytes){
+            if (capacityBytes <= 0) {
+                throw new IllegalArgumentException("Ring must have a positive size.");
+            }
+            this.capacityBytes = capacityBytes;
+            return this;
+        }
+
+        /**
+         * Sets what is done with steps recorded while the ring is full
+         * @param backPressure back pressure policy
+         * @return this builder
+         */
+        public Builder setBackPressure(BackPressure backPressure){
+            this.backPressure = backPressure;
+            return this;
+        }
+
+        /**
+         * Sets n of policy DECIMATE, which keeps every n-th step while the ring is at least half full
+         * @param decimation n
+         * @return this builder
+         */
+        public Builder setDecimation(int decimation){
+            if (decimation < 2) {
+                throw new IllegalArgumentException("Decimation must keep fewer than every step.");
+            }
+            this.decimation = decimation;
+            return this;
+        }
+
+        /**
+         * Starts recorder and its writing thread
+         * @return recorder
+         */
+        public TrajectoryRecorder start(){
+            return new TrajectoryRecorder(this);
+        }
+    }
+
+    /**
+     * Gets number of steps the ring holds
+     * @return slots of ring
+     */
+    public int getCapacity(){
+        return mask + 1;
+    }
+
+    /**
+     * Gets number of steps offered to record
+     * @return steps offered
+     */
+    public long getOffered(){
+        return offered;
+    }
+
+    /**
+     * Gets number of steps dropped by the back pressure policy
+     * @return steps dropped
+     */
+    public long getDropped(){
+        return dropped;
+    }
+
+    /**
+     * Claims slot for the next step, or returns -1 if the step is dropped
+     */
+    private long claim() throws IOException {
+        checkFailure();
+        if (closing) {
+            throw new IOException("Trajectory recorder is closed.");
+        }
+        long index = offered++;
+        long s = head.get();
+        long used = s - tail.get();
+        if (backPressure == BackPressure.DECIMATE && 2 * used >= mask + 1 && index % decimation != 0) {
+            dropped++;
+            return -1;
+        }
+        while (used > mask) {
+            if (backPressure != BackPressure.BLOCK) {
+                dropped++;
+                return -1;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+            checkFailure();
+            used = s - tail.get();
+        }
+        return s;
+    }
+
+    /**
+     * Publishes filled slot to the writer
+     */
+    private void publish(long s, double t){
+        times[(int) s & mask] = t;
+        head.lazySet(s + 1);
+    }
+
+    /**
+     * Records step from columns of positions and velocities (see TrajectoryWriter)
+     * @param t time
+     * @param x x of every particle
+     * @param y y of every particle
+     * @param z z of every particle
+     * @param vx vx of every particle
+     * @param vy vy of every particle
+     * @param vz vz of every particle
+     * @return true if the step is recorded, false if it is dropped
+     * @throws IOException if the writer has failed or the recorder is closed
+     */
+    public boolean record(double t, double[] x, double[] y, double[] z,
+                          double[] vx, double[] vy, double[] vz) throws IOException {
+        if (x.length != particles || y.length != particles || z.length != particles
+                || vx.length != particles || vy.length != particles || vz.length != particles) {
+            throw new IllegalArgumentException("Column must hold one value per particle.");
+        }
+        long s = claim();
+        if (s < 0) {
+            return false;
+        }
+        double[][] slot = slots[(int) s & mask];
+        System.arraycopy(x, 0, slot[0], 0, particles);
+        System.arraycopy(y, 0, slot[1], 0, particles);
+        System.arraycopy(z, 0, slot[2], 0, particles);
+        System.arraycopy(vx, 0, slot[3], 0, particles);
+        System.arraycopy(vy, 0, slot[4], 0, particles);
+        System.arraycopy(vz, 0, slot[5], 0, particles);
+        publish(s, t);
+        return true;
+    }
+
+    /**
+     * Records step from phase space state (see numerical.ODESystem)
+     * @param t time
+     * @param state x, y, z, vx, vy, vz of each particle in turn
+     * @return true if the step is recorded, false if it is dropped
+     * @throws IOException if the writer has failed or the recorder is closed
+     */
+    public boolean record(double t, double[] state) throws IOException {
+        if (state.length != 6 * particles) {
+            throw new IllegalArgumentException("State must hold 6 values per particle.");
+        }
+        long s = claim();
+        if (s < 0) {
+            return false;
+        }
+        double[][] slot = slots[(int) s & mask];
+        for (int c = 0; c < 6; c++) {
+            double[] column = slot[c];
+            for (int i = 0, j = c; i < particles; i++, j += 6) {
+                column[i] = state[j];
+            }
+        }
+        publish(s, t);
+        return true;
+    }
+
+    /**
+     * Records step from particle store
+     * @param t time
+     * @param store store of particles
+     * @return true if the step is recorded, false if it is dropped
+     * @throws IOException if the writer has failed or the recorder is closed
+     */
+    public boolean record(double t, ParticleStore store) throws IOException {
+        return record(t, store.x(), store.y(), store.z(), store.vx(), store.vy(), store.vz());
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable ex = failure;
+        if (ex != null) {
+            throw new IOException("Trajectory writer failed.", ex);
+        }
+    }
+
+    /**
+     * Writes published slots until closed and drained, or until the writer fails in any way,
+     * so that a blocked producer always sees the failure
+     */
+    private void drain(){
+        try {
+            while (true) {
+                long s = tail.get();
+                if (s == head.get()) {
+                    if (closing && s == head.get()) {
+                        return;
+                    }
+                    LockSupport.parkNanos(PARK_NANOS);
+                    continue;
+                }
+                int k = (int) s & mask;
+                double[][] slot = slots[k];
+                writer.write(times[k], slot[0], slot[1], slot[2], slot[3], slot[4], slot[5]);
+                tail.lazySet(s + 1);
+            }
+        } catch (Throwable ex) {
+            failure = ex;
+        }
+    }
+
+    /**
+     * Waits for every recorded step to be written, then closes the writer
+     * @throws IOException if the writer failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closing) {
+            return;
+        }
+        closing = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            checkFailure();
+        } finally {
+            writer.close();
+        }
+    }
+
+}
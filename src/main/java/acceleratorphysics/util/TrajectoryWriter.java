@@ -0,0 +1,352 @@
+package acceleratorphysics.util;
+
+import acceleratorphysics.particles.ParticleStore;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes the trajectories of many bodies to a file in chunks of steps. Each step is copied into
+ * direct buffers holding one column per coordinate, which are written to a FileChannel in one
+ * gathering write per chunk, so that recording costs a copy of the state per step.
+ *
+ * The file holds, big-endian,
+ *
+ *      header: int magic, int version, int particles, int columns (6), int chunkSteps, int 0,
+ *              long id of each particle,
+ *      chunks: int steps, int 0, double time of each step,
+ *              then for each of x, y, z, vx, vy, vz the value of every particle at every step,
+ *              in order step * particles + particle,
+ *      index:  for each chunk long offset, int steps, int 0, double time of first step,
+ *      footer: long offset of index, int chunks, int magic of index,
+ *
+ * and is read by TrajectoryReader. A writer is not safe for concurrent use.
+ */
+public class TrajectoryWriter implements Closeable, Flushable {
+
+    static final int MAGIC = 0x5452414A;       // "TRAJ"
+    static final int INDEX_MAGIC = 0x54494458; // "TIDX"
+    static final int VERSION = 1;
+    static final int COLUMNS = 6;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+    static final int CHUNK_HEADER_BYTES = 2 * Integer.BYTES;
+    static final int INDEX_ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES + Double.BYTES;
+    static final int FOOTER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Default size of the buffers of one chunk in bytes
+     */
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 23;
+
+    private final FileChannel channel;
+    private final int particles;
+    private final int chunkSteps;
+
+    private final ByteBuffer chunkHeader;
+    private final ByteBuffer time;
+    private final ByteBuffer[] columns;
+    private final DoubleBuffer timeView;
+    private final DoubleBuffer[] columnViews;
+    private final ByteBuffer[] gather;
+
+    private int steps;          // steps in current chunk
+    private long position;      // end of file
+    private long[] offsets = new long[16];
+    private int[] stepCounts = new int[16];
+    private double[] firstTimes = new double[16];
+    private int chunks;
+    private boolean closed;
+
+    private TrajectoryWriter(Builder builder) throws IOException {
+
+        particles = builder.particles;
+        long stepBytes = Double.BYTES * (1L + COLUMNS * (long) particles);
+        if (Double.BYTES * (long) particles > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many particles for one step of a column.");
+        }
+        int steps = (builder.chunkSteps > 0)
+                ? builder.chunkSteps
+                : (int) Math.max(1, builder.chunkBytes / stepBytes);
+        chunkSteps = (int) Math.min(steps, Integer.MAX_VALUE / (Double.BYTES * (long) particles));
+
+        chunkHeader = ByteBuffer.allocateDirect(CHUNK_HEADER_BYTES);
+        time = ByteBuffer.allocateDirect(Double.BYTES * chunkSteps);
+        timeView = time.asDoubleBuffer();
+        columns = new ByteBuffer[COLUMNS];
+        columnViews = new DoubleBuffer[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            columns[c] = ByteBuffer.allocateDirect(Double.BYTES * particles * chunkSteps);
+            columnViews[c] = columns[c].asDoubleBuffer();
+        }
+        gather = new ByteBuffer[2 + COLUMNS];
+
+        channel = FileChannel.open(builder.file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + Long.BYTES * particles);
+            header.putInt(MAGIC).putInt(VERSION).putInt(particles).putInt(COLUMNS).putInt(chunkSteps).putInt(0);
+            for (int i = 0; i < particles; i++) {
+                header.putLong(builder.ids == null ? i : builder.ids[i]);
+            }
+            header.flip();
+            writeFully(header);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * TrajectoryWriter Builder
+     */
+    public static class Builder {
+
+        private final Path file;
+        private final int particles;
+        private long[] ids;
+        private int chunkSteps;
+        private long chunkBytes = DEFAULT_CHUNK_BYTES;
+
+        /**
+         * Constructs builder of writer of file
+         * @param file trajectory file (created, or truncated)
+         * @param particles number of particles recorded at every step
+         */
+        public Builder(Path file, int particles){
+            if (particles <= 0) {
+                throw new IllegalArgumentException("Trajectory must hold at least one particle.");
+            }
+            this.file = file;
+            this.particles = particles;
+        }
+
+        /**
+         * Sets identifiers of particles (by default their indices)
+         * @param ids identifier of each particle
+         * @return this builder
+         */
+        public Builder setIds(long[] ids){
+            if (ids.length != particles) {
+                throw new IllegalArgumentException("Need one identifier per particle.");
+            }
+            this.ids = ids.clone();
+            return this;
+        }
+
+        /**
+         * Sets number of steps per chunk (by default as many as fit in setChunkBytes)
+         * @param chunkSteps steps per chunk
+         * @return this builder
+         */
+        public Builder setChunkSteps(int chunkSteps){
+            if (chunkSteps <= 0) {
+                throw new IllegalArgumentException("Chunk must hold at least one step.");
+            }
+            this.chunkSteps = chunkSteps;
+            return this;
+        }
+
+        /**
+         * Sets size of buffers of one chunk, from which the number of steps per chunk is chosen
+         * @param chunkBytes bytes per chunk
+         * @return this builder
+         */
+        public Builder setChunkBytes(long chunkBytes){
+            if (chunkBytes <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive.");
+            }
+            this.chunkBytes = chunkBytes;
+            return this;
+        }
+
+        public TrajectoryWriter open() throws IOException {
+            return new TrajectoryWriter(this);
+        }
+    }
+
+    /**
+     * Gets number of particles
+     * @return particles recorded at every step
+     */
+    public int getParticles(){
+        return particles;
+    }
+
+    /**
+     * Gets number of steps per chunk
+     * @return steps per chunk
+     */
+    public int getChunkSteps(){
+        return chunkSteps;
+    }
+
+    /**
+     * Appends step from columns of positions and velocities
+     * @param t time
+     * @param x x of every particle
+     * @param y y of every particle
+     * @param z z of every particle
+     * @param vx vx of every particle
+     * @param vy vy of every particle
+     * @param vz vz of every particle
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void write(double t, double[] x, double[] y, double[] z,
+                      double[] vx, double[] vy, double[] vz) throws IOException {
+        checkOpen();
+        int from = steps * particles;
+        timeView.put(steps, t);
+        put(0, from, x);
+        put(1, from, y);
+        put(2, from, z);
+        put(3, from, vx);
+        put(4, from, vy);
+        put(5, from, vz);
+        endStep(t);
+    }
+
+    /**
+     * Appends step from phase space state (see numerical.ODESystem)
+     * @param t time
+     * @param state x, y, z, vx, vy, vz of each particle in turn
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void write(double t, double[] state) throws IOException {
+        checkOpen();
+        if (state.length != COLUMNS * particles) {
+            throw new IllegalArgumentException("State must hold 6 values per particle.");
+        }
+        int from = steps * particles;
+        timeView.put(steps, t);
+        for (int c = 0; c < COLUMNS; c++) {
+            DoubleBuffer column = columnViews[c];
+            for (int i = 0, j = c; i < particles; i++, j += COLUMNS) {
+                column.put(from + i, state[j]);
+            }
+        }
+        endStep(t);
+    }
+
+    /**
+     * Appends step from particle store
+     * @param t time
+     * @param store store of particles
+     * @throws IOException if a full chunk cannot be written
+     */
+    public void write(double t, ParticleStore store) throws IOException {
+        write(t, store.x(), store.y(), store.z(), store.vx(), store.vy(), store.vz());
+    }
+
+    private void put(int c, int from, double[] values){
+        if (values.length != particles) {
+            throw new IllegalArgumentException("Column must hold one value per particle.");
+        }
+        DoubleBuffer column = columnViews[c];
+        column.position(from);
+        column.put(values, 0, particles);
+    }
+
+    private void endStep(double t) throws IOException {
+        if (steps == 0) {
+            if (chunks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * chunks);
+                stepCounts = Arrays.copyOf(stepCounts, 2 * chunks);
+                firstTimes = Arrays.copyOf(firstTimes, 2 * chunks);
+            }
+            firstTimes[chunks] = t;
+        }
+        if (++steps == chunkSteps) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Writes steps of current chunk as one chunk
+     */
+    private void writeChunk() throws IOException {
+        if (steps == 0) {
+            return;
+        }
+        chunkHeader.clear();
+        chunkHeader.putInt(steps).putInt(0).flip();
+        gather[0] = chunkHeader;
+        gather[1] = slice(time, Double.BYTES * steps);
+        for (int c = 0; c < COLUMNS; c++) {
+            gather[2 + c] = slice(columns[c], Double.BYTES * steps * particles);
+        }
+
+        offsets[chunks] = position;
+        stepCounts[chunks] = steps;
+        chunks++;
+
+        long bytes = 0;
+        for (ByteBuffer buffer : gather) {
+            bytes += buffer.remaining();
+        }
+        long end = position + bytes;
+        while (position < end) {
+            position += channel.write(gather);
+        }
+        steps = 0;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int bytes){
+        buffer.clear();
+        buffer.limit(bytes);
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Trajectory writer is closed.");
+        }
+    }
+
+    /**
+     * Writes steps not yet written as a chunk, which may then hold fewer than getChunkSteps() steps
+     * @throws IOException if the chunk cannot be written
+     */
+    @Override
+    public void flush() throws IOException {
+        checkOpen();
+        writeChunk();
+    }
+
+    /**
+     * Writes remaining steps and the index of chunks, and closes the file
+     * @throws IOException if the file cannot be completed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeChunk();
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate(INDEX_ENTRY_BYTES * chunks + FOOTER_BYTES);
+            for (int k = 0; k < chunks; k++) {
+                index.putLong(offsets[k]).putInt(stepCounts[k]).putInt(0).putDouble(firstTimes[k]);
+            }
+            index.putLong(indexOffset).putInt(chunks).putInt(INDEX_MAGIC).flip();
+            writeFully(index);
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+}
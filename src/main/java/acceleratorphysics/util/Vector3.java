@@ -81,7 +81,7 @@ public class Vector3 {
      * @return this - v
      */
     public Vector3 subtract(Vector3 v){
-        return add(v.scale(-1D));
+        return new Vector3(this.x - v.x, this.y - v.y, this.z - v.z);
     }
 
     /**
@@ -7,6 +7,7 @@ import java.io.IOException;
 
 /**
  * Reads Vector3 data from a binary file.
+ * For random access to large files see MappedVectorReader.
  */
 public class VectorReader implements Closeable {
 
@@ -24,11 +25,29 @@ public class VectorReader implements Closeable {
         );
     }
 
+    /**
+     * Skips vectors, fewer if the end is reached first
+     * @param n vectors to skip
+     * @return vectors skipped
+     * @throws IOException if the stream cannot be read
+     */
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            int bytes = inputStream.skipBytes(24);
+            if (bytes < 24) {
+                break;
+            }
+            skipped++;
+        }
+        return skipped;
+    }
+
     public void close() throws IOException{
         inputStream.close();
     }
 
-    // TODO:  skip vector, mark, reset. (see DataInputStream)
+    // TODO:  mark, reset. (see DataInputStream)
 
 }
 
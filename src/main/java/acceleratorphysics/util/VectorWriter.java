@@ -1,5 +1,6 @@
 package acceleratorphysics.util;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
@@ -9,7 +10,8 @@ import java.io.OutputStream;
 
 
 /**
- * Writes Vector3 data to a binary file
+ * Writes Vector3 data to a binary file (buffered, so flush or close to complete it).
+ * For the trajectories of many particles see TrajectoryWriter.
  */
 public class VectorWriter implements Closeable, Flushable {
 
@@ -17,7 +19,7 @@ public class VectorWriter implements Closeable, Flushable {
     private int vectorsWritten;
 
     public VectorWriter(OutputStream outputStream) {
-        this.outputStream = new DataOutputStream(outputStream);
+        this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream));
     }
 
     public void close() throws IOException {
@@ -0,0 +1,58 @@
+package acceleratorphysics;
+
+import acceleratorphysics.fields.EMField;
+import acceleratorphysics.fields.Superimposed;
+import acceleratorphysics.fields.Type;
+import acceleratorphysics.fields.Uniform;
+import acceleratorphysics.numerical.IVPSolver;
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ChargedParticle;
+import acceleratorphysics.particles.Particle;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static acceleratorphysics.util.Vector3Test.assertVectorsEqual;
+
+public class BunchAcceleratorTest {
+
+    private static final int N = 8;
+    private static final double h = 1E-9;
+
+    private static Random random = new Random();
+
+    /**
+     * Tests the acceleration of each particle after a step is that at the state it was advanced to,
+     * also when the numerical method evaluates no stage there
+     * @throws Exception
+     */
+    @Test
+    public void acceleration() throws Exception {
+        ChargedBunch bunch = ParticleFactory.Newtonian.protonBunch(State.zero(), N);
+        ParticleStore store = bunch.getStore();
+        for (int i = 0; i < N; i++) {
+            store.x()[i] = 1E-3 * random.nextGaussian();
+            store.y()[i] = 1E-3 * random.nextGaussian();
+            store.z()[i] = 1E-3 * random.nextGaussian();
+            store.vx()[i] = 1E5 * random.nextGaussian();
+            store.vy()[i] = 1E5 * random.nextGaussian();
+            store.vz()[i] = 1E5 * random.nextGaussian();
+        }
+        EMField external = new Uniform(Type.MAGNETIC, new Vector3(0, 0, 1));
+
+        new BunchAccelerator(bunch, external).solve(IVPSolver.euler(h), 3 * h - h / 2);
+
+        EMField field = new Superimposed(bunch.getField(), external);
+        for (Particle p : bunch.getParticles()) {
+            ChargedParticle particle = (ChargedParticle) p;
+            Vector3 force = field.lorentzForce(particle.getCharge(), particle.getVelocity(), particle.getPosition(), 3 * h);
+            Vector3 expected = particle.getAcceleration(force);
+            assertVectorsEqual(expected, particle.getAcceleration(), 1E-12 * expected.norm());
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import acceleratorphysics.util.Vector3Test;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BarnesHutTest {
+
+    private static final int N = 500;
+    private static final double K = 1 / (4 * Math.PI * 8.854187817E-12);
+
+    private static Random random = new Random();
+    private static ParticleStore store;
+
+    /**
+     * Direct summation of Coulomb field of store at r
+     */
+    private static Vector3 coulomb(Vector3 r){
+        Vector3 E = Vector3.ZERO;
+        for (int i = 0; i < store.size(); i++) {
+            Vector3 d = r.subtract(store.getPosition(i));
+            double norm = d.norm();
+            if (norm == 0) continue;
+            E = E.add(d.scale(K * store.charge()[i] / (norm * norm * norm)));
+        }
+        return E;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        store = ParticleFactory.Newtonian.protonBunch(State.zero(), N).getStore();
+        for (int i = 0; i < N; i++) {
+            store.x()[i] = random.nextGaussian();
+            store.y()[i] = random.nextGaussian();
+            store.z()[i] = 3 * random.nextGaussian();
+        }
+    }
+
+    @Test
+    public void e_exact() throws Exception {
+        BarnesHut field = new BarnesHut(store, 0);
+        for (int i = 0; i < 10; i++) {
+            Vector3 r = store.getPosition(i);
+            Vector3 expected = coulomb(r);
+            Vector3Test.assertVectorsEqual(expected, field.E(r, 0), 1E-9 * expected.norm());
+        }
+    }
+
+    @Test
+    public void e_approximate() throws Exception {
+        BarnesHut field = new BarnesHut(store, 0.5);
+        for (int i = 0; i < 10; i++) {
+            Vector3 r = store.getPosition(i);
+            Vector3 expected = coulomb(r);
+            assertEquals(0, field.E(r, 0).subtract(expected).norm(), 0.05 * expected.norm());
+        }
+    }
+
+    /**
+     * Tests a cell containing the point is opened however far its centre of charge is:
+     * a charge next to the point, with the rest clustered at the far corner of the tree
+     * @throws Exception
+     */
+    @Test
+    public void e_containing() throws Exception {
+        for (int i = 0; i < N; i++) {
+            store.x()[i] = 1 + 1E-3 * random.nextGaussian();
+            store.y()[i] = 1 + 1E-3 * random.nextGaussian();
+            store.z()[i] = 1 + 1E-3 * random.nextGaussian();
+        }
+        store.x()[0] = store.y()[0] = store.z()[0] = 0;
+        store.x()[1] = 1E-3;
+        store.y()[1] = store.z()[1] = 0;
+        BarnesHut field = new BarnesHut(store, 0.9);
+        Vector3 r = store.getPosition(0);
+        Vector3 expected = coulomb(r);
+        assertEquals(0, field.E(r, 0).subtract(expected).norm(), 0.05 * expected.norm());
+    }
+
+    @Test
+    public void addFields() throws Exception {
+        BarnesHut field = new BarnesHut(store, 0.5);
+        double[] ex = new double[N], ey = new double[N], ez = new double[N];
+        double[] bx = new double[N], by = new double[N], bz = new double[N];
+        field.addFields(0, store.x(), store.y(), store.z(), ex, ey, ez, bx, by, bz, 0, N);
+        for (int i = 0; i < N; i += 50) {
+            Vector3Test.assertVectorsEqual(field.E(store.getPosition(i), 0), new Vector3(ex[i], ey[i], ez[i]), 0);
+            assertEquals(0, bx[i], 0);
+        }
+    }
+
+    @Test
+    public void b() throws Exception {
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, new BarnesHut(store, 0.5).B(Vector3.ZERO, 0), 0);
+    }
+
+    @Test
+    public void update() throws Exception {
+        BarnesHut field = new BarnesHut(store, 0);
+        for (int i = 0; i < N; i++) {
+            store.x()[i] += 10;
+        }
+        field.update();
+        Vector3 r = store.getPosition(0);
+        Vector3 expected = coulomb(r);
+        Vector3Test.assertVectorsEqual(expected, field.E(r, 0), 1E-9 * expected.norm());
+    }
+
+    @Test
+    public void coincident() throws Exception {
+        for (int i = 0; i < N; i++) {
+            store.x()[i] = 0;
+            store.y()[i] = 0;
+            store.z()[i] = 0;
+        }
+        BarnesHut field = new BarnesHut(store, 0.5);
+        Vector3 r = Vector3.I;
+        Vector3Test.assertVectorsEqual(coulomb(r), field.E(r, 0), 1E-9 * coulomb(r).norm());
+    }
+
+}
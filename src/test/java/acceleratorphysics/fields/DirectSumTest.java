@@ -0,0 +1,99 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import acceleratorphysics.util.Vector3Test;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DirectSumTest {
+
+    private static final int N = 100;
+    private static final double K = 1 / (4 * Math.PI * 8.854187817E-12);
+
+    private static Random random = new Random();
+    private static ParticleStore store;
+
+    /**
+     * Softened Coulomb field of store at r
+     */
+    private static Vector3 coulomb(Vector3 r, double softening){
+        Vector3 E = Vector3.ZERO;
+        for (int i = 0; i < store.size(); i++) {
+            Vector3 d = r.subtract(store.getPosition(i));
+            double r2 = d.dot(d) + softening * softening;
+            if (r2 == 0) continue;
+            E = E.add(d.scale(K * store.charge()[i] / Math.pow(r2, 1.5)));
+        }
+        return E;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        store = ParticleFactory.Newtonian.protonBunch(State.zero(), N).getStore();
+        for (int i = 0; i < N; i++) {
+            store.x()[i] = random.nextGaussian();
+            store.y()[i] = random.nextGaussian();
+            store.z()[i] = random.nextGaussian();
+        }
+    }
+
+    @Test
+    public void e() throws Exception {
+        DirectSum field = new DirectSum(store);
+        for (int i = 0; i < 10; i++) {
+            Vector3 r = (i % 2 == 0) ? store.getPosition(i) : Vector3Test.randomVector();
+            Vector3 expected = coulomb(r, 0);
+            Vector3Test.assertVectorsEqual(expected, field.E(r, 0), 1E-12 * expected.norm());
+        }
+    }
+
+    @Test
+    public void e_softened() throws Exception {
+        DirectSum field = new DirectSum(store, 0.1);
+        Vector3 r = store.getPosition(0);
+        Vector3 expected = coulomb(r, 0.1);
+        Vector3Test.assertVectorsEqual(expected, field.E(r, 0), 1E-12 * expected.norm());
+    }
+
+    @Test
+    public void e_inverseSquare() throws Exception {
+        ParticleStore pair = ParticleFactory.Newtonian.protonBunch(State.zero(), 1).getStore();
+        DirectSum field = new DirectSum(pair);
+        double q = pair.charge()[0];
+        Vector3Test.assertVectorsEqual(Vector3.I.scale(K * q / 4), field.E(Vector3.I.scale(2), 0), 1E-12 * K * q);
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, field.E(Vector3.ZERO, 0), 0);
+    }
+
+    @Test
+    public void potentialEnergy() throws Exception {
+        double expected = 0;
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < i; j++) {
+                double r = store.getPosition(i).subtract(store.getPosition(j)).norm();
+                expected += K * store.charge()[i] * store.charge()[j] / r;
+            }
+        }
+        assertEquals(expected, DirectSum.potentialEnergy(store), 1E-12 * expected);
+    }
+
+    @Test
+    public void addFields() throws Exception {
+        DirectSum field = new DirectSum(store, 0.1);
+        double[] ex = new double[N], ey = new double[N], ez = new double[N];
+        double[] bx = new double[N], by = new double[N], bz = new double[N];
+        field.addFields(0, store.x(), store.y(), store.z(), ex, ey, ez, bx, by, bz, 0, N);
+        for (int i = 0; i < N; i++) {
+            Vector3 expected = field.E(store.getPosition(i), 0);
+            Vector3Test.assertVectorsEqual(expected, new Vector3(ex[i], ey[i], ez[i]), 1E-12 * expected.norm());
+            Vector3Test.assertVectorsEqual(Vector3.ZERO, new Vector3(bx[i], by[i], bz[i]), 0);
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+import acceleratorphysics.util.Vector3Test;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FieldMapTest {
+
+    private static final double TOL = 1E-10;
+    private static final Random random = new Random();
+
+    private static final Vector3 ORIGIN = new Vector3(-1, -2, 0.5);
+    private static final int N = 9;
+    private static final double H = 0.25;
+
+    /**
+     * E linear in r, B quadratic in r
+     */
+    private static final EMField analytic = new EMField() {
+        @Override
+        protected Vector3 E(Vector3 r, double t) {
+            return new Vector3(1 + 2 * r.getX() - r.getZ(), 3 * r.getY(), r.getX() + r.getY() + r.getZ());
+        }
+
+        @Override
+        protected Vector3 B(Vector3 r, double t) {
+            return new Vector3(r.getX() * r.getY(), r.getZ() * r.getZ() - 1, r.getX() * r.getX() + 2 * r.getY() * r.getZ());
+        }
+    };
+
+    private static FieldMap.Builder builder;
+
+    @Before
+    public void setUp() throws Exception {
+        builder = new FieldMap.Builder(N, N, N).setOrigin(ORIGIN).setSpacing(H, H, H);
+    }
+
+    /**
+     * Random point in the grid, at least margin cells from its boundary
+     */
+    private static Vector3 inside(int margin){
+        double span = (N - 1 - 2 * margin) * H;
+        return ORIGIN.add(Vector3.ONES.scale(margin * H))
+                .add(new Vector3(random.nextDouble(), random.nextDouble(), random.nextDouble()).scale(span));
+    }
+
+    @Test
+    public void trilinear() throws Exception {
+        FieldMap map = builder.build().sample(analytic, 0);
+        for (int n = 0; n < 20; n++) {
+            Vector3 r = inside(0);
+            Vector3Test.assertVectorsEqual(analytic.E(r, 0), map.E(r, 0), TOL);
+        }
+    }
+
+    @Test
+    public void trilinear_nodes() throws Exception {
+        FieldMap map = builder.build().sample(analytic, 0);
+        Vector3 r = ORIGIN.add(new Vector3(3, 8, 5).scale(H));
+        Vector3Test.assertVectorsEqual(analytic.B(r, 0), map.B(r, 0), TOL);
+    }
+
+    @Test
+    public void tricubic() throws Exception {
+        FieldMap map = builder.setInterpolation(FieldMap.Interpolation.TRICUBIC).build().sample(analytic, 0);
+        for (int n = 0; n < 20; n++) {
+            Vector3 r = inside(1);
+            Vector3Test.assertVectorsEqual(analytic.E(r, 0), map.E(r, 0), TOL);
+            Vector3Test.assertVectorsEqual(analytic.B(r, 0), map.B(r, 0), TOL);
+        }
+    }
+
+    @Test
+    public void outside() throws Exception {
+        FieldMap map = builder.build().sample(analytic, 0);
+        Vector3 r = ORIGIN.subtract(Vector3.I.scale(1E-3));
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, map.E(r, 0), 0);
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, map.B(r, 0), 0);
+    }
+
+    @Test
+    public void harmonic() throws Exception {
+        double omega = random.nextDouble(), phi = random.nextDouble(), t = random.nextDouble();
+        FieldMap map = builder.setHarmonic(omega, phi).build().sample(analytic, 0);
+        Vector3 r = inside(0);
+        Vector3Test.assertVectorsEqual(analytic.E(r, 0).scale(Math.sin(omega * t + phi)), map.E(r, t), TOL);
+    }
+
+    @Test
+    public void lorentzForce() throws Exception {
+        FieldMap map = builder.setInterpolation(FieldMap.Interpolation.TRICUBIC).build().sample(analytic, 0);
+        Vector3 r = inside(0);
+        Vector3 v = Vector3Test.randomVector();
+        double q = random.nextDouble();
+        Vector3 expected = v.cross(map.B(r, 0)).add(map.E(r, 0)).scale(q);
+        Vector3Test.assertVectorsEqual(expected, map.lorentzForce(q, v, r, 0), TOL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void size() throws Exception {
+        new FieldMap.Builder(1, N, N);
+    }
+
+}
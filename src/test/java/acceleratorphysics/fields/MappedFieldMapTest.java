@@ -0,0 +1,168 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+import acceleratorphysics.util.Vector3Test;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MappedFieldMapTest {
+
+    private static final double TOL = 1E-12;
+    private static final Random random = new Random();
+
+    private static final Vector3 ORIGIN = new Vector3(-1, -2, 0.5);
+    private static final int NX = 9, NY = 6, NZ = 11; // partial tiles along every axis
+    private static final double H = 0.25;
+    private static final int TILE = 4;
+
+    private static final EMField analytic = new EMField() {
+        @Override
+        protected Vector3 E(Vector3 r, double t) {
+            return new Vector3(Math.sin(r.getX()), r.getY() * r.getZ(), Math.exp(-r.getZ()));
+        }
+
+        @Override
+        protected Vector3 B(Vector3 r, double t) {
+            return new Vector3(r.getX() * r.getY(), Math.cos(r.getZ()), r.getX() - r.getY());
+        }
+    };
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("fieldmap", ".fmap");
+        MappedFieldMap.write(file, analytic, 0, NX, NY, NZ, ORIGIN, new Vector3(H, H, H), TILE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Random point in the grid or slightly outside it
+     */
+    private static Vector3 point(){
+        return ORIGIN.add(new Vector3(
+                (random.nextDouble() * 1.1 - 0.05) * (NX - 1) * H,
+                (random.nextDouble() * 1.1 - 0.05) * (NY - 1) * H,
+                (random.nextDouble() * 1.1 - 0.05) * (NZ - 1) * H));
+    }
+
+    /**
+     * Compares mapped field map with field map on the heap sampled from the same field
+     */
+    private void compare(FieldMap.Interpolation interpolation) throws IOException {
+        FieldMap expected = new FieldMap.Builder(NX, NY, NZ).setOrigin(ORIGIN).setSpacing(H, H, H)
+                .setInterpolation(interpolation).build().sample(analytic, 0);
+        MappedFieldMap map = new MappedFieldMap.Builder(file).setInterpolation(interpolation)
+                .setCachedTiles(2).open();
+        for (int n = 0; n < 200; n++) {
+            Vector3 r = point();
+            Vector3Test.assertVectorsEqual(expected.E(r, 0), map.E(r, 0), TOL);
+            Vector3Test.assertVectorsEqual(expected.B(r, 0), map.B(r, 0), TOL);
+        }
+    }
+
+    @Test
+    public void trilinear() throws Exception {
+        compare(FieldMap.Interpolation.TRILINEAR);
+    }
+
+    @Test
+    public void tricubic() throws Exception {
+        compare(FieldMap.Interpolation.TRICUBIC);
+    }
+
+    @Test
+    public void nodes() throws Exception {
+        MappedFieldMap map = new MappedFieldMap.Builder(file).open();
+        Vector3 r = ORIGIN.add(new Vector3(NX - 1, 4, 7).scale(H));
+        Vector3Test.assertVectorsEqual(analytic.E(r, 0), map.E(r, 0), TOL);
+        Vector3Test.assertVectorsEqual(analytic.B(r, 0), map.B(r, 0), TOL);
+    }
+
+    @Test
+    public void harmonic() throws Exception {
+        double omega = random.nextDouble(), phi = random.nextDouble(), t = random.nextDouble();
+        MappedFieldMap map = new MappedFieldMap.Builder(file).open();
+        MappedFieldMap scaled = new MappedFieldMap.Builder(file).setHarmonic(omega, phi).open();
+        Vector3 r = point();
+        Vector3Test.assertVectorsEqual(map.E(r, 0).scale(Math.sin(omega * t + phi)), scaled.E(r, t), TOL);
+    }
+
+    /**
+     * Tests threads evaluating at once through a cache much smaller than the map agree with the heap field map
+     */
+    @Test
+    public void concurrent() throws Exception {
+        FieldMap expected = new FieldMap.Builder(NX, NY, NZ).setOrigin(ORIGIN).setSpacing(H, H, H)
+                .build().sample(analytic, 0);
+        MappedFieldMap map = new MappedFieldMap.Builder(file).setCachedTiles(3).open();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> {
+                    Random random = new Random();
+                    double[] eb = new double[6];
+                    for (int n = 0; n < 2000; n++) {
+                        Vector3 r = ORIGIN.add(new Vector3(
+                                random.nextDouble() * (NX - 1) * H,
+                                random.nextDouble() * (NY - 1) * H,
+                                random.nextDouble() * (NZ - 1) * H));
+                        map.fields(r.getX(), r.getY(), r.getZ(), 0, eb);
+                        Vector3Test.assertVectorsEqual(expected.E(r, 0), new Vector3(eb[0], eb[1], eb[2]), TOL);
+                        Vector3Test.assertVectorsEqual(expected.B(r, 0), new Vector3(eb[3], eb[4], eb[5]), TOL);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests a tile size which is not a power of two (zero) is rejected when the file is opened
+     */
+    @Test(expected = IOException.class)
+    public void invalidTileSize() throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 0), 5 * Integer.BYTES);
+        }
+        new MappedFieldMap.Builder(file).open();
+    }
+
+    @Test(expected = IOException.class)
+    public void notFieldMap() throws Exception {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < 100; i++) {
+                out.writeInt(i);
+            }
+        }
+        new MappedFieldMap.Builder(file).open();
+    }
+
+}
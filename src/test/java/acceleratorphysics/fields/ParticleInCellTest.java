@@ -0,0 +1,75 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import acceleratorphysics.util.Vector3Test;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParticleInCellTest {
+
+    private static final int N = 20000;
+
+    private static ParticleStore store;
+    private static BarnesHut direct;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(1); // fixed bunch: the direct sum carries its own sampling noise
+        store = ParticleFactory.Newtonian.protonBunch(State.zero(), N).getStore();
+        for (int i = 0; i < N; i++) {
+            store.x()[i] = random.nextGaussian();
+            store.y()[i] = random.nextGaussian();
+            store.z()[i] = random.nextGaussian();
+        }
+        direct = new BarnesHut(store, 0, 0.05);
+    }
+
+    @Test
+    public void e_inside() throws Exception {
+        ParticleInCell pic = new ParticleInCell(store, 32);
+        for (Vector3 r : new Vector3[]{Vector3.I, Vector3.J.scale(-1.5), new Vector3(1, 1, 1)}) {
+            Vector3 expected = direct.E(r, 0);
+            assertEquals(0, pic.E(r, 0).subtract(expected).norm(), 0.1 * expected.norm());
+        }
+    }
+
+    @Test
+    public void e_outside() throws Exception {
+        ParticleInCell pic = new ParticleInCell(store, 16);
+        Vector3 r = Vector3.K.scale(100);
+        Vector3 expected = direct.E(r, 0);
+        assertEquals(0, pic.E(r, 0).subtract(expected).norm(), 0.01 * expected.norm());
+    }
+
+    @Test
+    public void b() throws Exception {
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, new ParticleInCell(store, 8).B(Vector3.ZERO, 0), 0);
+    }
+
+    @Test
+    public void addFields() throws Exception {
+        ParticleInCell pic = new ParticleInCell(store, 16);
+        double[] x = {store.x()[0], 0.5, 0}, y = {store.y()[0], -0.25, 0}, z = {store.z()[0], 1, 100};
+        double[] ex = new double[3], ey = new double[3], ez = new double[3];
+        double[] bx = new double[3], by = new double[3], bz = new double[3];
+        pic.addFields(0, x, y, z, ex, ey, ez, bx, by, bz, 0, 3);
+        for (int i = 0; i < 3; i++) {
+            Vector3 expected = pic.E(new Vector3(x[i], y[i], z[i]), 0);
+            Vector3Test.assertVectorsEqual(expected, new Vector3(ex[i], ey[i], ez[i]), 0);
+            assertEquals(0, bx[i], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void gridSize() throws Exception {
+        new ParticleInCell(store, 12);
+    }
+
+}
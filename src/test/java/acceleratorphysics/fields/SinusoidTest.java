@@ -191,4 +191,21 @@ public class SinusoidTest {
         Vector3Test.assertVectorsEqual(Vector3.ZERO,sinusoidB.E(r,t),TOL);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void fields() throws Exception {
+        Vector3 r = centre.add(new Vector3(
+                random.nextDouble()*xbound,
+                random.nextDouble()*ybound,
+                random.nextDouble()*zbound));
+        double[] eb = new double[6];
+        sinusoidB.fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, new Vector3(eb[0], eb[1], eb[2]), TOL);
+        Vector3Test.assertVectorsEqual(expected, new Vector3(eb[3], eb[4], eb[5]), TOL);
+
+        r = centre.add(Vector3.I.scale((1+random.nextDouble())*xbound));
+        sinusoidE.fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        for (double c : eb) {
+            assertEquals(0, c, 0);
+        }
+    }
+}
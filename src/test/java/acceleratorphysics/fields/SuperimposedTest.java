@@ -7,6 +7,8 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class SuperimposedTest {
@@ -71,4 +73,96 @@ public class SuperimposedTest {
         Vector3Test.assertVectorsEqual(B1.add(B2), superimposed.B(r,t), TOL);
     }
 
-}
\ No newline at end of file
+    /**
+     * Line of cavities along z plus a uniform field, compared with summing every field
+     */
+    @Test
+    public void indexed() throws Exception {
+        Random random = new Random(1);
+        EMField[] fields = new EMField[101];
+        fields[0] = new Uniform(Type.MAGNETIC, Vector3.K);
+        for (int i = 1; i < fields.length; i++) {
+            fields[i] = new Sinusoid.Builder((i % 2 == 0) ? Type.ELECTRIC : Type.MAGNETIC)
+                    .setCavityCentre(new Vector3(0, 0, i))
+                    .setLX(0.5).setLY(0.5).setLZ(0.2 + random.nextDouble())
+                    .setDirection(Vector3Test.randomVector())
+                    .setAmplitude(1)
+                    .setFrequency(1)
+                    .build();
+        }
+        Superimposed indexed = new Superimposed(fields);
+        for (int n = 0; n < 1000; n++) {
+            Vector3 r = new Vector3(random.nextDouble() - 0.5, random.nextDouble() - 0.5, 102 * random.nextDouble())
+                    .scale(1.2);
+            Vector3 E = Vector3.ZERO, B = Vector3.ZERO;
+            for (EMField field : fields) {
+                E = E.add(field.E(r, t));
+                B = B.add(field.B(r, t));
+            }
+            Vector3Test.assertVectorsEqual(E, indexed.E(r, t), TOL);
+            Vector3Test.assertVectorsEqual(B, indexed.B(r, t), TOL);
+            Vector3Test.assertVectorsEqual(Vector3.I.cross(B).add(E), indexed.lorentzForce(1, Vector3.I, r, t), TOL);
+        }
+    }
+
+    /**
+     * Bulk evaluation over points of which some are in no cavity, compared with evaluating each point
+     */
+    @Test
+    public void addFields() throws Exception {
+        addFields(3);   // few cavities, evaluated over all points
+        addFields(20);  // many cavities, looked up by each point
+    }
+
+    private void addFields(double spread) throws Exception {
+        Random random = new Random(2);
+        EMField[] fields = new EMField[21];
+        fields[0] = new Uniform(Type.ELECTRIC, Vector3.I);
+        for (int i = 1; i < fields.length; i++) {
+            fields[i] = new Sinusoid.Builder((i % 2 == 0) ? Type.ELECTRIC : Type.MAGNETIC)
+                    .setCavityCentre(new Vector3(0, 0, i))
+                    .setLX(0.5).setLY(0.5).setLZ(0.3)
+                    .setDirection(Vector3Test.randomVector())
+                    .setAmplitude(1)
+                    .setFrequency(1)
+                    .build();
+        }
+        Superimposed indexed = new Superimposed(fields);
+        int n = 100, from = 10;
+        double[] x = new double[n], y = new double[n], z = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = random.nextDouble() - 0.5;
+            y[i] = random.nextDouble() - 0.5;
+            z[i] = 0.5 + spread * random.nextDouble();
+        }
+        double[] ex = new double[n], ey = new double[n], ez = new double[n];
+        double[] bx = new double[n], by = new double[n], bz = new double[n];
+        indexed.addFields(t, x, y, z, ex, ey, ez, bx, by, bz, from, n);
+        for (int i = 0; i < n; i++) {
+            Vector3 r = new Vector3(x[i], y[i], z[i]);
+            Vector3 E = (i < from) ? Vector3.ZERO : indexed.E(r, t);
+            Vector3 B = (i < from) ? Vector3.ZERO : indexed.B(r, t);
+            Vector3Test.assertVectorsEqual(E, new Vector3(ex[i], ey[i], ez[i]), TOL);
+            Vector3Test.assertVectorsEqual(B, new Vector3(bx[i], by[i], bz[i]), TOL);
+        }
+    }
+
+    @Test
+    public void support() throws Exception {
+        EMField a = new Sinusoid.Builder(Type.ELECTRIC).setLX(1).setLY(1).setLZ(1).build();
+        EMField b = new Sinusoid.Builder(Type.ELECTRIC).setCavityCentre(new Vector3(0, 0, 5))
+                .setLX(1).setLY(2).setLZ(1).build();
+        Support support = new Superimposed(a, b).getSupport();
+        Vector3Test.assertVectorsEqual(new Vector3(-1, -2, -1), support.getMin(), 0);
+        Vector3Test.assertVectorsEqual(new Vector3(1, 2, 6), support.getMax(), 0);
+        assertFalse(superimposed.getSupport().isBounded());
+    }
+
+    @Test
+    public void fields() throws Exception {
+        double[] eb = new double[6];
+        superimposed.fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        Vector3Test.assertVectorsEqual(E1.add(E2), new Vector3(eb[0], eb[1], eb[2]), TOL);
+        Vector3Test.assertVectorsEqual(B1.add(B2), new Vector3(eb[3], eb[4], eb[5]), TOL);
+    }
+}
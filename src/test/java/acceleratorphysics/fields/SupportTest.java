@@ -0,0 +1,38 @@
+package acceleratorphysics.fields;
+
+import acceleratorphysics.util.Vector3;
+import acceleratorphysics.util.Vector3Test;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SupportTest {
+
+    @Test
+    public void contains() throws Exception {
+        Support support = Support.around(Vector3.ONES, 1, 2, 3);
+        assertTrue(support.contains(new Vector3(2, -1, 4)));
+        assertFalse(support.contains(new Vector3(2, -1, 4.001)));
+        assertTrue(Support.EVERYWHERE.contains(new Vector3(1E300, -1E300, 0)));
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        assertTrue(Support.around(Vector3.ZERO, 1, 1, 1).isBounded());
+        assertFalse(Support.around(Vector3.ZERO, 1, Double.POSITIVE_INFINITY, 1).isBounded());
+        assertFalse(Support.EVERYWHERE.isBounded());
+    }
+
+    @Test
+    public void union() throws Exception {
+        Support union = new Support(Vector3.ZERO, Vector3.ONES).union(new Support(Vector3.ONES.scale(-1), Vector3.I));
+        Vector3Test.assertVectorsEqual(Vector3.ONES.scale(-1), union.getMin(), 0);
+        Vector3Test.assertVectorsEqual(Vector3.ONES, union.getMax(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unordered() throws Exception {
+        new Support(Vector3.ONES, Vector3.ZERO);
+    }
+
+}
@@ -56,5 +56,14 @@ public class UniformTest {
         Vector3Test.assertVectorsEqual(value, B.B(r,t), TOL);
     }
 
-
-}
\ No newline at end of file
+    @Test
+    public void fields() throws Exception {
+        double[] eb = new double[6];
+        E.fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        Vector3Test.assertVectorsEqual(value, new Vector3(eb[0], eb[1], eb[2]), TOL);
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, new Vector3(eb[3], eb[4], eb[5]), TOL);
+        B.fields(r.getX(), r.getY(), r.getZ(), t, eb);
+        Vector3Test.assertVectorsEqual(Vector3.ZERO, new Vector3(eb[0], eb[1], eb[2]), TOL);
+        Vector3Test.assertVectorsEqual(value, new Vector3(eb[3], eb[4], eb[5]), TOL);
+    }
+}
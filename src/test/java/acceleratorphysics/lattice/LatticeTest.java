@@ -0,0 +1,125 @@
+package acceleratorphysics.lattice;
+
+import acceleratorphysics.fields.Sinusoid;
+import acceleratorphysics.fields.Type;
+import acceleratorphysics.fields.Uniform;
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatticeTest {
+
+    private static final double TOL = 1E-9;
+    private static final double NEWTONIAN = Double.POSITIVE_INFINITY;
+
+    @Test
+    public void drift() throws Exception {
+        Lattice lattice = new Lattice.Builder().drift(1).drift(2).build();
+        double[] y = {0.1, -0.2, -1, 0.01, 0.02, 2};
+        double t = lattice.track(y, 5, 1, NEWTONIAN);
+        assertEquals(3, lattice.getLength(), 0);
+        assertEquals(5 + 4 / 2D, t, TOL);
+        assertArrayEquals(new double[]{0.12, -0.16, 3, 0.01, 0.02, 2}, y, TOL);
+    }
+
+    /**
+     * Tests dipole bends body on a circle of radius v / (qm B), exact at any length
+     * @throws Exception
+     */
+    @Test
+    public void dipole() throws Exception {
+        double radius = 2, length = 1.5;
+        Lattice lattice = new Lattice.Builder().dipole(length, Vector3.J.scale(0.5)).build();
+        double[] y = {0, 0, 0, 0, 0, 1};
+        double t = lattice.track(y, 0, 1, NEWTONIAN);
+        double angle = Math.asin(length / radius);
+        assertEquals(radius * angle, t, TOL);
+        assertEquals(-radius * (1 - Math.cos(angle)), y[0], TOL); // v x B = K x J = -I
+        assertEquals(length, y[2], 0);
+        assertEquals(1, Math.hypot(y[3], y[5]), TOL);
+    }
+
+    /**
+     * Tests dipole tracked exactly agrees with the same field tracked numerically
+     * @throws Exception
+     */
+    @Test
+    public void dipole_relativistic() throws Exception {
+        Vector3 B = new Vector3(0.2, 0.5, 0.1);
+        Lattice exact = new Lattice.Builder().drift(0.5).dipole(1, B).build();
+        Lattice numerical = new Lattice.Builder().setTimeStep(1E-4).drift(0.5)
+                .field(1, new Uniform(Type.MAGNETIC, B)).build();
+        double[] y1 = {0.1, 0, 0, 0, 0.1, 0.8}, y2 = y1.clone();
+        double t1 = exact.track(y1, 0, 1, 1), t2 = numerical.track(y2, 0, 1, 1);
+        assertEquals(t2, t1, 1E-6);
+        assertArrayEquals(y2, y1, 1E-6);
+    }
+
+    /**
+     * Tests dipole too strong to pass loses body
+     * @throws Exception
+     */
+    @Test
+    public void lost() throws Exception {
+        Lattice lattice = new Lattice.Builder().dipole(3, Vector3.J).drift(1).build();
+        double[] y = {0, 0, 0, 0, 0, 1};
+        assertTrue(Double.isNaN(lattice.track(y, 0, 1, NEWTONIAN)));
+    }
+
+    /**
+     * Tests quadrupole focuses a paraxial body as cos(k z), k^2 = qm g / vz, in x and as cosh in y
+     * @throws Exception
+     */
+    @Test
+    public void quadrupole() throws Exception {
+        double g = 0.25, length = 2;
+        Lattice lattice = new Lattice.Builder().setTimeStep(1E-3).quadrupole(length, g).build();
+        double[] y = {1E-4, 1E-4, 0, 0, 0, 1};
+        lattice.track(y, 0, 1, NEWTONIAN);
+        double k = Math.sqrt(g);
+        assertEquals(1E-4 * Math.cos(k * length), y[0], 1E-9);
+        assertEquals(1E-4 * Math.cosh(k * length), y[1], 1E-9);
+    }
+
+    /**
+     * Tests cavity accelerates along z by the work of its field
+     * @throws Exception
+     */
+    @Test
+    public void cavity() throws Exception {
+        Sinusoid cavity = new Sinusoid.Builder(Type.ELECTRIC)
+                .setCavityCentre(new Vector3(0, 0, 0.5))
+                .setLX(1).setLY(1).setLZ(0.5)
+                .setDirection(Vector3.K)
+                .setAmplitude(0.1)
+                .setPhase(Math.PI / 2) // constant in time
+                .build();
+        Lattice lattice = new Lattice.Builder().setTimeStep(1E-3).drift(1).cavity(1, cavity).drift(1).build();
+        double[] y = {0, 0, 0, 0, 0, 1};
+        lattice.track(y, 0, 1, NEWTONIAN);
+        assertEquals(3, y[2], 0);
+        assertEquals(Math.sqrt(1 + 2 * 0.1), y[5], 1E-9);
+    }
+
+    @Test
+    public void bunch() throws Exception {
+        ChargedBunch bunch = ParticleFactory.Newtonian.protonBunch(
+                State.zero().position(Vector3.K.scale(-1)).velocity(Vector3.K.scale(1E6)), 10);
+        Lattice lattice = new Lattice.Builder().drift(1).build();
+        double[] t = lattice.track(bunch, 0);
+        for (int i = 0; i < t.length; i++) {
+            assertEquals(2E-6, t[i], 1E-15);
+            assertEquals(1, bunch.getStore().z()[i], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void length() throws Exception {
+        new Lattice.Builder().drift(0);
+    }
+
+}
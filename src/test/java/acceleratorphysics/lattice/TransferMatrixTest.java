@@ -0,0 +1,109 @@
+package acceleratorphysics.lattice;
+
+import acceleratorphysics.particles.ChargedBunch;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.ParticleStore;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TransferMatrixTest {
+
+    private static final double TOL = 1E-9;
+    private static final double NEWTONIAN = Double.POSITIVE_INFINITY;
+
+    private static void assertMatricesEqual(TransferMatrix expected, TransferMatrix actual, double tol){
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < 6; j++) {
+                assertEquals("M[" + i + "][" + j + "]", expected.get(i, j), actual.get(i, j), tol);
+            }
+        }
+        assertEquals(expected.getLength(), actual.getLength(), TOL);
+    }
+
+    @Test
+    public void drift() throws Exception {
+        Lattice lattice = new Lattice.Builder().drift(1).drift(0.5).build();
+        assertMatricesEqual(TransferMatrix.drift(1.5, 1), lattice.transferMatrix(2, 0, 1, NEWTONIAN), 1E-6);
+    }
+
+    /**
+     * Tests derived map of a relativistic drift lets faster bodies pull ahead by L delta / gamma^2
+     * @throws Exception
+     */
+    @Test
+    public void drift_relativistic() throws Exception {
+        Lattice lattice = new Lattice.Builder().drift(2).build();
+        double gamma = 1 / Math.sqrt(1 - 0.8 * 0.8);
+        assertMatricesEqual(TransferMatrix.drift(2, gamma), lattice.transferMatrix(0.8, 0, 1, 1), 1E-6);
+    }
+
+    /**
+     * Tests map derived by tracking agrees with the product of analytic maps, k = qm g / v0
+     * @throws Exception
+     */
+    @Test
+    public void quadrupole() throws Exception {
+        double g = 0.5, v0 = 2;
+        Lattice lattice = new Lattice.Builder().setTimeStep(1E-4).drift(1).quadrupole(0.5, g).drift(1)
+                .quadrupole(0.5, -g).build();
+        TransferMatrix expected = TransferMatrix.drift(1, 1)
+                .then(TransferMatrix.quadrupole(0.5, g / v0, 1))
+                .then(TransferMatrix.drift(1, 1))
+                .then(TransferMatrix.quadrupole(0.5, -g / v0, 1));
+        TransferMatrix actual = lattice.transferMatrix(v0, 0, 1, NEWTONIAN);
+        assertMatricesEqual(expected, actual, 1E-6);
+        assertEquals(1, actual.getMomentumRatio(), TOL);
+        assertEquals(1, actual.determinant(), 1E-6);
+    }
+
+    @Test
+    public void then() throws Exception {
+        TransferMatrix quad = TransferMatrix.quadrupole(0.3, 2, 1);
+        assertMatricesEqual(quad, TransferMatrix.identity().then(quad), 0);
+        assertMatricesEqual(quad.then(quad).then(quad), quad.pow(3), TOL);
+        assertEquals(1, quad.pow(5).determinant(), TOL);
+        // two half drifts are one drift
+        assertMatricesEqual(TransferMatrix.drift(1, 3), TransferMatrix.drift(0.5, 3).pow(2), TOL);
+    }
+
+    @Test
+    public void thinLens() throws Exception {
+        double[] x = {1}, xp = {0}, y = {1}, yp = {0}, l = {0}, d = {0};
+        TransferMatrix.thinLens(2).then(TransferMatrix.drift(2, 1)).apply(x, xp, y, yp, l, d, 0, 1);
+        assertEquals(0, x[0], TOL);
+        assertEquals(2, y[0], TOL);
+    }
+
+    @Test
+    public void bunch() throws Exception {
+        double v0 = 1E6;
+        ChargedBunch bunch = ParticleFactory.Newtonian.protonBunch(
+                State.zero().velocity(Vector3.K.scale(v0)), 2);
+        ParticleStore store = bunch.getStore();
+        store.x()[0] = 1E-3;
+        store.z()[0] = 0.01;
+        store.vx()[1] = 1E3;
+        store.vz()[1] = 1.01 * v0;
+
+        TransferMatrix.drift(2, 1).apply(bunch, 0, v0);
+
+        assertEquals(1E-3, store.x()[0], TOL);
+        assertEquals(2.01, store.z()[0], TOL);
+        assertEquals(v0, store.vz()[0], 1E-6);
+        double xp = 1E3 / (1.01 * v0);
+        assertEquals(2 * xp, store.x()[1], TOL);
+        assertEquals(xp, store.vx()[1] / store.vz()[1], TOL);
+        assertEquals(Math.hypot(1E3, 1.01 * v0), Math.hypot(store.vx()[1], store.vz()[1]), 1E-6);
+        // faster by delta = |v| / v0 - 1, ahead by L delta
+        assertEquals(2 + 2 * (Math.hypot(1E3, 1.01 * v0) / v0 - 1), store.z()[1], TOL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void size() throws Exception {
+        new TransferMatrix(new double[5][6], 1);
+    }
+
+}
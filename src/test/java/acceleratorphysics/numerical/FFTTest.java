@@ -0,0 +1,79 @@
+package acceleratorphysics.numerical;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FFTTest {
+
+    private static final double TOL = 1E-10;
+    private static Random random = new Random();
+
+    @Test
+    public void inverse() throws Exception {
+        double[] re = new double[64], im = new double[64];
+        for (int i = 0; i < re.length; i++) {
+            re[i] = random.nextDouble();
+            im[i] = random.nextDouble();
+        }
+        double[] re0 = re.clone(), im0 = im.clone();
+
+        FFT.transform(re, im, 0, 1, 64, false);
+        FFT.transform(re, im, 0, 1, 64, true);
+
+        assertArrayEquals(re0, re, TOL);
+        assertArrayEquals(im0, im, TOL);
+    }
+
+    @Test
+    public void dft() throws Exception {
+        int n = 16;
+        double[] re = new double[n], im = new double[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = random.nextDouble();
+        }
+        double[] x = re.clone();
+
+        FFT.transform(re, im, 0, 1, n, false);
+
+        for (int k = 0; k < n; k++) {
+            double a = 0, b = 0;
+            for (int j = 0; j < n; j++) {
+                a += x[j] * Math.cos(-2 * Math.PI * j * k / n);
+                b += x[j] * Math.sin(-2 * Math.PI * j * k / n);
+            }
+            assertEquals(a, re[k], TOL);
+            assertEquals(b, im[k], TOL);
+        }
+    }
+
+    @Test
+    public void inverse3D() throws Exception {
+        int nx = 4, ny = 8, nz = 2;
+        double[] re = new double[nx * ny * nz], im = new double[nx * ny * nz];
+        for (int i = 0; i < re.length; i++) {
+            re[i] = random.nextDouble();
+        }
+        double[] re0 = re.clone();
+
+        FFT.transform3D(re, im, nx, ny, nz, false);
+        assertEquals(sum(re0), re[0], TOL); // zero frequency
+        FFT.transform3D(re, im, nx, ny, nz, true);
+
+        assertArrayEquals(re0, re, TOL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notPowerOfTwo() throws Exception {
+        FFT.transform(new double[6], new double[6], 0, 1, 6, false);
+    }
+
+    private static double sum(double[] x){
+        double s = 0;
+        for (double v : x) s += v;
+        return s;
+    }
+
+}
@@ -3,9 +3,14 @@ package acceleratorphysics.numerical;
 import acceleratorphysics.util.Vector3;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
 
 import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 
 public class IVPSolverTest {
 
@@ -87,7 +92,656 @@ public class IVPSolverTest {
         ivpStub = null;
     }
 
+    /**
+     * Harmonic oscillator y'' = -y in each component
+     */
+    private static final ODESystem oscillator = new ODESystem() {
+        @Override
+        public int dimension() {
+            return 6;
+        }
+
+        @Override
+        public void derivative(double t, double[] y, double[] dydt) {
+            for (int i = 0; i < 3; i++) {
+                dydt[i] = y[i + 3];
+                dydt[i + 3] = -y[i];
+            }
+        }
+    };
+
+    /**
+     * Steps oscillator from y = (1,1,1), y' = 0 through one period
+     * @param solver numerical method
+     * @return state after one period
+     */
+    private static double[] period(IVPSolver solver){
+        double[] y = {1, 1, 1, 0, 0, 0};
+        double[][] work = new double[solver.workBuffers()][y.length];
+        int steps = (int) Math.round(2 * Math.PI / solver.stepSize());
+        double t = 0;
+        for (int i = 0; i < steps; i++) {
+            solver.step(oscillator, t, y, work);
+            t += solver.stepSize();
+        }
+        return y;
+    }
+
+    /**
+     * Tests one step of euler method on flat state against y_1 = y_0 + h f(y_0)
+     * @throws Exception
+     */
+    @Test
+    public void euler_step() throws Exception {
+
+        double[] y = {1, 1, 1, 1, 1, 1};
+        IVPSolver euler = IVPSolver.euler(h);
+        euler.step(oscillator, 0, y, new double[euler.workBuffers()][y.length]);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1 + h, y[i], TOL);
+            assertEquals(1 - h, y[i + 3], TOL);
+        }
+    }
+
+    /**
+     * Tests Vector3 adapter dy(IVP) agrees with flat step for each built-in method
+     * @throws Exception
+     */
+    @Test
+    public void dy_adapter() throws Exception {
+
+        h = 1E-2;
+
+        for (IVPSolver solver : new IVPSolver[]{
+                IVPSolver.euler(h), IVPSolver.eulerCromer(h), IVPSolver.midpoint(h),
+                IVPSolver.velocityVerlet(h), IVPSolver.rungeKutta4(h), IVPSolver.positionLeapfrog(h),
+                IVPSolver.velocityLeapfrog(h), IVPSolver.forestRuth(h), IVPSolver.yoshida6(h)}) {
+
+            double[] y = new double[ivpStub.dimension()];
+            ivpStub.state(y);
+            double[] y0 = y.clone();
+
+            Vector3[] dy = solver.dy(ivpStub);
+            solver.step(ivpStub, ivpStub.t(), y, new double[solver.workBuffers()][y.length]);
+
+            for (int i = 0; i < dy.length; i++) {
+                assertEquals(solver.name(), y[3 * i] - y0[3 * i], dy[i].getX(), TOL);
+                assertEquals(solver.name(), y[3 * i + 1] - y0[3 * i + 1], dy[i].getY(), TOL);
+                assertEquals(solver.name(), y[3 * i + 2] - y0[3 * i + 2], dy[i].getZ(), TOL);
+            }
+        }
+    }
+
+    /**
+     * Tests global error of 4th order Runge-Kutta method over one period of oscillator
+     * @throws Exception
+     */
+    @Test
+    public void rungeKutta4_period() throws Exception {
+
+        double[] y = period(IVPSolver.rungeKutta4(2 * Math.PI / 1000));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, y[i], 1E-9);
+            assertEquals(0, y[i + 3], 1E-9);
+        }
+    }
+
+    /**
+     * Tests global error of second order methods over one period of oscillator
+     * @throws Exception
+     */
+    @Test
+    public void secondOrder_period() throws Exception {
+
+        for (IVPSolver solver : new IVPSolver[]{
+                IVPSolver.midpoint(2 * Math.PI / 1000),
+                IVPSolver.velocityVerlet(2 * Math.PI / 1000),
+                IVPSolver.positionLeapfrog(2 * Math.PI / 1000),
+                IVPSolver.velocityLeapfrog(2 * Math.PI / 1000)}) {
+
+            double[] y = period(solver);
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(solver.name(), 1, y[i], 1E-4);
+                assertEquals(solver.name(), 0, y[i + 3], 1E-4);
+            }
+        }
+    }
+
+    /**
+     * Returns error of solver after one period of oscillator
+     */
+    private static double periodError(IVPSolver solver){
+        double[] y = period(solver);
+        return Math.hypot(y[0] - 1, y[3]);
+    }
+
+    /**
+     * Tests composition methods converge at their order: halving the step divides the error by 2^order
+     * @throws Exception
+     */
+    @Test
+    public void composition_order() throws Exception {
+
+        double ratio = periodError(IVPSolver.forestRuth(2 * Math.PI / 50))
+                / periodError(IVPSolver.forestRuth(2 * Math.PI / 100));
+        assertEquals(16, ratio, 1);
+
+        ratio = periodError(IVPSolver.yoshida6(2 * Math.PI / 25))
+                / periodError(IVPSolver.yoshida6(2 * Math.PI / 50));
+        assertEquals(64, ratio, 4);
+    }
+
+    /**
+     * Tests energy error of composition methods stays bounded over a million steps of 1/12 period,
+     * at which 4th order Runge-Kutta loses the energy
+     * @throws Exception
+     */
+    @Test
+    public void composition_energy() throws Exception {
+
+        for (IVPSolver solver : new IVPSolver[]{
+                IVPSolver.forestRuth(0.5), IVPSolver.yoshida6(0.5), IVPSolver.rungeKutta4(0.5)}) {
+
+            double[] y = {1, 1, 1, 0, 0, 0};
+            double[][] work = new double[solver.workBuffers()][y.length];
+            double error = 0;
+            for (int i = 0; i < 1000000; i++) {
+                solver.step(oscillator, i * solver.stepSize(), y, work);
+                error = Math.max(error, Math.abs(y[0] * y[0] + y[3] * y[3] - 1));
+            }
+            if (solver.name().equals("RK4")) {
+                assertTrue(solver.name() + " " + error, error > 0.5);
+            } else {
+                assertTrue(solver.name() + " " + error, error < 1E-2);
+            }
+        }
+    }
+
+    /**
+     * Tests adaptive methods against exact solution of oscillator over one period
+     * @throws Exception
+     */
+    @Test
+    public void adaptive_period() throws Exception {
+
+        for (IVPSolver solver : new IVPSolver[]{
+                IVPSolver.dormandPrince(0.5, 1E-10, 1E-10),
+                IVPSolver.cashKarp(0.5, 1E-10, 1E-10)}) {
+
+            double[] y = {1, 1, 1, 0, 0, 0};
+            double[][] work = new double[solver.workBuffers()][y.length];
+            double t = 0;
+            int steps = 0;
+            while (t < 2 * Math.PI) {
+                t += solver.step(oscillator, t, y, work, 2 * Math.PI - t);
+                steps++;
+            }
+
+            assertEquals(solver.name(), 2 * Math.PI, t, TOL);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(solver.name(), 1, y[i], 1E-8);
+                assertEquals(solver.name(), 0, y[i + 3], 1E-8);
+            }
+            assertTrue(solver.name() + " took " + steps + " steps", steps < 1000);
+        }
+    }
+
+    /**
+     * Tests adaptive methods take the largest step through a drift, where the error estimate vanishes
+     * @throws Exception
+     */
+    @Test
+    public void adaptive_drift() throws Exception {
 
+        ODESystem drift = new ODESystem() {
+            @Override
+            public int dimension() {
+                return 6;
+            }
 
+            @Override
+            public void derivative(double t, double[] y, double[] dydt) {
+                for (int i = 0; i < 3; i++) {
+                    dydt[i] = y[i + 3];
+                    dydt[i + 3] = 0;
+                }
+            }
+        };
+
+        for (IVPSolver solver : new IVPSolver[]{IVPSolver.dormandPrince(1), IVPSolver.cashKarp(1)}) {
+
+            double[] y = {0, 0, 0, 1, 2, 3};
+            double[][] work = new double[solver.workBuffers()][y.length];
+
+            for (int i = 0; i < 10; i++) {
+                assertEquals(solver.name(), 1, solver.step(drift, i, y, work, Double.POSITIVE_INFINITY), 0);
+            }
+            assertEquals(solver.name(), 10, y[0], TOL);
+            assertEquals(solver.name(), 30, y[2], TOL);
+        }
+    }
+
+    /**
+     * Tests IVP.solve honours variable steps of an adaptive method and stops at exactly the given time
+     * @throws Exception
+     */
+    @Test
+    public void adaptive_solve() throws Exception {
+
+        // y'' = -y, y(0) = 1, y'(0) = 0
+        IVP oscillator = new IVP(2) {
+
+            Vector3[] y = new Vector3[]{Vector3.ONES, Vector3.ZERO};
+            double t = 0;
+
+            @Override
+            protected Vector3 f(Vector3[] y, double t) {
+                return y[0].scale(-1);
+            }
+
+            @Override
+            protected Vector3[] y() {
+                return y;
+            }
+
+            @Override
+            public double t() {
+                return t;
+            }
+
+            @Override
+            protected void increment(Vector3[] dy, double h) {
+                y[0] = y[0].add(dy[0]);
+                y[1] = y[1].add(dy[1]);
+                t += h;
+            }
+        };
+
+        final int[] steps = new int[1];
+        oscillator.addStepListener((t, step, y) -> steps[0]++);
+        oscillator.solve(IVPSolver.dormandPrince(1, 1E-10, 1E-10), 3);
+
+        assertEquals(3, oscillator.t(), TOL);
+        assertEquals(Math.cos(3), oscillator.y()[0].getX(), 1E-8);
+        assertEquals(-Math.sin(3), oscillator.y()[1].getX(), 1E-8);
+        assertTrue(steps[0] + " steps", steps[0] > 3 && steps[0] < 300);
+    }
+
+    /**
+     * Body of unit charge to mass ratio in uniform fields
+     * @param E electric field
+     * @param B magnetic field
+     * @param c speed of light
+     * @return Lorentz system
+     */
+    private static LorentzSystem uniform(Vector3 E, Vector3 B, double c){
+        return new LorentzSystem() {
+            @Override
+            public void fields(double t, double[] y, double[] e, double[] b) {
+                e[0] = E.getX();
+                e[1] = E.getY();
+                e[2] = E.getZ();
+                b[0] = B.getX();
+                b[1] = B.getY();
+                b[2] = B.getZ();
+            }
+
+            @Override
+            public void chargeToMass(double[] qm) {
+                qm[0] = 1;
+            }
+
+            @Override
+            public void lightSpeed(double[] speed) {
+                speed[0] = c;
+            }
+
+            @Override
+            public boolean uniformFields() {
+                return true;
+            }
+
+            @Override
+            public int dimension() {
+                return 6;
+            }
+
+            @Override
+            public void derivative(double t, double[] y, double[] dydt) {
+                throw new AssertionError("Method for Lorentz systems must not evaluate derivative.");
+            }
+        };
+    }
+
+    /**
+     * Steps system by solver for specified number of steps from y
+     */
+    private static void steps(IVPSolver solver, ODESystem system, double[] y, int steps){
+        double[][] work = new double[solver.workBuffers()][y.length];
+        for (int i = 0; i < steps; i++) {
+            solver.step(system, i * solver.stepSize(), y, work);
+        }
+    }
+
+    /**
+     * Tests Boris method conserves speed in magnetic field and stays on its orbit over many periods
+     * @throws Exception
+     */
+    @Test
+    public void boris_gyration() throws Exception {
+
+        IVPSolver boris = IVPSolver.boris(2 * Math.PI / 100);
+        LorentzSystem system = uniform(Vector3.ZERO, Vector3.K, Double.POSITIVE_INFINITY);
+        double[] y = {0, 1, 0, 1, 0, 0}; // circle of unit radius about the origin
+        double[][] work = new double[boris.workBuffers()][y.length];
+
+        for (int i = 0; i < 10000; i++) {
+            boris.step(system, i * boris.stepSize(), y, work);
+            assertEquals(1, Math.sqrt(y[0] * y[0] + y[1] * y[1]), 1E-2);
+        }
+        assertEquals(1, Math.sqrt(y[3] * y[3] + y[4] * y[4] + y[5] * y[5]), TOL);
+    }
+
+    /**
+     * Tests relativistic Boris method conserves gamma in magnetic field and gyrates with period 2 pi gamma m / qB
+     * @throws Exception
+     */
+    @Test
+    public void boris_relativistic() throws Exception {
+
+        double gamma = 1 / Math.sqrt(1 - 0.9 * 0.9);
+        double[] y = {0, 0.9 * gamma, 0, 0.9, 0, 0};
+        steps(IVPSolver.boris(2 * Math.PI * gamma / 1000), uniform(Vector3.ZERO, Vector3.K, 1), y, 1000);
+
+        assertEquals(0.9, Math.sqrt(y[3] * y[3] + y[4] * y[4] + y[5] * y[5]), TOL);
+        assertEquals(0, y[0], 1E-4);
+        assertEquals(0.9 * gamma, y[1], 1E-4);
+        assertEquals(0, y[2], TOL);
+    }
+
+    /**
+     * Tests Boris method drifts with velocity E x B / B^2 in crossed fields
+     * @throws Exception
+     */
+    @Test
+    public void boris_drift() throws Exception {
+
+        // Start at drift velocity, so no gyration
+        double[] y = {0, 0, 0, 0.5, 0, 0};
+        steps(IVPSolver.boris(0.1), uniform(Vector3.J.scale(0.5), Vector3.K, Double.POSITIVE_INFINITY), y, 100);
+
+        assertEquals(5, y[0], 1E-9);
+        assertEquals(0, y[1], 1E-9);
+        assertEquals(0.5, y[3], 1E-9);
+    }
+
+    /**
+     * Steps body gyrating on the unit circle in a magnetic field through 10 periods of 20 steps
+     * @return phase error (x, which is 0 on time)
+     */
+    private static double gyrationError(IVPSolver solver){
+        double[] y = {0, 1, 0, 1, 0, 0};
+        steps(solver, uniform(Vector3.ZERO, Vector3.K, Double.POSITIVE_INFINITY), y, 20 * 10);
+        assertEquals(solver.name(), 1, Math.sqrt(y[3] * y[3] + y[4] * y[4]), TOL);
+        return Math.abs(y[0]);
+    }
+
+    /**
+     * Tests compositions of Boris kicks gyrate at the right phase at step sizes where Boris lags
+     * @throws Exception
+     */
+    @Test
+    public void composition_gyration() throws Exception {
+        assertTrue(gyrationError(IVPSolver.boris(2 * Math.PI / 20)) > 0.4);
+        assertTrue(gyrationError(IVPSolver.forestRuth(2 * Math.PI / 20)) < 0.05);
+        assertTrue(gyrationError(IVPSolver.yoshida6(2 * Math.PI / 20)) < 1E-3);
+    }
+
+    /**
+     * Tests velocity leapfrog of a Lorentz system drifts with velocity E x B / B^2 in crossed fields
+     * @throws Exception
+     */
+    @Test
+    public void velocityLeapfrog_drift() throws Exception {
+
+        double[] y = {0, 0, 0, 0.5, 0, 0};
+        steps(IVPSolver.velocityLeapfrog(0.1), uniform(Vector3.J.scale(0.5), Vector3.K, Double.POSITIVE_INFINITY), y, 100);
+
+        assertEquals(5, y[0], 1E-9);
+        assertEquals(0, y[1], 1E-9);
+        assertEquals(0.5, y[3], 1E-9);
+    }
+
+    /**
+     * Tests a Boris step by a shorter step size agrees exactly with a Boris method of that step size
+     * @throws Exception
+     */
+    @Test
+    public void boris_stepBy() throws Exception {
+
+        LorentzSystem system = uniform(Vector3.J.scale(0.5), Vector3.K, 2);
+        IVPSolver boris = IVPSolver.boris(0.1);
+        double[] expected = {0, 1, 0, 1, 0, 0.5};
+        double[] y = expected.clone();
+        double[][] work = new double[boris.workBuffers()][y.length];
+
+        IVPSolver.boris(0.03).step(system, 0, expected, work);
+        boris.stepBy(system, 0, y, work, 0.03);
+
+        assertArrayEquals(expected, y, 0);
+    }
+
+    /**
+     * Tests Boris method refuses systems that are not Lorentz systems
+     * @throws Exception
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void boris_notLorentz() throws Exception {
+        steps(IVPSolver.boris(), oscillator, new double[6], 1);
+    }
+
+    /**
+     * Steps system by solver once by h from y
+     */
+    private static void exact(LorentzSystem system, double[] y, double h){
+        IVPSolver exact = IVPSolver.exactUniform();
+        assertEquals(h, exact.step(system, 0, y, new double[exact.workBuffers()][y.length], h), 0);
+    }
+
+    /**
+     * Tests exact propagation in a magnetic field lands on the circle at the right phase after many periods
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_gyration() throws Exception {
+        double[] y = {0, 1, 0, 1, 0, 0.5}; // helix of unit radius about the z axis
+        double h = 1000.25 * 2 * Math.PI;
+        exact(uniform(Vector3.ZERO, Vector3.K, Double.POSITIVE_INFINITY), y, h);
+        // a quarter turn on, clockwise seen from +z for positive charge
+        assertEquals(1, y[0], 1E-9);
+        assertEquals(0, y[1], 1E-9);
+        assertEquals(0.5 * h, y[2], 1E-9);
+        assertEquals(0, y[3], 1E-9);
+        assertEquals(-1, y[4], 1E-9);
+    }
+
+    /**
+     * Tests exact propagation in crossed fields agrees with a fine Runge-Kutta solution
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_crossed() throws Exception {
+        Vector3 E = new Vector3(0.3, 0.5, 0.2), B = new Vector3(0.1, 0.4, 1);
+        double[] expected = {0, 0, 0, 1, -0.5, 0.25};
+        double[] y = expected.clone();
+        LorentzSystem system = new LorentzSystemAdapter(uniform(E, B, Double.POSITIVE_INFINITY), E, B);
+        steps(IVPSolver.rungeKutta4(1E-3), system, expected, 10000);
+        exact(system, y, 10);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(expected[i], y[i], 1E-9);
+        }
+    }
+
+    /**
+     * Tests relativistic exact propagation in an electric field agrees with a fine Runge-Kutta solution
+     * and in a magnetic field gyrates with period 2 pi gamma m / qB
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_relativistic() throws Exception {
+        Vector3 E = new Vector3(0.3, -0.2, 0.5);
+        double[] expected = {0, 0, 0, 0.6, 0.3, -0.5};
+        double[] y = expected.clone();
+        LorentzSystem system = new LorentzSystemAdapter(uniform(E, Vector3.ZERO, 1), E, Vector3.ZERO);
+        steps(IVPSolver.rungeKutta4(1E-3), system, expected, 5000);
+        exact(system, y, 5);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(expected[i], y[i], 1E-9);
+        }
+
+        double gamma = 1 / Math.sqrt(1 - 0.9 * 0.9);
+        y = new double[]{0, 0.9 * gamma, 0, 0.9, 0, 0};
+        exact(uniform(Vector3.ZERO, Vector3.K, 1), y, 100 * 2 * Math.PI * gamma);
+        assertEquals(0, y[0], 1E-9);
+        assertEquals(0.9 * gamma, y[1], 1E-9);
+        assertEquals(0.9, y[3], 1E-9);
+    }
+
+    /**
+     * Compares relativistic exact propagation in E and B together, in one step and in several,
+     * with a fine Runge-Kutta solution
+     */
+    private static void exactRelativistic(Vector3 E, Vector3 B, double[] y0, double time){
+        LorentzSystem system = new LorentzSystemAdapter(uniform(E, B, 1), E, B);
+        double[] expected = y0.clone();
+        steps(IVPSolver.rungeKutta4(1E-3), system, expected, (int) Math.round(time / 1E-3));
+        double[] y = y0.clone();
+        exact(system, y, time);
+        double[] z = y0.clone();
+        for (int n = 0; n < 7; n++) {
+            exact(system, z, time / 7);
+        }
+        for (int i = 0; i < 6; i++) {
+            assertEquals(expected[i], y[i], 1E-9);
+            assertEquals(expected[i], z[i], 1E-9);
+        }
+    }
+
+    /**
+     * Tests relativistic exact propagation in E and B with |E| &lt; c|B| and E . B != 0
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_relativisticCrossed() throws Exception {
+        exactRelativistic(new Vector3(0.3, 0.5, 0.2), new Vector3(0.1, 0.4, 1), new double[]{0, 0, 0, 0.6, -0.3, 0.25}, 10);
+    }
+
+    /**
+     * Tests relativistic exact propagation in E and B with |E| &gt; c|B|
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_relativisticElectric() throws Exception {
+        exactRelativistic(new Vector3(0.8, 0.3, -0.1), new Vector3(0.2, 0.1, 0.3), new double[]{0, 0, 0, -0.5, 0.2, 0.7}, 3);
+    }
+
+    /**
+     * Tests relativistic exact propagation in null fields, E perpendicular to B and |E| = c|B|
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_relativisticNull() throws Exception {
+        exactRelativistic(new Vector3(0, 0.5, 0), new Vector3(0, 0, 0.5), new double[]{0, 0, 0, 0.3, 0.1, -0.4}, 5);
+    }
+
+    /**
+     * Tests a relativistic body moving at E x B / B^2 drifts uniformly
+     * @throws Exception
+     */
+    @Test
+    public void exactUniform_relativisticDrift() throws Exception {
+        double[] y = {0, 0, 0, 0.6, 0, 0};
+        exact(uniform(new Vector3(0, 0.6, 0), Vector3.K, 1), y, 1000);
+        assertEquals(600, y[0], 1E-9);
+        assertEquals(0, y[1], 1E-9);
+        assertEquals(0.6, y[3], 1E-12);
+        assertEquals(0, y[4], 1E-12);
+    }
+
+    /**
+     * Tests exact propagation refuses fields that are not uniform
+     * @throws Exception
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void exactUniform_notUniform() throws Exception {
+        LorentzSystem system = new LorentzSystemAdapter(uniform(Vector3.ZERO, Vector3.K, 1), Vector3.ZERO, Vector3.K) {
+            @Override
+            public boolean uniformFields() {
+                return false;
+            }
+        };
+        exact(system, new double[6], 1);
+    }
+
+    /**
+     * Lorentz system in uniform fields that also evaluates its derivative, for comparison with general methods
+     */
+    private static class LorentzSystemAdapter implements LorentzSystem {
+
+        private final LorentzSystem system;
+        private final Vector3 E, B;
+
+        LorentzSystemAdapter(LorentzSystem system, Vector3 E, Vector3 B){
+            this.system = system;
+            this.E = E;
+            this.B = B;
+        }
+
+        @Override
+        public void fields(double t, double[] y, double[] e, double[] b) {
+            system.fields(t, y, e, b);
+        }
+
+        @Override
+        public void chargeToMass(double[] qm) {
+            system.chargeToMass(qm);
+        }
+
+        @Override
+        public void lightSpeed(double[] c) {
+            system.lightSpeed(c);
+        }
+
+        @Override
+        public boolean uniformFields() {
+            return true;
+        }
+
+        @Override
+        public int dimension() {
+            return 6;
+        }
+
+        @Override
+        public void derivative(double t, double[] y, double[] dydt) {
+            double[] c = new double[1];
+            lightSpeed(c);
+            Vector3 v = new Vector3(y[3], y[4], y[5]);
+            Vector3 force = v.cross(B).add(E); // unit charge to mass
+            // relativistic: a = (F - v (F.v) / c^2) / gamma
+            double gamma = Double.isInfinite(c[0]) ? 1 : 1 / Math.sqrt(1 - v.dot(v) / (c[0] * c[0]));
+            Vector3 a = Double.isInfinite(c[0]) ? force
+                    : force.subtract(v.scale(force.dot(v) / (c[0] * c[0]))).scale(1 / gamma);
+            dydt[0] = y[3];
+            dydt[1] = y[4];
+            dydt[2] = y[5];
+            dydt[3] = a.getX();
+            dydt[4] = a.getY();
+            dydt[5] = a.getZ();
+        }
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package acceleratorphysics.numerical;
+
+import acceleratorphysics.particles.Newton2ndLaw;
+import acceleratorphysics.particles.Particle;
+import acceleratorphysics.particles.ParticleFactory;
+import acceleratorphysics.particles.State;
+import acceleratorphysics.util.Vector3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static acceleratorphysics.util.Vector3Test.assertVectorsEqual;
+import static acceleratorphysics.util.Vector3Test.randomVector;
+import static org.junit.Assert.assertEquals;
+
+public class IVPSystemTest {
+
+    private static final double TOL = 1E-10;
+    private static final double h = 1E-2;
+
+    private static IVP ivp1, ivp2;
+
+    /**
+     * Example IVP : y'' = -k y
+     * @param y0 initial position
+     * @param k spring constant
+     * @return new IVP
+     */
+    private static IVP oscillator(Vector3 y0, double k){
+        return new IVP(2) {
+
+            Vector3[] y = new Vector3[]{y0, Vector3.ZERO};
+            double t = 0;
+
+            @Override
+            protected Vector3 f(Vector3[] y, double t) {
+                return y[0].scale(-k);
+            }
+
+            @Override
+            protected Vector3[] y() {
+                return y;
+            }
+
+            @Override
+            public double t() {
+                return t;
+            }
+
+            @Override
+            protected void increment(Vector3[] dy, double h) {
+                y[0] = y[0].add(dy[0]);
+                y[1] = y[1].add(dy[1]);
+                t += h;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ivp1 = oscillator(randomVector(), 1);
+        ivp2 = oscillator(randomVector(), 4);
+    }
+
+    @Test
+    public void dimension() throws Exception {
+        assertEquals(12, new IVPSystem(ivp1, ivp2).dimension());
+    }
+
+    /**
+     * Tests non-interacting system agrees with solving each IVP separately
+     * @throws Exception
+     */
+    @Test
+    public void solve_independent() throws Exception {
+
+        Vector3[] y0 = ivp1.y().clone();
+        Vector3[] y1 = ivp2.y().clone();
+
+        new IVPSystem(ivp1, ivp2).solve(IVPSolver.rungeKutta4(h), 1);
+
+        IVP expected1 = oscillator(y0[0], 1).solve(IVPSolver.rungeKutta4(h), 1);
+        IVP expected2 = oscillator(y1[0], 4).solve(IVPSolver.rungeKutta4(h), 1);
+
+        assertVectorsEqual(expected1.y()[0], ivp1.y()[0], TOL);
+        assertVectorsEqual(expected1.y()[1], ivp1.y()[1], TOL);
+        assertVectorsEqual(expected2.y()[0], ivp2.y()[0], TOL);
+        assertVectorsEqual(expected2.y()[1], ivp2.y()[1], TOL);
+        assertEquals(expected1.t(), ivp1.t(), TOL);
+    }
+
+    /**
+     * Tests every stage is exposed once before its derivatives are evaluated, and so is the advanced state
+     * @throws Exception
+     */
+    @Test
+    public void stage() throws Exception {
+
+        int[] stages = {0};
+        IVPSystem system = new IVPSystem(ivp1, ivp2) {
+            @Override
+            protected void stage(double t, double[] y) {
+                stages[0]++;
+            }
+        };
+
+        system.solve(IVPSolver.rungeKutta4(h), 10 * h - h / 2);
+
+        // 4 stages and the advanced state per step
+        assertEquals(10 * 5, stages[0]);
+        assertEquals(10 * h, system.t(), TOL);
+    }
+
+    /**
+     * Tests advancing a system evaluates the acceleration of each particle once, at the state it was advanced to
+     * @throws Exception
+     */
+    @Test
+    public void advance() throws Exception {
+
+        int[] evaluations = {0};
+        Particle[] particles = new Particle[2];
+        Newton2ndLaw[] ivps = new Newton2ndLaw[particles.length];
+        for (int i = 0; i < particles.length; i++) {
+            particles[i] = ParticleFactory.Newtonian.proton(State.zero().position(randomVector()));
+            ivps[i] = new Newton2ndLaw(particles[i]) {
+                @Override
+                protected Vector3 acceleration(Vector3 r, Vector3 v, double t) {
+                    return r.scale(-1);
+                }
+
+                @Override
+                protected void acceleration(double t, double[] y, double[] a) {
+                    evaluations[0]++;
+                    super.acceleration(t, y, a);
+                }
+            };
+        }
+
+        new IVPSystem(ivps).solve(IVPSolver.euler(h), 10 * h - h / 2);
+
+        // 1 stage and the advanced state per step of each particle
+        assertEquals(10 * 2 * particles.length, evaluations[0]);
+        for (Particle particle : particles) {
+            // the only stage of Euler is at the start of the step
+            assertVectorsEqual(particle.getPosition().scale(-1), particle.getAcceleration(), 0);
+        }
+    }
+
+    /**
+     * Tests parallel evaluation over blocks agrees exactly with serial evaluation
+     * @throws Exception
+     */
+    @Test
+    public void solve_parallel() throws Exception {
+
+        IVP[] serial = new IVP[7];
+        IVP[] parallel = new IVP[7];
+        for (int i = 0; i < serial.length; i++) {
+            Vector3 y0 = randomVector();
+            serial[i] = oscillator(y0, i + 1);
+            parallel[i] = oscillator(y0, i + 1);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        new IVPSystem(serial).solve(IVPSolver.rungeKutta4(h), 1);
+        new IVPSystem(parallel).setPool(pool).setBlockSize(2).solve(IVPSolver.rungeKutta4(h), 1);
+        pool.shutdown();
+
+        for (int i = 0; i < serial.length; i++) {
+            assertVectorsEqual(serial[i].y()[0], parallel[i].y()[0], 0);
+            assertVectorsEqual(serial[i].y()[1], parallel[i].y()[1], 0);
+        }
+    }
+
+}
@@ -89,8 +89,8 @@ public class IVPTest {
             }
         };
 
-        // Mock an IVPSolver
-        mockSolver = mock(IVPSolver.class);
+        // Mock an IVPSolver (step(...) adapts the stubbed dy(IVP) onto the flat state)
+        mockSolver = mock(IVPSolver.class, CALLS_REAL_METHODS);
 
          // Set mock increments
         mockDY = new Vector3[]{randomVector(), randomVector()};
@@ -149,6 +149,25 @@ public class IVPTest {
         assertEquals(h, ivpStub.t(), TOL);
     }
 
+    /**
+     * Test flat derivative adapts f(Vector3[], double)
+     * @throws Exception
+     */
+    @Test
+    public void derivative() throws Exception {
+
+        double[] y = new double[ivpStub.dimension()];
+        double[] dydt = new double[ivpStub.dimension()];
+        ivpStub.state(y);
+        ivpStub.derivative(0, y, dydt);
+
+        Vector3 f = F(y0, 0);
+
+        assertEquals(6, y.length);
+        assertVectorsEqual(y0[1], new Vector3(dydt[0], dydt[1], dydt[2]), TOL);
+        assertVectorsEqual(f, new Vector3(dydt[3], dydt[4], dydt[5]), TOL);
+    }
+
     /**
      * Tests IVP interaction with IVPSolver by ensuring correct number of calls to IVPSolve.dy(IVP).
      * @throws Exception
@@ -0,0 +1,146 @@
+package acceleratorphysics.numerical;
+
+import acceleratorphysics.util.Vector3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StepListenerTest {
+
+    private static final double TOL = 1E-12;
+    private static final double h = 0.125; // exact in binary, so times are exact
+
+    private IVP ivp;
+    private List<double[]> calls; // t, step, y[0] of each call
+
+    /**
+     * Example IVP : y'' = -y
+     * @return new IVP
+     */
+    private static IVP oscillator(){
+        return new IVP(2) {
+
+            Vector3[] y = new Vector3[]{Vector3.ONES, Vector3.ZERO};
+            double t = 0;
+
+            @Override
+            protected Vector3 f(Vector3[] y, double t) {
+                return y[0].scale(-1);
+            }
+
+            @Override
+            protected Vector3[] y() {
+                return y;
+            }
+
+            @Override
+            public double t() {
+                return t;
+            }
+
+            @Override
+            protected void increment(Vector3[] dy, double h) {
+                y[0] = y[0].add(dy[0]);
+                y[1] = y[1].add(dy[1]);
+                t += h;
+            }
+        };
+    }
+
+    private StepListener recorder(){
+        return (t, step, y) -> calls.add(new double[]{t, step, y[0]});
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ivp = oscillator();
+        calls = new ArrayList<>();
+    }
+
+    /**
+     * Tests listener is called after every step with the time, count and state reached
+     * @throws Exception
+     */
+    @Test
+    public void everyStep() throws Exception {
+        ivp.addStepListener((t, step, y) -> {
+            assertEquals(ivp.t(), t, 0);
+            assertEquals(ivp.y()[0].getX(), y[0], TOL);
+            assertEquals(ivp.y()[1].getZ(), y[5], TOL);
+        });
+        ivp.addStepListener(recorder());
+        ivp.solve(IVPSolver.rungeKutta4(h), 1);
+
+        assertEquals(8, calls.size());
+        assertEquals(8, ivp.getSteps());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(h * (i + 1), calls.get(i)[0], 0);
+            assertEquals(i + 1, calls.get(i)[1], 0);
+        }
+    }
+
+    @Test
+    public void everySteps() throws Exception {
+        ivp.addStepListener(StepListener.everySteps(3, recorder()));
+        ivp.solve(IVPSolver.rungeKutta4(h), 1);
+        ivp.solve(IVPSolver.rungeKutta4(h), 0.5); // steps count on across solves
+
+        assertEquals(4, calls.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(3 * (i + 1), calls.get(i)[1], 0);
+        }
+    }
+
+    /**
+     * Tests listener decimated by time is called on the first step and the first step reaching each multiple
+     * @throws Exception
+     */
+    @Test
+    public void everyTime() throws Exception {
+        ivp.addStepListener(StepListener.everyTime(0.25, recorder()));
+        ivp.solve(IVPSolver.rungeKutta4(h), 1);
+
+        double[] expected = {0.125, 0.25, 0.5, 0.75, 1};
+        assertEquals(expected.length, calls.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], calls.get(i)[0], 0);
+        }
+    }
+
+    @Test
+    public void remove() throws Exception {
+        StepListener listener = recorder();
+        ivp.addStepListener(listener).removeStepListener(listener);
+        ivp.solve(IVPSolver.rungeKutta4(h), 1);
+        assertTrue(calls.isEmpty());
+    }
+
+    /**
+     * Tests listener of a system sees the state of every IVP, and observers are notified through StepObservable
+     * @throws Exception
+     */
+    @Test
+    public void system() throws Exception {
+        IVPSystem system = new IVPSystem(oscillator(), oscillator());
+        int[] observed = {0};
+        StepObservable steps = new StepObservable();
+        steps.addObserver((o, arg) -> observed[0]++);
+        system.addStepListener(steps);
+        system.addStepListener((t, step, y) -> {
+            assertEquals(12, y.length);
+            assertEquals(y[0], y[6], 0);
+            calls.add(new double[]{t, step, y[0]});
+        });
+        system.solve(IVPSolver.rungeKutta4(h), 1);
+
+        assertEquals(8, calls.size());
+        assertEquals(8, system.getSteps());
+        assertEquals(8, observed[0]);
+        assertEquals(Math.cos(1), calls.get(7)[2], 1E-4);
+    }
+
+}
@@ -0,0 +1,160 @@
+package acceleratorphysics.particles;
+
+import acceleratorphysics.particles.BeamStatistics.Coordinate;
+import acceleratorphysics.particles.BeamStatistics.Plane;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class BeamStatisticsTest {
+
+    private static final double TOL = 1E-9;
+    private static final int N = 10000;
+    private static final double C = Relativity.C;
+
+    private ParticleStore store;
+
+    /**
+     * Fills store with a beam along z of correlated transverse position and velocity, offset far from the origin
+     */
+    private static ParticleStore beam(Framework framework){
+        ParticleStore store = new ParticleStore(framework, N);
+        Random random = new Random(7);
+        for (int i = 0; i < N; i++) {
+            double x = 1E-3 * random.nextGaussian(), y = 2E-3 * random.nextGaussian();
+            store.x()[i] = 1E3 + x;
+            store.y()[i] = y;
+            store.z()[i] = 5E-3 * random.nextGaussian();
+            store.vx()[i] = 1E6 * x + 1E2 * random.nextGaussian();
+            store.vy()[i] = -3E5 * y + 1E2 * random.nextGaussian();
+            store.vz()[i] = 1E7 + 1E3 * random.nextGaussian();
+            store.mass()[i] = 1;
+        }
+        return store;
+    }
+
+    /**
+     * Normalised momentum of column v of store
+     */
+    private static double[] momentum(ParticleStore store, double[] v){
+        double[] u = new double[N];
+        for (int i = 0; i < N; i++) {
+            u[i] = store.getFramework().lorentzFactor(store.vx()[i], store.vy()[i], store.vz()[i]) * v[i] / C;
+        }
+        return u;
+    }
+
+    /**
+     * Covariance by two passes
+     */
+    private static double covariance(double[] a, double[] b){
+        double ma = 0, mb = 0;
+        for (int i = 0; i < N; i++) {
+            ma += a[i];
+            mb += b[i];
+        }
+        ma /= N;
+        mb /= N;
+        double sum = 0;
+        for (int i = 0; i < N; i++) {
+            sum += (a[i] - ma) * (b[i] - mb);
+        }
+        return sum / N;
+    }
+
+    private static void assertRelative(double expected, double actual){
+        assertEquals(expected, actual, TOL * Math.abs(expected));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        store = beam(Framework.RELATIVISTIC);
+    }
+
+    /**
+     * Tests moments of a beam far from the origin against two passes
+     * @throws Exception
+     */
+    @Test
+    public void moments() throws Exception {
+        BeamStatistics statistics = BeamStatistics.of(store);
+        double[] ux = momentum(store, store.vx());
+        double[] uz = momentum(store, store.vz());
+
+        assertEquals(N, statistics.getCount());
+        assertRelative(store.meanPosition().getX(), statistics.getMean(Coordinate.X));
+        assertRelative(covariance(store.x(), store.x()), statistics.getCovariance(Coordinate.X, Coordinate.X));
+        assertRelative(covariance(store.x(), ux), statistics.getCovariance(Coordinate.X, Coordinate.UX));
+        assertRelative(covariance(ux, store.x()), statistics.getCovariance(Coordinate.UX, Coordinate.X));
+        assertRelative(covariance(uz, store.z()), statistics.getCovariance(Coordinate.UZ, Coordinate.Z));
+        assertRelative(Math.sqrt(covariance(store.y(), store.y())), statistics.getRmsSize(Plane.Y));
+        assertRelative(covariance(uz, uz), statistics.getCovariance(Coordinate.UZ, Coordinate.UZ));
+    }
+
+    @Test
+    public void emittance() throws Exception {
+        BeamStatistics statistics = BeamStatistics.of(store);
+        double[] ux = momentum(store, store.vx());
+        double expected = Math.sqrt(covariance(store.x(), store.x()) * covariance(ux, ux)
+                - Math.pow(covariance(store.x(), ux), 2));
+        assertRelative(expected, statistics.getEmittance(Plane.X));
+        assertTrue(statistics.getEmittance(Plane.X) > 0);
+    }
+
+    /**
+     * Tests Twiss parameters satisfy beta * gamma - alpha^2 = 1, with alpha of the sign of the correlation
+     * @throws Exception
+     */
+    @Test
+    public void twiss() throws Exception {
+        BeamStatistics statistics = BeamStatistics.of(store);
+        for (Plane plane : Plane.values()) {
+            double beta = statistics.getBeta(plane), alpha = statistics.getAlpha(plane), gamma = statistics.getGamma(plane);
+            assertEquals(plane.name(), 1, beta * gamma - alpha * alpha, 1E-6);
+            assertTrue(beta > 0);
+        }
+        assertTrue(statistics.getAlpha(Plane.X) < 0); // diverging
+        assertTrue(statistics.getAlpha(Plane.Y) > 0); // converging
+    }
+
+    /**
+     * Tests statistics merged from blocks computed in parallel match those computed serially
+     * @throws Exception
+     */
+    @Test
+    public void parallel() throws Exception {
+        BeamStatistics serial = BeamStatistics.of(store);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BeamStatistics parallel = BeamStatistics.of(store, pool, 333);
+            assertEquals(N, parallel.getCount());
+            for (Coordinate a : Coordinate.values()) {
+                assertRelative(serial.getMean(a), parallel.getMean(a));
+                for (Coordinate b : Coordinate.values()) {
+                    assertEquals(serial.getCovariance(a, b), parallel.getCovariance(a, b),
+                            TOL * Math.sqrt(serial.getCovariance(a, a) * serial.getCovariance(b, b)));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void newtonian() throws Exception {
+        ParticleStore newtonian = beam(Framework.NEWTONIAN);
+        BeamStatistics statistics = BeamStatistics.of(newtonian);
+        assertRelative(newtonian.meanVelocity().getZ() / C, statistics.getReferenceMomentum());
+        assertTrue(BeamStatistics.of(store).getReferenceMomentum() > statistics.getReferenceMomentum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blockSize() throws Exception {
+        BeamStatistics.of(store, null, 0);
+    }
+
+}
@@ -119,4 +119,15 @@ public class ChargedParticleTest {
 
         assertVectorsEqual("Relativistic momentum:", expected, actual, TOL);
     }
+
+    @Test
+    public void getField() throws Exception {
+
+        Vector3 d = randomVector();
+        double K = 1 / (4 * Math.PI * ChargedParticle.EPSILON_NOUGHT);
+        Vector3 expected = d.scale(K * charge / Math.pow(d.norm(), 3));
+
+        assertVectorsEqual("Coulomb field:", expected, newtonian.getField().electricField(r.add(d), 0), TOL * expected.norm());
+        assertVectorsEqual("Self field:", Vector3.ZERO, newtonian.getField().electricField(r, 0), 0);
+    }
 }
@@ -0,0 +1,104 @@
+package acceleratorphysics.particles;
+
+import acceleratorphysics.util.Vector3;
+import org.junit.Before;
+import org.junit.Test;
+
+import static acceleratorphysics.util.Vector3Test.assertVectorsEqual;
+import static acceleratorphysics.util.Vector3Test.randomVector;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests bunches backed by a ParticleStore against their particles
+ */
+public class ParticleStoreTest {
+
+    private static final double TOL = 1E-10;
+    private static final int N = 16;
+
+    private static ChargedBunch bunch;
+    private static ParticleStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        State state = State.zero()
+                .position(randomVector())
+                .velocity(randomVector())
+                .positionDispersion(Vector3.ONES)
+                .velocityDispersion(Vector3.ONES);
+        bunch = ParticleFactory.Relativistic.protonBunch(state, N);
+        store = bunch.getStore();
+        State.zero().positionDispersion(Vector3.ZERO).velocityDispersion(Vector3.ZERO);
+    }
+
+    @Test
+    public void size() throws Exception {
+        assertEquals(N, store.size());
+        assertEquals(N, bunch.getParticles().length);
+    }
+
+    @Test
+    public void view() throws Exception {
+        Particle[] particles = bunch.getParticles();
+        for (int i = 0; i < N; i++) {
+            assertVectorsEqual("Position:", store.getPosition(i), particles[i].getPosition(), TOL);
+            assertVectorsEqual("Velocity:", store.getVelocity(i), particles[i].getVelocity(), TOL);
+            assertEquals("Energy:", store.getEnergy(i), particles[i].getEnergy(), TOL);
+        }
+    }
+
+    @Test
+    public void writeThrough() throws Exception {
+        Vector3 r = randomVector();
+        Particle particle = bunch.getParticles()[3];
+        particle.setPosition(r);
+        assertEquals(r.getX(), store.x()[3], TOL);
+        assertEquals(r.getY(), store.y()[3], TOL);
+        assertEquals(r.getZ(), store.z()[3], TOL);
+    }
+
+    @Test
+    public void getPosition() throws Exception {
+        Vector3 expected = Vector3.ZERO;
+        for (Particle particle : bunch.getParticles()) {
+            expected = expected.add(particle.getPosition());
+        }
+        assertVectorsEqual(expected.scale(1.0 / N), bunch.getPosition(), TOL);
+    }
+
+    @Test
+    public void getMass() throws Exception {
+        double expected = 0;
+        for (Particle particle : bunch.getParticles()) {
+            expected += particle.getMass();
+        }
+        assertEquals(expected, bunch.getMass(), TOL);
+    }
+
+    @Test
+    public void getEnergy() throws Exception {
+        double expected = 0;
+        for (Particle particle : bunch.getParticles()) {
+            expected += particle.getEnergy();
+        }
+        assertEquals(expected, bunch.getEnergy(), expected * TOL);
+    }
+
+    @Test
+    public void getCharge() throws Exception {
+        assertEquals(N * ParticleFactory.PROTON_CHARGE, bunch.getCharge(), TOL);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mixedFrameworks() throws Exception {
+        new ChargedBunch(State.zero(),
+                ParticleFactory.Newtonian.proton(),
+                ParticleFactory.Relativistic.proton());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void empty() throws Exception {
+        new ChargedBunch(State.zero());
+    }
+
+}
@@ -0,0 +1,118 @@
+package acceleratorphysics.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class MappedVectorReaderTest {
+
+    private static final int N = 100;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("vectors", ".dat");
+        try (VectorWriter writer = new VectorWriter(Files.newOutputStream(file))) {
+            for (int i = 0; i < N; i++) {
+                writer.writeVector(vector(i));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    private static Vector3 vector(int i){
+        return new Vector3(i, -i, 0.5 * i);
+    }
+
+    /**
+     * Readers mapping the whole file and mapping it in chunks of 7 vectors, so that reads straddle chunks
+     */
+    private MappedVectorReader[] readers() throws IOException {
+        return new MappedVectorReader[]{new MappedVectorReader(file), new MappedVectorReader(file, 7 * 24)};
+    }
+
+    @Test
+    public void seek() throws Exception {
+        for (MappedVectorReader reader : readers()) {
+            try (MappedVectorReader r = reader) {
+                assertEquals(N, r.size());
+                r.seek(42);
+                Vector3Test.assertVectorsEqual(vector(42), r.readVector(), 0);
+                assertEquals(43, r.position());
+                assertEquals(10, r.skip(10));
+                Vector3Test.assertVectorsEqual(vector(53), r.readVector(), 0);
+                assertEquals(N - 54, r.skip(1000));
+                r.seek(0);
+                Vector3Test.assertVectorsEqual(vector(0), r.readVector(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void read() throws Exception {
+        for (MappedVectorReader reader : readers()) {
+            try (MappedVectorReader r = reader) {
+                double[] dst = new double[3 * 30 + 1];
+                r.seek(5);
+                assertEquals(30, r.read(dst, 1, 30));
+                for (int i = 0; i < 30; i++) {
+                    assertEquals(5 + i, dst[1 + 3 * i], 0);
+                    assertEquals(-(5 + i), dst[2 + 3 * i], 0);
+                    assertEquals(0.5 * (5 + i), dst[3 + 3 * i], 0);
+                }
+                r.seek(N - 10);
+                assertEquals(10, r.read(dst, 0, 30));
+                assertEquals(-1, r.read(dst, 0, 30));
+            }
+        }
+    }
+
+    @Test
+    public void view() throws Exception {
+        for (MappedVectorReader reader : readers()) {
+            try (MappedVectorReader r = reader) {
+                for (int from : new int[]{0, 3, 95}) {
+                    DoubleBuffer view = r.view(from, 5);
+                    assertEquals(15, view.remaining());
+                    assertTrue(view.isReadOnly());
+                    for (int i = 0; i < 5; i++) {
+                        assertEquals(from + i, view.get(3 * i), 0);
+                        assertEquals(0.5 * (from + i), view.get(3 * i + 2), 0);
+                    }
+                }
+                assertEquals(0, r.position());
+            }
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void end() throws Exception {
+        try (MappedVectorReader reader = new MappedVectorReader(file)) {
+            reader.seek(N);
+            reader.readVector();
+        }
+    }
+
+    @Test
+    public void vectorReaderSkip() throws Exception {
+        try (VectorReader reader = new VectorReader(Files.newInputStream(file))) {
+            assertEquals(42, reader.skip(42));
+            Vector3Test.assertVectorsEqual(vector(42), reader.readVector(), 0);
+            assertEquals(N - 43, reader.skip(1000));
+        }
+    }
+
+}
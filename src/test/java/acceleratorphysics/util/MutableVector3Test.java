@@ -0,0 +1,78 @@
+package acceleratorphysics.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static acceleratorphysics.util.Vector3Test.assertVectorsEqual;
+import static acceleratorphysics.util.Vector3Test.randomVector;
+import static org.junit.Assert.*;
+
+public class MutableVector3Test {
+
+    private static Random random = new Random();
+
+    private final double TOL = 1e-10;
+
+    private static Vector3 A;
+    private static Vector3 B;
+    private static MutableVector3 M;
+
+    @Before
+    public void setUp() throws Exception {
+        A = randomVector();
+        B = randomVector();
+        M = new MutableVector3(A);
+    }
+
+    @Test
+    public void add() throws Exception {
+        assertSame(M, M.add(B));
+        assertVectorsEqual(A.add(B), M.toVector3(), TOL);
+    }
+
+    @Test
+    public void addTo() throws Exception {
+        MutableVector3 dst = new MutableVector3(B);
+        assertSame(dst, M.addTo(dst));
+        assertVectorsEqual(A.add(B), dst.toVector3(), TOL);
+        assertVectorsEqual(A, M.toVector3(), TOL);
+    }
+
+    @Test
+    public void scaleInPlace() throws Exception {
+        double k = random.nextDouble();
+        M.scaleInPlace(k);
+        assertVectorsEqual(A.scale(k), M.toVector3(), TOL);
+    }
+
+    @Test
+    public void fma() throws Exception {
+        double k = random.nextDouble();
+        M.fma(k, B);
+        assertVectorsEqual(A.add(B.scale(k)), M.toVector3(), TOL);
+    }
+
+    @Test
+    public void crossInto() throws Exception {
+        M.crossInto(A, B);
+        assertVectorsEqual(A.cross(B), M.toVector3(), TOL);
+    }
+
+    @Test
+    public void dot() throws Exception {
+        assertEquals(A.dot(B), M.dot(B), TOL);
+    }
+
+    @Test
+    public void norm() throws Exception {
+        assertEquals(A.norm(), M.norm(), TOL);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void nonFiniteSnapshot() throws Exception {
+        M.scaleInPlace(1d/0.0).toVector3();
+    }
+
+}
@@ -0,0 +1,144 @@
+package acceleratorphysics.util;
+
+import acceleratorphysics.util.TrajectoryReader.Column;
+import acceleratorphysics.util.TrajectoryRecorder.BackPressure;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TrajectoryRecorderTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("trajectory", ".traj");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Records steps of particles, each holding its step number in every column, and closes recorder
+     * @return steps dropped
+     */
+    private long record(BackPressure backPressure, int particles, int steps) throws IOException {
+        TrajectoryRecorder recorder = new TrajectoryRecorder.Builder(
+                new TrajectoryWriter.Builder(file, particles).setChunkSteps(8).open())
+                .setCapacity(4).setBackPressure(backPressure).start();
+        double[] column = new double[particles];
+        double[] state = new double[6 * particles];
+        try {
+            for (int s = 0; s < steps; s++) {
+                Arrays.fill(column, s);
+                Arrays.fill(state, s);
+                boolean recorded = (s % 2 == 0)
+                        ? recorder.record(s, column, column, column, column, column, column)
+                        : recorder.record(s, state);
+                assertTrue(recorded || backPressure != BackPressure.BLOCK);
+            }
+        } finally {
+            recorder.close();
+        }
+        assertEquals(steps, recorder.getOffered());
+        return recorder.getDropped();
+    }
+
+    /**
+     * Tests recorded steps are written in order and unchanged, and dropped steps are not written
+     * @return steps in file
+     */
+    private int assertRecorded(int particles, int steps, long dropped) throws IOException {
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(steps - dropped, reader.getSteps());
+            double[] dst = new double[particles];
+            double last = -1;
+            for (int s = 0; s < reader.getSteps(); s++) {
+                double t = reader.getTime(s);
+                assertTrue(t > last);
+                last = t;
+                for (Column column : Column.values()) {
+                    reader.read(s, column, dst);
+                    for (double value : dst) {
+                        assertEquals(t, value, 0);
+                    }
+                }
+            }
+            return reader.getSteps();
+        }
+    }
+
+    @Test
+    public void block() throws Exception {
+        assertEquals(0, record(BackPressure.BLOCK, 100, 500));
+        assertEquals(500, assertRecorded(100, 500, 0));
+    }
+
+    @Test
+    public void drop() throws Exception {
+        long dropped = record(BackPressure.DROP, 10000, 200);
+        assertRecorded(10000, 200, dropped);
+    }
+
+    @Test
+    public void decimate() throws Exception {
+        long dropped = record(BackPressure.DECIMATE, 10000, 200);
+        assertRecorded(10000, 200, dropped);
+    }
+
+    /**
+     * Tests the ring holds as many steps as fit in its size, and at least 2
+     * @throws Exception
+     */
+    @Test
+    public void capacity() throws Exception {
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder.Builder(
+                new TrajectoryWriter.Builder(file, 100).open()).setCapacityBytes(100 * 4808).start()) {
+            assertEquals(64, recorder.getCapacity());
+        }
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder.Builder(
+                new TrajectoryWriter.Builder(file, 10000).open()).setCapacityBytes(1 << 20).start()) {
+            assertEquals(2, recorder.getCapacity());
+        }
+    }
+
+    /**
+     * Tests a producer blocked on a full ring sees the failure of the writer rather than waiting for ever
+     * @throws Exception
+     */
+    @Test(expected = IOException.class)
+    public void failed() throws Exception {
+        TrajectoryWriter writer = new TrajectoryWriter.Builder(file, 1).open();
+        TrajectoryRecorder recorder = new TrajectoryRecorder.Builder(writer).setCapacity(2).start();
+        writer.close();
+        try {
+            for (int s = 0; s < 100; s++) {
+                recorder.record(s, new double[6]);
+            }
+        } finally {
+            try {
+                recorder.close();
+            } catch (IOException ex) {
+                // failure also rethrown by close
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void closed() throws Exception {
+        TrajectoryRecorder recorder = new TrajectoryRecorder.Builder(
+                new TrajectoryWriter.Builder(file, 1).open()).start();
+        recorder.close();
+        recorder.record(0, new double[6]);
+    }
+
+}
@@ -0,0 +1,126 @@
+package acceleratorphysics.util;
+
+import acceleratorphysics.util.TrajectoryReader.Column;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class TrajectoryWriterTest {
+
+    private static final int PARTICLES = 5;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("trajectory", ".traj");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Value of column c of particle i at step s
+     */
+    private static double value(int s, int c, int i){
+        return 1000 * s + 10 * c + i + 0.5;
+    }
+
+    /**
+     * Writes steps, half from columns and half from phase space state
+     */
+    private void write(TrajectoryWriter writer, int steps) throws IOException {
+        double[][] columns = new double[6][PARTICLES];
+        double[] state = new double[6 * PARTICLES];
+        for (int s = 0; s < steps; s++) {
+            for (int c = 0; c < 6; c++) {
+                for (int i = 0; i < PARTICLES; i++) {
+                    columns[c][i] = value(s, c, i);
+                    state[6 * i + c] = value(s, c, i);
+                }
+            }
+            if (s % 2 == 0) {
+                writer.write(0.1 * s, columns[0], columns[1], columns[2], columns[3], columns[4], columns[5]);
+            } else {
+                writer.write(0.1 * s, state);
+            }
+        }
+    }
+
+    /**
+     * Tests every value of every step is read back across full and partial chunks
+     * @throws Exception
+     */
+    @Test
+    public void roundTrip() throws Exception {
+
+        int steps = 23;
+        try (TrajectoryWriter writer = new TrajectoryWriter.Builder(file, PARTICLES)
+                .setIds(new long[]{7, 8, 9, 10, 11}).setChunkSteps(4).open()) {
+            write(writer, 10);
+            writer.flush(); // chunk of 2 steps
+            write(writer, steps - 10);
+        }
+
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(PARTICLES, reader.getParticles());
+            assertEquals(steps, reader.getSteps());
+            assertEquals(9, reader.getId(2));
+            double[] dst = new double[PARTICLES];
+            for (int s = 0; s < steps; s++) {
+                int written = (s < 10) ? s : s - 10;
+                assertEquals(0.1 * written, reader.getTime(s), 0);
+                for (Column column : Column.values()) {
+                    reader.read(s, column, dst);
+                    for (int i = 0; i < PARTICLES; i++) {
+                        assertEquals(value(written, column.ordinal(), i), dst[i], 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void chunkBytes() throws Exception {
+        try (TrajectoryWriter writer = new TrajectoryWriter.Builder(file, PARTICLES).setChunkBytes(1000).open()) {
+            assertEquals(1000 / (8 * (1 + 6 * PARTICLES)), writer.getChunkSteps());
+        }
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            assertEquals(0, reader.getSteps());
+        }
+    }
+
+    /**
+     * Tests truncated file, which has lost the end of its index, is refused
+     * @throws Exception
+     */
+    @Test(expected = IOException.class)
+    public void incomplete() throws Exception {
+        try (TrajectoryWriter writer = new TrajectoryWriter.Builder(file, PARTICLES).setChunkSteps(2).open()) {
+            write(writer, 3);
+        }
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 1);
+        }
+        new TrajectoryReader(file).close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void state() throws Exception {
+        try (TrajectoryWriter writer = new TrajectoryWriter.Builder(file, PARTICLES).open()) {
+            writer.write(0, new double[6]);
+        }
+    }
+
+}